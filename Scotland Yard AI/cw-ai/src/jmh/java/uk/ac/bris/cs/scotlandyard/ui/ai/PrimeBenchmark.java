@@ -0,0 +1,225 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import io.atlassian.fugue.Pair;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+/**
+ * Benchmarks of the hot paths of {@link Prime}, on the reference positions of a round (see
+ * {@link ReferencePositions}); every call goes to the next position.
+ * <br>
+ * The distances of {@link #score()} are measured on their own by {@link #distance()} and {@link #rounds()}; the
+ * slow path of {@link DistanceOracle#rounds}, taken when a detective may run out of tickets on the way, by
+ * {@link #roundsBudgetedHit()} (a row computed before) and {@link #roundsBudgetedMiss()} (a new row every call).
+ * <br>
+ * {@link #pickMove(Nodes)} searches for a fixed time, so its throughput only shows the overhead around the
+ * search; the nodes it searches per second are reported as the {@code nodes} counter. Run with
+ * {@code mvn -P jmh compile exec:exec}, which adds the allocation profiler ({@code -prof gc}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrimeBenchmark {
+
+	/**
+	 * The most tickets of each type in the budgets of the slow path queries of {@link DistanceOracle#rounds}
+	 */
+	private static final int MAX_BUDGET = 4;
+	/**
+	 * The number of slow path queries {@link #roundsBudgetedHit()} goes round
+	 */
+	private static final int BUDGETED_HITS = 64;
+
+	/**
+	 * The least number of moves MrX made before the reference positions
+	 */
+	@Param({"1", "8", "16"})
+	public int round;
+	/**
+	 * The time {@link #pickMove(Nodes)} has for each move, in milliseconds
+	 */
+	@Param({"100"})
+	public long moveTime;
+
+	private Prime prime;
+	private List<Board.GameState> positions;
+	private List<SearchState> states;
+	private JointMoves jointMoves;
+	private DistanceOracle distances;
+	/**
+	 * Queries of {@link DistanceOracle#rounds} that take its slow path: {source, taxi, bus, underground, destination}
+	 */
+	private int[][] budgetedQueries;
+	private int next;
+	private int nextQuery;
+
+	/**
+	 * The nodes searched by {@link #pickMove(Nodes)}
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Nodes {
+		public long nodes;
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		GameSetup setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24ROUNDS);
+		DistanceOracle distances = DistanceOracle.of(setup);
+		this.distances = distances;
+		this.budgetedQueries = budgetedQueries(distances);
+		Zobrist zobrist = new Zobrist(distances.size());
+		this.positions = ReferencePositions.of(setup, this.round);
+		this.states = new ArrayList<>();
+		for (Board.GameState position : this.positions) this.states.add(new SearchState(position, distances, zobrist));
+		this.jointMoves = new JointMoves(distances, true);
+		// Configured by the prime.searchMode and prime.threads system properties
+		this.prime = new Prime();
+		// Prime only sets itself up for the game on its first move
+		this.prime.pickMove(this.positions.get(0), new Pair<>(10L, TimeUnit.MILLISECONDS));
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.prime.onTerminate();
+	}
+
+	/**
+	 * The distances between MrX and every detective, with the transports the detective has tickets for
+	 */
+	@Benchmark
+	public int distance() {
+		SearchState state = this.states.get(nextIndex());
+		int sum = 0;
+		for (int detective = 1; detective < state.players(); ++detective) {
+			sum += this.distances.distance(state.transportMask(detective), state.location(detective),
+					state.location(SearchState.MRX));
+		}
+		return sum;
+	}
+
+	/**
+	 * The rounds every detective needs to reach MrX with its tickets, as {@link Prime#score} computes them
+	 */
+	@Benchmark
+	public int rounds() {
+		SearchState state = this.states.get(nextIndex());
+		int sum = 0;
+		for (int detective = 1; detective < state.players(); ++detective) {
+			sum += this.distances.rounds(state.location(detective),
+					state.tickets(detective, ScotlandYard.Ticket.TAXI.ordinal()),
+					state.tickets(detective, ScotlandYard.Ticket.BUS.ordinal()),
+					state.tickets(detective, ScotlandYard.Ticket.UNDERGROUND.ordinal()), state.location(SearchState.MRX));
+		}
+		return sum;
+	}
+
+	/**
+	 * The slow path of {@link DistanceOracle#rounds} on the same few budgets, so the rows are always computed
+	 */
+	@Benchmark
+	public int roundsBudgetedHit() {
+		int[] query = this.budgetedQueries[nextQuery(BUDGETED_HITS)];
+		return this.distances.rounds(query[0], query[1], query[2], query[3], query[4]);
+	}
+
+	/**
+	 * The slow path of {@link DistanceOracle#rounds} going round more budgets than it keeps rows for, so every
+	 * row is computed again
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public int roundsBudgetedMiss() {
+		int[] query = this.budgetedQueries[nextQuery(this.budgetedQueries.length)];
+		return this.distances.rounds(query[0], query[1], query[2], query[3], query[4]);
+	}
+
+	@Benchmark
+	public int score() {
+		return this.prime.score(this.states.get(nextIndex()));
+	}
+
+	/**
+	 * Counts the joint moves of the detectives after every move of MrX (the replacement of
+	 * {@code getAllDetectivesMovesCombinations})
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public int jointMoves() {
+		SearchState state = this.states.get(nextIndex());
+		int combinations = 0;
+		int count = state.generateMoves(0);
+		int[] moves = state.moves(0);
+		for (int i = 0; i < count; ++i) {
+			state.make(moves[i]);
+			this.jointMoves.reset(state, 1);
+			while (this.jointMoves.next()) combinations += 1;
+			state.unmake();
+		}
+		return combinations;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public Move pickMove(Nodes nodes) {
+		Move move = this.prime.pickMove(this.positions.get(nextIndex()), new Pair<>(this.moveTime, TimeUnit.MILLISECONDS));
+		nodes.nodes += this.prime.getNodes();
+		return move;
+	}
+
+	/**
+	 * @param distances the distances of the game graph
+	 * @return the queries taking the slow path of {@link DistanceOracle#rounds}: from every source to the node
+	 * furthest from it, for every budget of 1 to {@link #MAX_BUDGET} tickets of each type that falls short of
+	 * the distance for some type
+	 */
+	private static int[][] budgetedQueries(DistanceOracle distances) {
+		// The transports of a detective with tickets of every type
+		int mask = 1 << ScotlandYard.Transport.TAXI.ordinal() | 1 << ScotlandYard.Transport.BUS.ordinal() |
+				1 << ScotlandYard.Transport.UNDERGROUND.ordinal();
+		List<int[]> queries = new ArrayList<>();
+		for (int source = 1; source < distances.size(); ++source) {
+			int furthest = source;
+			for (int node = 1; node < distances.size(); ++node) {
+				int distance = distances.distance(mask, source, node);
+				if (distance != DistanceOracle.UNREACHABLE && distance > distances.distance(mask, source, furthest)) furthest = node;
+			}
+			int distance = distances.distance(mask, source, furthest);
+			for (int taxi = 1; taxi <= MAX_BUDGET; ++taxi) {
+				for (int bus = 1; bus <= MAX_BUDGET; ++bus) {
+					for (int underground = 1; underground <= MAX_BUDGET; ++underground) {
+						if (Math.min(taxi, Math.min(bus, underground)) < distance) queries.add(new int[]{source, taxi, bus, underground, furthest});
+					}
+				}
+			}
+		}
+		return queries.toArray(new int[0][]);
+	}
+
+	/**
+	 * @param count the number of queries to go round
+	 * @return the index of the next budgeted query
+	 */
+	private int nextQuery(int count) {
+		if (++this.nextQuery >= count) this.nextQuery = 0;
+		return this.nextQuery;
+	}
+
+	/**
+	 * @return the index of the next reference position, going round all of them
+	 */
+	private int nextIndex() {
+		if (++this.next == this.positions.size()) this.next = 0;
+		return this.next;
+	}
+}
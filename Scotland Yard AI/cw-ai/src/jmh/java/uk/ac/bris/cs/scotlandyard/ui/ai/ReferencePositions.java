@@ -0,0 +1,55 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+/**
+ * Fixed game states for the benchmarks: the game of each seed played with random moves (drawn from the seed
+ * too) until MrX is about to move with at least a given number of moves in his travel log, so the same seed
+ * and round always give the same state
+ */
+final class ReferencePositions {
+
+	/**
+	 * The seeds of the reference positions
+	 */
+	static final int[] SEEDS = {0, 1, 2, 3, 4, 5, 6, 7};
+
+	private ReferencePositions() {}
+
+	/**
+	 * @param setup the game setup
+	 * @param round the least number of moves MrX made before the positions
+	 * @return the reference positions of every seed whose game lasts that long
+	 */
+	static List<Board.GameState> of(GameSetup setup, int round) {
+		List<Board.GameState> positions = new ArrayList<>();
+		for (int seed : SEEDS) {
+			List<Player> detectives = new ArrayList<>();
+			List<Integer> locations = ScotlandYard.generateDetectiveLocations(seed, 5);
+			for (int i = 0; i < locations.size(); ++i) {
+				detectives.add(new Player(ScotlandYard.DETECTIVES.asList().get(i), ScotlandYard.defaultDetectiveTickets(), locations.get(i)));
+			}
+			Player mrX = new Player(Piece.MrX.MRX, ScotlandYard.defaultMrXTickets(), ScotlandYard.generateMrXLocation(seed));
+			Board.GameState state = new MyGameStateFactory().build(setup, mrX, ImmutableList.copyOf(detectives));
+			Random random = new Random(seed);
+			while (state.getWinner().isEmpty()) {
+				List<Move> moves = new ArrayList<>(state.getAvailableMoves());
+				if (state.getMrXTravelLog().size() >= round && moves.get(0).commencedBy().isMrX()) {
+					positions.add(state);
+					break;
+				}
+				// Sorted, so that the moves drawn do not depend on the order of the set
+				moves.sort(Comparator.comparing(Move::toString));
+				state = state.advance(moves.get(random.nextInt(moves.size())));
+			}
+		}
+		return positions;
+	}
+}
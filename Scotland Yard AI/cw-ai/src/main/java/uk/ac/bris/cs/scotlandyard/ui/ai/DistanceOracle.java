@@ -0,0 +1,295 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MapMaker;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+
+/**
+ * Precomputed all-pairs distance matrices over the graph of a game setup, so that the AIs can look
+ * up the distance between two nodes in constant time instead of running a BFS every time.
+ * <br>
+ * There is one matrix per set of allowed transports (a bitmask of {@link ScotlandYard.Transport} ordinals),
+ * e.g., a detective without underground tickets cannot use the tube and no detective can use a ferry.
+ * The ticket budget of a detective is taken into account by {@link #rounds(int, int, int, int, int)}.
+ */
+public final class DistanceOracle {
+
+	/**
+	 * The distance returned when there is no path between two nodes
+	 */
+	public static final int UNREACHABLE = Byte.MAX_VALUE;
+	/**
+	 * The bitmask that allows every transport
+	 */
+	public static final int ALL_TRANSPORTS = (1 << ScotlandYard.Transport.values().length) - 1;
+	/**
+	 * The number of rounds up to which {@link #rounds(int, int, int, int, int)} accounts for the ticket budget;
+	 * tickets beyond this count can never run out within the horizon
+	 */
+	public static final int HORIZON = 10;
+	/**
+	 * The maximum number of ticket-budgeted distance rows we keep before starting over
+	 */
+	private static final int MAX_BUDGETED_ROWS = 4096;
+	/**
+	 * The oracles already built, one per game setup (compared by identity)
+	 */
+	private static final ConcurrentMap<GameSetup, DistanceOracle> ORACLES = new MapMaker().weakKeys().makeMap();
+
+	/**
+	 * The number of rows (and columns) of the matrix, i.e., the largest node plus one
+	 */
+	private final int size;
+	/**
+	 * The adjacency list of every node; empty for numbers that are not nodes of the graph
+	 */
+	private final int[][] adjacency;
+	/**
+	 * Transports[node][i] stores the bitmask of the transports of the edge between the node and adjacency[node][i]
+	 */
+	private final int[][] transports;
+	/**
+	 * Matrices[mask][source * size + destination] stores the distance between the source and the destination
+	 * when only the transports in the mask can be used
+	 */
+	private final byte[][] matrices;
+	/**
+	 * The ticket-budgeted distance rows already computed, see {@link #budgetKey(int, int, int, int)}
+	 */
+	private final Map<Integer, byte[]> budgetedRows = new ConcurrentHashMap<>();
+
+	/**
+	 * DistanceOracle constructor
+	 *
+	 * @param setup the game setup whose graph we want to precompute the distances of
+	 */
+	private DistanceOracle(GameSetup setup) {
+		int largestNode = 0;
+		for (int node : setup.graph.nodes()) largestNode = Math.max(largestNode, node);
+		this.size = largestNode + 1;
+		this.adjacency = new int[size][];
+		this.transports = new int[size][];
+		Arrays.fill(this.adjacency, new int[0]);
+		Arrays.fill(this.transports, new int[0]);
+		for (int node : setup.graph.nodes()) {
+			this.adjacency[node] = setup.graph.adjacentNodes(node).stream().mapToInt(Integer::intValue).toArray();
+			this.transports[node] = new int[this.adjacency[node].length];
+			for (int i = 0; i < this.adjacency[node].length; ++i) {
+				for (ScotlandYard.Transport transport : setup.graph.edgeValueOrDefault(node, this.adjacency[node][i], ImmutableSet.of())) {
+					this.transports[node][i] |= 1 << transport.ordinal();
+				}
+			}
+		}
+		this.matrices = new byte[ALL_TRANSPORTS + 1][];
+		int[] queue = new int[size];
+		for (int mask = 0; mask <= ALL_TRANSPORTS; ++mask) {
+			this.matrices[mask] = new byte[size * size];
+			Arrays.fill(this.matrices[mask], (byte) UNREACHABLE);
+			for (int source : setup.graph.nodes()) bfs(this.matrices[mask], mask, source, queue);
+		}
+	}
+
+	//-------------------- Core Functions --------------------//
+
+	/**
+	 * @param setup the game setup
+	 * @return the distance oracle of the given game setup; it is only built the first time it is requested
+	 */
+	@Nonnull
+	public static DistanceOracle of(@Nonnull GameSetup setup) {
+		return ORACLES.computeIfAbsent(setup, DistanceOracle::new);
+	}
+
+	/**
+	 * @param source the source node
+	 * @param destination the destination node
+	 * @return the number of edges in a shortest path from the source to the destination;
+	 * {@link #UNREACHABLE} if there is no such path
+	 */
+	public int distance(int source, int destination) {
+		return matrices[ALL_TRANSPORTS][source * size + destination];
+	}
+
+	/**
+	 * @param mask the bitmask of the transports that can be used
+	 * @param source the source node
+	 * @param destination the destination node
+	 * @return the number of edges in a shortest path from the source to the destination that only uses
+	 * the given transports; {@link #UNREACHABLE} if there is no such path
+	 */
+	public int distance(int mask, int source, int destination) {
+		return matrices[mask][source * size + destination];
+	}
+
+	/**
+	 * Answers "how many rounds does a detective at the source with the given tickets need to reach the destination".
+	 * The ticket budget is exact up to {@link #HORIZON} rounds; beyond that, the answer is a lower bound.
+	 *
+	 * @param source the location of the detective
+	 * @param taxi the number of taxi tickets of the detective
+	 * @param bus the number of bus tickets of the detective
+	 * @param underground the number of underground tickets of the detective
+	 * @param destination the destination node
+	 * @return the minimum number of rounds to reach the destination; {@link #UNREACHABLE} if it cannot be reached
+	 */
+	public int rounds(int source, int taxi, int bus, int underground, int destination) {
+		int mask = (taxi > 0 ? 1 << ScotlandYard.Transport.TAXI.ordinal() : 0) |
+				(bus > 0 ? 1 << ScotlandYard.Transport.BUS.ordinal() : 0) |
+				(underground > 0 ? 1 << ScotlandYard.Transport.UNDERGROUND.ordinal() : 0);
+		int distance = distance(mask, source, destination);
+		// A shortest path cannot run out of any ticket it may use, so the plain distance is exact (the transports
+		// without tickets are not in the mask, so their paths are not counted)
+		if (distance == UNREACHABLE || ((taxi == 0 || taxi >= distance) && (bus == 0 || bus >= distance) &&
+				(underground == 0 || underground >= distance))) return distance;
+		taxi = Math.min(taxi, HORIZON);
+		bus = Math.min(bus, HORIZON);
+		underground = Math.min(underground, HORIZON);
+		int key = budgetKey(source, taxi, bus, underground);
+		byte[] row = budgetedRows.get(key);
+		if (row == null) {
+			if (budgetedRows.size() >= MAX_BUDGETED_ROWS) budgetedRows.clear();
+			row = budgetedBfs(source, taxi, bus, underground, mask);
+			budgetedRows.put(key, row);
+		}
+		return row[destination];
+	}
+
+	/**
+	 * @param node the node
+	 * @return the nodes adjacent to the given node; the array is shared, so it must not be modified
+	 */
+	@Nonnull
+	public int[] neighbours(int node) {
+		return adjacency[node];
+	}
+
+	/**
+	 * @param node the node
+	 * @return transports[i] stores the bitmask of the transports of the edge between the node and
+	 * {@code neighbours(node)[i]}; the array is shared, so it must not be modified
+	 */
+	@Nonnull
+	public int[] transports(int node) {
+		return transports[node];
+	}
+
+	/**
+	 * @return the largest node of the graph plus one
+	 */
+	public int size() {
+		return size;
+	}
+
+	//-------------------- Auxiliary Functions --------------------//
+
+	/**
+	 * Fills the row of the source in the given matrix
+	 *
+	 * @param matrix the matrix of the given bitmask
+	 * @param mask the bitmask of the transports that can be used
+	 * @param source the node we want to compute the distances from
+	 * @param queue a scratch array big enough to hold every node
+	 */
+	private void bfs(byte[] matrix, int mask, int source, int[] queue) {
+		int row = source * size;
+		int head = 0, tail = 0;
+		matrix[row + source] = 0;
+		queue[tail++] = source;
+		while (head < tail) {
+			int u = queue[head++];
+			for (int i = 0; i < adjacency[u].length; ++i) {
+				int adjacentNode = adjacency[u][i];
+				if ((transports[u][i] & mask) != 0 && matrix[row + adjacentNode] == UNREACHABLE) {
+					matrix[row + adjacentNode] = (byte) (matrix[row + u] + 1);
+					queue[tail++] = adjacentNode;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A BFS over (node, taxi, bus, underground) states, bounded by {@link #HORIZON} rounds
+	 *
+	 * @param source the location of the detective
+	 * @param taxi the number of taxi tickets of the detective, at most {@link #HORIZON}
+	 * @param bus the number of bus tickets of the detective, at most {@link #HORIZON}
+	 * @param underground the number of underground tickets of the detective, at most {@link #HORIZON}
+	 * @param mask the bitmask of the transports the detective has tickets for
+	 * @return row[node] stores the minimum number of rounds the detective needs to reach the node
+	 */
+	private byte[] budgetedBfs(int source, int taxi, int bus, int underground, int mask) {
+		int busStride = underground + 1;
+		int taxiStride = (bus + 1) * busStride;
+		int nodeStride = (taxi + 1) * taxiStride;
+		boolean[] visited = new boolean[size * nodeStride];
+		int[] frontier = new int[] {source * nodeStride + taxi * taxiStride + bus * busStride + underground};
+		byte[] row = new byte[size];
+		Arrays.fill(row, (byte) UNREACHABLE);
+		row[source] = 0;
+		visited[frontier[0]] = true;
+		int round = 0;
+		while (frontier.length > 0 && round < HORIZON) {
+			round += 1;
+			int[] next = new int[16];
+			int count = 0;
+			for (int state : frontier) {
+				int node = state / nodeStride;
+				int t = state % nodeStride / taxiStride, b = state % taxiStride / busStride, u = state % busStride;
+				for (int i = 0; i < adjacency[node].length; ++i) {
+					int adjacentNode = adjacency[node][i];
+					int edge = transports[node][i];
+					int base = adjacentNode * nodeStride;
+					for (int transport = 0; transport < 3; ++transport) {
+						if ((edge & (1 << transport)) == 0) continue;
+						int nextState;
+						if (transport == ScotlandYard.Transport.TAXI.ordinal() && t > 0) {
+							nextState = base + (t - 1) * taxiStride + b * busStride + u;
+						}
+						else if (transport == ScotlandYard.Transport.BUS.ordinal() && b > 0) {
+							nextState = base + t * taxiStride + (b - 1) * busStride + u;
+						}
+						else if (transport == ScotlandYard.Transport.UNDERGROUND.ordinal() && u > 0) {
+							nextState = base + t * taxiStride + b * busStride + u - 1;
+						}
+						else continue;
+						if (visited[nextState]) continue;
+						visited[nextState] = true;
+						if (row[adjacentNode] == UNREACHABLE) row[adjacentNode] = (byte) round;
+						if (count == next.length) next = Arrays.copyOf(next, count * 2);
+						next[count++] = nextState;
+					}
+				}
+			}
+			frontier = Arrays.copyOf(next, count);
+		}
+		// Nodes we stopped looking for at the horizon are at least one round further than it
+		if (frontier.length > 0) {
+			for (int node = 0; node < size; ++node) {
+				int distance = distance(mask, source, node);
+				if (row[node] == UNREACHABLE && distance != UNREACHABLE) {
+					row[node] = (byte) Math.max(HORIZON + 1, distance);
+				}
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * @param source the location of the detective
+	 * @param taxi the number of taxi tickets, at most {@link #HORIZON}
+	 * @param bus the number of bus tickets, at most {@link #HORIZON}
+	 * @param underground the number of underground tickets, at most {@link #HORIZON}
+	 * @return a key that identifies the given query
+	 */
+	private static int budgetKey(int source, int taxi, int bus, int underground) {
+		return ((source * 16 + taxi) * 16 + bus) * 16 + underground;
+	}
+}
@@ -0,0 +1,243 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The joint moves of the detectives in a round, i.e., one move per detective that can move, enumerated lazily
+ * as a cartesian product of the moves worth searching of every detective, skipping the combinations where
+ * two detectives would end up at the same node. Works for any number of detectives, and nothing is allocated
+ * once the arrays have grown to the size of the game.
+ * <br>
+ * The moves worth searching of a detective are its moves (one per destination) that do not get it further
+ * away from MrX; if there are less than two of those, one or two of the moves that do are added so that the
+ * detective still has something to do. A detective left with a single destination that an earlier detective
+ * can also move to is left out, so that it does not empty the whole product.
+ * <br>
+ * The moves worth searching of a detective can be sorted closest to MrX first (so a capture comes first), which
+ * makes the combinations most likely to cut off the search come first.
+ */
+final class JointMoves {
+
+	/**
+	 * The distances between every pair of nodes of the game graph
+	 */
+	private final DistanceOracle distances;
+	/**
+	 * True to sort the moves worth searching of every detective closest to MrX first
+	 */
+	private final boolean sorted;
+	/**
+	 * Candidates[slot] stores the encoded moves worth searching of the detective of the slot
+	 */
+	private int[][] candidates = new int[0][];
+	/**
+	 * The number of moves worth searching of the detective of each slot
+	 */
+	private int[] counts = new int[0];
+	/**
+	 * The candidate chosen for each slot in the current combination
+	 */
+	private int[] choices = new int[0];
+	/**
+	 * The number of detectives in every combination
+	 */
+	private int slots;
+	/**
+	 * The moves that get a detective further away from MrX, used when it has too few of the others
+	 */
+	private int[] away = new int[0];
+	/**
+	 * The destinations already checked for the current detective, as a bitset
+	 */
+	private final long[] checked;
+	/**
+	 * The destinations of the moves worth searching of the detectives already added, as a bitset
+	 */
+	private final long[] earlier;
+	/**
+	 * False until {@link #next()} is called for the first time after {@link #reset} or {@link #select(int)}
+	 */
+	private boolean started;
+	/**
+	 * True once {@link #next()} ran out of combinations
+	 */
+	private boolean exhausted;
+
+	/**
+	 * JointMoves constructor
+	 *
+	 * @param distances the distances between every pair of nodes of the game graph
+	 * @param sorted true to sort the moves worth searching of every detective closest to MrX first
+	 */
+	JointMoves(@Nonnull DistanceOracle distances, boolean sorted) {
+		this.distances = distances;
+		this.sorted = sorted;
+		this.checked = new long[(distances.size() + 63) / 64];
+		this.earlier = new long[(distances.size() + 63) / 64];
+	}
+
+	//-------------------- Core Functions --------------------//
+
+	/**
+	 * Collects the moves worth searching of every detective that can move in the state; the next call to
+	 * {@link #next()} returns the first combination
+	 *
+	 * @param state the search state; it must be the detectives' turn
+	 * @param ply the ply of the search, see {@link SearchState#generateMoves(int)}
+	 */
+	void reset(@Nonnull SearchState state, int ply) {
+		int count = state.generateMoves(ply);
+		int[] moves = state.moves(ply);
+		int mrxLocation = state.location(SearchState.MRX);
+		if (candidates.length < state.players()) {
+			candidates = Arrays.copyOf(candidates, state.players());
+			counts = Arrays.copyOf(counts, state.players());
+			choices = Arrays.copyOf(choices, state.players());
+		}
+		Arrays.fill(earlier, 0);
+		slots = 0;
+		started = false;
+		exhausted = false;
+		// The moves are generated one detective after the other
+		for (int first = 0, last; first < count; first = last) {
+			int detective = SearchState.player(moves[first]);
+			last = first;
+			while (last < count && SearchState.player(moves[last]) == detective) ++last;
+			if (candidates[slots] == null || candidates[slots].length < last - first) candidates[slots] = new int[last - first];
+			if (away.length < last - first) away = new int[last - first];
+			// The distances of the detective only go through the transports it still has tickets for
+			int mask = state.transportMask(detective);
+			int current = distances.distance(mask, state.location(detective), mrxLocation);
+			int towards = 0, awayCount = 0;
+			Arrays.fill(checked, 0);
+			for (int i = first; i < last; ++i) {
+				int destination = SearchState.destination(moves[i]);
+				if (!add(checked, destination)) continue;
+				int distance = distances.distance(mask, destination, mrxLocation);
+				if (distance > current) away[awayCount++] = moves[i];
+				else if (!sorted) candidates[slots][towards++] = moves[i];
+				else {
+					// Insertion sort, as a detective only has a handful of moves
+					int j = towards++;
+					for (; j > 0 && distances.distance(mask, SearchState.destination(candidates[slots][j - 1]), mrxLocation) > distance; --j) {
+						candidates[slots][j] = candidates[slots][j - 1];
+					}
+					candidates[slots][j] = moves[i];
+				}
+			}
+			// A detective with too few moves towards MrX still gets to move away from him
+			for (int i = 0; i < awayCount && towards < 2; ++i) candidates[slots][towards++] = away[i];
+			if (towards == 0) continue;
+			boolean leftOut = towards == 1 && contains(earlier, SearchState.destination(candidates[slots][0]));
+			for (int i = 0; i < towards; ++i) add(earlier, SearchState.destination(candidates[slots][i]));
+			if (leftOut) continue;
+			counts[slots++] = towards;
+		}
+	}
+
+	/**
+	 * Moves on to the next combination where no two detectives end up at the same node
+	 *
+	 * @return false if there are no more combinations
+	 */
+	boolean next() {
+		if (exhausted || slots == 0) return false;
+		int slot;
+		if (!started) {
+			started = true;
+			slot = 0;
+			choices[0] = -1;
+		}
+		else slot = slots - 1;
+		while (slot >= 0) {
+			do ++choices[slot]; while (choices[slot] < counts[slot] && collides(slot));
+			if (choices[slot] == counts[slot]) --slot;
+			else if (slot == slots - 1) return true;
+			else choices[++slot] = -1;
+		}
+		exhausted = true;
+		return false;
+	}
+
+	/**
+	 * Jumps to the combination with the given code (as returned by {@link #code()}); the next call to
+	 * {@link #next()} returns the first combination again
+	 *
+	 * @param code the code of the combination
+	 * @return false if there is no such combination, or two detectives end up at the same node in it
+	 */
+	boolean select(int code) {
+		if (code < 0 || slots == 0) return false;
+		started = false;
+		exhausted = false;
+		for (int slot = slots - 1; slot >= 0; --slot) {
+			choices[slot] = code % counts[slot];
+			code /= counts[slot];
+		}
+		if (code != 0) return false;
+		for (int slot = 1; slot < slots; ++slot) {
+			if (collides(slot)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the code of the current combination, which identifies it among the combinations of the same state
+	 */
+	int code() {
+		int code = 0;
+		for (int slot = 0; slot < slots; ++slot) code = code * counts[slot] + choices[slot];
+		return code;
+	}
+
+	/**
+	 * @return the number of moves in every combination
+	 */
+	int size() {
+		return slots;
+	}
+
+	/**
+	 * @param slot the slot, between 0 and {@link #size()}
+	 * @return the encoded move of the slot in the current combination
+	 */
+	int move(int slot) {
+		return candidates[slot][choices[slot]];
+	}
+
+	//-------------------- Auxiliary Functions --------------------//
+
+	/**
+	 * @param slot the slot
+	 * @return true if the detective of the slot ends up at the same node as the detective of an earlier slot
+	 */
+	private boolean collides(int slot) {
+		int destination = SearchState.destination(move(slot));
+		for (int earlierSlot = 0; earlierSlot < slot; ++earlierSlot) {
+			if (SearchState.destination(move(earlierSlot)) == destination) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param set the bitset
+	 * @param node the node
+	 * @return true if the node is in the bitset
+	 */
+	private static boolean contains(long[] set, int node) {
+		return (set[node >>> 6] & 1L << node) != 0;
+	}
+
+	/**
+	 * @param set the bitset
+	 * @param node the node to add to the bitset
+	 * @return false if the node was already in the bitset
+	 */
+	private static boolean add(long[] set, int node) {
+		if (contains(set, node)) return false;
+		set[node >>> 6] |= 1L << node;
+		return true;
+	}
+}
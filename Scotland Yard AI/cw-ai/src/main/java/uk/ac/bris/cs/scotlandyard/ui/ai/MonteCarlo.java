@@ -0,0 +1,573 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import io.atlassian.fugue.Pair;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+/**
+ * A class that is used to automate moves for MrX in a ScotlandYard game with a Monte Carlo tree search:
+ * every iteration walks down the game tree picking moves with UCT, adds the moves of the game state it
+ * stops at to the tree, and plays the rest of the game with quick heuristic moves; MrX then plays the
+ * move that was tried the most.
+ * <br>
+ * The search can run on several threads, each one growing its own tree (root parallelism); the visits of
+ * the root moves of every tree are added up. Each tree is kept between moves, and the part of it below the
+ * new game state is reused.
+ */
+public class MonteCarlo implements Ai, NodeCounter, SideRestricted {
+
+	/**
+	 * The game setup
+	 */
+	private GameSetup setup;
+	/**
+	 * The distances between every pair of nodes of the game graph
+	 */
+	private DistanceOracle distances;
+	/**
+	 * The keys used to hash the game states of the game setup
+	 */
+	private Zobrist zobrist;
+	/**
+	 * The time (as given by {@link System#nanoTime()}) at which the current search must stop
+	 */
+	private long deadline;
+	/**
+	 * One tree per thread
+	 */
+	private Tree[] trees = new Tree[0];
+	/**
+	 * The threads the trees are grown on; null until a parallel search is needed
+	 */
+	private ForkJoinPool pool;
+	/**
+	 * The number of playouts of the last call to {@link #pickMove}
+	 */
+	private long playouts;
+	/**
+	 * The time the last call to {@link #pickMove} spent searching, in nanoseconds
+	 */
+	private long searchTime;
+
+	/**
+	 * The number of threads growing trees
+	 */
+	private final int threads;
+
+	/**
+	 * The weight of the exploration term of UCT (the rewards are between 0 and 1)
+	 */
+	private static final double EXPLORATION = 0.7;
+	/**
+	 * The number of times a node of the tree must be visited before its moves are added to the tree
+	 */
+	private static final int EXPANSION_VISITS = 4;
+	/**
+	 * The largest number of nodes of a tree
+	 */
+	private static final int CAPACITY = 1 << 19;
+	/**
+	 * The number of random moves MrX compares in a playout before picking the one furthest from the detectives
+	 */
+	private static final int MRX_SAMPLES = 3;
+	/**
+	 * The outcome of a node of the tree that was not visited yet
+	 */
+	private static final byte UNKNOWN = -1;
+
+	/**
+	 * MonteCarlo constructor; the number of threads is read from the {@code montecarlo.threads} system
+	 * property (1 by default)
+	 */
+	public MonteCarlo() {
+		this(Integer.getInteger("montecarlo.threads", 1));
+	}
+
+	/**
+	 * MonteCarlo constructor
+	 *
+	 * @param threads the number of threads growing trees
+	 * @throws IllegalArgumentException if the number of threads is not positive
+	 */
+	public MonteCarlo(int threads) {
+		if (threads < 1) throw new IllegalArgumentException("MonteCarlo needs at least one thread: " + threads);
+		this.threads = threads;
+	}
+
+	//-------------------- Core Functions --------------------//
+
+	/**
+	 * @return the name of this AI
+	 */
+	@Nonnull
+	@Override
+	public String name() {
+		return "MonteCarlo";
+	}
+
+	/**
+	 * @param piece the piece
+	 * @return true if the piece is MrX, the only one this AI plays
+	 */
+	@Override
+	public boolean supports(@Nonnull Piece piece) {
+		return piece.isMrX();
+	}
+
+	/**
+	 * Picks the best move for MrX in the current game by growing the trees until the time given by the
+	 * timeout pair (minus a safety margin) runs out
+	 *
+	 * @param board the current board
+	 * @param timeoutPair the timeout pair
+	 * @return the best move for MrX
+	 * @throws IllegalArgumentException if it is not MrX's turn on the board
+	 */
+	@Nonnull
+	@Override
+	public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
+		Prime.requireMrXTurn(board, name());
+		long start = System.nanoTime();
+		this.deadline = start + Prime.getSearchTime(timeoutPair);
+		if (this.setup != board.getSetup()) {
+			this.setup = board.getSetup();
+			this.distances = DistanceOracle.of(this.setup);
+			this.zobrist = new Zobrist(this.distances.size());
+			this.trees = new Tree[this.threads];
+			for (int i = 0; i < this.threads; ++i) this.trees[i] = new Tree(start + i);
+		}
+		if (this.threads > 1 && this.pool == null) this.pool = new ForkJoinPool(this.threads);
+		SearchState state = new SearchState(board, this.distances, this.zobrist);
+		// The moves of MrX by their encoding in the search state
+		Map<Integer, Move> moves = new HashMap<>();
+		for (Move move : board.getAvailableMoves()) moves.put(state.encode(move), move);
+		for (Tree tree : this.trees) tree.reroot(new SearchState(state));
+
+		if (this.threads == 1) this.trees[0].search();
+		else {
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for (Tree tree : this.trees) tasks.add(tree::search);
+			try {
+				for (Future<Void> future : this.pool.invokeAll(tasks)) future.get();
+			} catch (InterruptedException e) {
+				// The trees keep what they searched so far
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("The parallel search failed", e.getCause());
+			}
+		}
+
+		// The number of visits of each root move over every tree
+		Map<Integer, Integer> visits = new HashMap<>();
+		for (Tree tree : this.trees) tree.addRootVisits(visits);
+		Move bestMove = moves.values().iterator().next();
+		int bestVisits = -1;
+		for (Map.Entry<Integer, Integer> entry : visits.entrySet()) {
+			Move move = moves.get(entry.getKey());
+			if (move != null && entry.getValue() > bestVisits) {
+				bestMove = move;
+				bestVisits = entry.getValue();
+			}
+		}
+		this.searchTime = System.nanoTime() - start;
+		this.playouts = 0;
+		for (Tree tree : this.trees) this.playouts += tree.playouts;
+		return bestMove;
+	}
+
+	/**
+	 * Shuts down the threads of the parallel search, if any, and lets go of the trees
+	 */
+	@Override
+	public void onTerminate() {
+		if (this.pool != null) this.pool.shutdownNow();
+		this.pool = null;
+		this.setup = null;
+		this.trees = new Tree[0];
+	}
+
+	/**
+	 * @return the number of playouts of the last call to {@link #pickMove}
+	 */
+	public long getPlayouts() {
+		return this.playouts;
+	}
+
+	/**
+	 * @return the number of playouts of the last call to {@link #pickMove}, each playout counting as a node
+	 */
+	@Override
+	public long getNodes() {
+		return this.playouts;
+	}
+
+	/**
+	 * @return the number of playouts per second of the last call to {@link #pickMove}
+	 */
+	public double getPlayoutsPerSecond() {
+		return this.searchTime == 0 ? 0 : this.playouts * 1e9 / this.searchTime;
+	}
+
+	//-------------------- Auxiliary Classes --------------------//
+
+	/**
+	 * The nodes of a tree, stored as parallel arrays so that growing the tree never allocates; the children
+	 * of a node are stored next to each other
+	 */
+	private static final class Nodes {
+		/**
+		 * The encoded move leading to each node
+		 */
+		private final int[] moves;
+		/**
+		 * The index of the first child of each node
+		 */
+		private final int[] firstChildren;
+		/**
+		 * The number of children of each node; 0 until its moves are added to the tree
+		 */
+		private final int[] childCounts;
+		/**
+		 * The number of iterations that went through each node
+		 */
+		private final int[] visits;
+		/**
+		 * The number of those iterations MrX won
+		 */
+		private final float[] wins;
+		/**
+		 * The winner of the game state of each node (see {@link SearchState#winner()}); {@link #UNKNOWN} if not visited yet
+		 */
+		private final byte[] outcomes;
+
+		/**
+		 * Nodes constructor
+		 *
+		 * @param capacity the largest number of nodes
+		 */
+		private Nodes (int capacity) {
+			this.moves = new int[capacity];
+			this.firstChildren = new int[capacity];
+			this.childCounts = new int[capacity];
+			this.visits = new int[capacity];
+			this.wins = new float[capacity];
+			this.outcomes = new byte[capacity];
+		}
+
+		/**
+		 * Makes a node with no visits
+		 *
+		 * @param node the index of the node
+		 * @param move the encoded move leading to the node
+		 */
+		private void clear (int node, int move) {
+			this.moves[node] = move;
+			this.childCounts[node] = 0;
+			this.visits[node] = 0;
+			this.wins[node] = 0;
+			this.outcomes[node] = UNKNOWN;
+		}
+	}
+
+	/**
+	 * A tree grown by one thread on its own search state; the root is always node 0
+	 */
+	private final class Tree {
+		/**
+		 * The nodes of the tree
+		 */
+		private Nodes nodes = new Nodes(CAPACITY);
+		/**
+		 * The nodes the tree is copied to when it is rerooted
+		 */
+		private Nodes spare = new Nodes(CAPACITY);
+		/**
+		 * The number of nodes of the tree
+		 */
+		private int size;
+		/**
+		 * Old[i] stores the index of the i-th node copied by {@link #reroot}
+		 */
+		private final int[] old = new int[CAPACITY];
+		/**
+		 * The search state of the root; it is back to the root after every iteration
+		 */
+		private SearchState state;
+		/**
+		 * The nodes from the root to the current node of the iteration
+		 */
+		private int[] path = new int[64];
+		/**
+		 * The destinations already added to the tree for the node being expanded, as a bitset
+		 */
+		private final long[] destinations = new long[(MonteCarlo.this.distances.size() + 63) / 64];
+		/**
+		 * The random number generator of the playouts
+		 */
+		private final SplittableRandom random;
+		/**
+		 * The number of playouts of the current search
+		 */
+		private long playouts;
+
+		/**
+		 * Tree constructor
+		 *
+		 * @param seed the seed of the random number generator
+		 */
+		private Tree (long seed) {
+			this.random = new SplittableRandom(seed);
+		}
+
+		//-------------------- Core Functions --------------------//
+
+		/**
+		 * Moves the root of the tree to the given game state, keeping the part of the tree below it if it
+		 * was reached by the moves of MrX and the detectives since the last search
+		 *
+		 * @param root the search state of the new root
+		 */
+		private void reroot (SearchState root) {
+			int found = this.state == null || this.size == 0 ? -1 : find(0, root.hash(), root.players());
+			this.playouts = 0;
+			this.state = root;
+			if (found == -1) {
+				this.size = 1;
+				this.nodes.clear(0, 0);
+				return;
+			}
+			// Copies the subtree breadth first, so the children of every node stay next to each other
+			Nodes from = this.nodes, to = this.spare;
+			this.old[0] = found;
+			int copied = 1;
+			for (int i = 0; i < copied; ++i) {
+				int node = this.old[i];
+				int childCount = from.childCounts[node];
+				to.moves[i] = from.moves[node];
+				to.visits[i] = from.visits[node];
+				to.wins[i] = from.wins[node];
+				to.outcomes[i] = from.outcomes[node];
+				to.firstChildren[i] = copied;
+				to.childCounts[i] = childCount;
+				for (int child = 0; child < childCount; ++child) this.old[copied++] = from.firstChildren[node] + child;
+			}
+			this.nodes = to;
+			this.spare = from;
+			this.size = copied;
+		}
+
+		/**
+		 * Runs iterations until the time runs out
+		 *
+		 * @return null
+		 */
+		private Void search () {
+			// At least one iteration is run, so that the root has children
+			do iterate(); while (System.nanoTime() < MonteCarlo.this.deadline);
+			return null;
+		}
+
+		/**
+		 * @param visits where the visits of the root moves of this tree are added, by encoded move
+		 */
+		private void addRootVisits (Map<Integer, Integer> visits) {
+			int first = this.nodes.firstChildren[0];
+			for (int child = first; child < first + this.nodes.childCounts[0]; ++child) {
+				visits.merge(this.nodes.moves[child], this.nodes.visits[child], Integer::sum);
+			}
+		}
+
+		//-------------------- Auxiliary Functions --------------------//
+
+		/**
+		 * Walks down the tree from the root, expands the node it stops at, plays the rest of the game and
+		 * updates the nodes it went through with the result
+		 */
+		private void iterate () {
+			Nodes nodes = this.nodes;
+			int node = 0, depth = 0, winner;
+			this.path[0] = 0;
+			while (true) {
+				if (nodes.outcomes[node] == UNKNOWN) nodes.outcomes[node] = (byte) this.state.winner();
+				if (nodes.outcomes[node] != SearchState.NO_WINNER) {
+					winner = nodes.outcomes[node];
+					break;
+				}
+				if (nodes.childCounts[node] == 0 && (node != 0 && nodes.visits[node] < EXPANSION_VISITS || !expand(node, depth))) {
+					winner = playout(depth);
+					this.playouts += 1;
+					break;
+				}
+				node = select(node);
+				this.state.make(nodes.moves[node]);
+				if (++depth == this.path.length) this.path = Arrays.copyOf(this.path, depth * 2);
+				this.path[depth] = node;
+			}
+			float reward = winner == SearchState.MRX_WINS ? 1 : 0;
+			for (int i = 0; i <= depth; ++i) {
+				nodes.visits[this.path[i]] += 1;
+				nodes.wins[this.path[i]] += reward;
+			}
+			this.state.unmakeAll();
+		}
+
+		/**
+		 * @param node the node
+		 * @return the child of the node with the largest UCT value for the player moving in the node;
+		 * the children that were never visited come first
+		 */
+		private int select (int node) {
+			Nodes nodes = this.nodes;
+			boolean mrxTurn = this.state.isMrxTurn();
+			double logVisits = Math.log(nodes.visits[node]);
+			int first = nodes.firstChildren[node], best = first;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for (int child = first; child < first + nodes.childCounts[node]; ++child) {
+				if (nodes.visits[child] == 0) return child;
+				double mean = nodes.wins[child] / nodes.visits[child];
+				double value = (mrxTurn ? mean : 1 - mean) + EXPLORATION * Math.sqrt(logVisits / nodes.visits[child]);
+				if (value > bestValue) {
+					best = child;
+					bestValue = value;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Adds the moves of the player moving in the node to the tree, one per destination
+		 *
+		 * @param node the node
+		 * @param ply the depth of the node
+		 * @return false if the tree is full
+		 */
+		private boolean expand (int node, int ply) {
+			int count = this.state.isMrxTurn() ? this.state.generateMoves(ply, SearchState.MRX)
+					: this.state.generateMoves(ply, this.state.nextDetective());
+			if (this.size + count > CAPACITY) return false;
+			int[] moves = this.state.moves(ply);
+			Arrays.fill(this.destinations, 0);
+			this.nodes.firstChildren[node] = this.size;
+			for (int i = 0; i < count; ++i) {
+				int destination = SearchState.destination(moves[i]);
+				if ((this.destinations[destination >>> 6] & 1L << destination) != 0) continue;
+				this.destinations[destination >>> 6] |= 1L << destination;
+				this.nodes.clear(this.size++, moves[i]);
+			}
+			this.nodes.childCounts[node] = this.size - this.nodes.firstChildren[node];
+			return true;
+		}
+
+		/**
+		 * Plays the rest of the game on the search state: the detectives mostly move towards MrX, and MrX
+		 * moves away from the detectives
+		 *
+		 * @param ply the ply whose move buffer the playout uses
+		 * @return the winner of the game
+		 */
+		private int playout (int ply) {
+			int winner;
+			while ((winner = this.state.winner()) == SearchState.NO_WINNER) {
+				this.state.make(this.state.isMrxTurn() ? mrxMove(ply) : detectiveMove(ply));
+			}
+			return winner;
+		}
+
+		/**
+		 * @param ply the ply whose move buffer is used
+		 * @return the best of a few random single moves of MrX (double moves are only tried when those all
+		 * end next to a detective)
+		 */
+		private int mrxMove (int ply) {
+			int count = this.state.generateMoves(ply, SearchState.MRX);
+			int[] moves = this.state.moves(ply);
+			// The single moves are generated first
+			int singles = 0;
+			while (singles < count && !SearchState.isDouble(moves[singles])) ++singles;
+			int best = -1, bestDistance = -1;
+			for (int i = 0; i < MRX_SAMPLES && singles > 0; ++i) {
+				int move = moves[this.random.nextInt(singles)];
+				int distance = distanceToDetectives(SearchState.destination(move));
+				if (distance > bestDistance) {
+					best = move;
+					bestDistance = distance;
+				}
+			}
+			for (int i = 0; i < MRX_SAMPLES && bestDistance <= 1 && singles < count; ++i) {
+				int move = moves[singles + this.random.nextInt(count - singles)];
+				int distance = distanceToDetectives(SearchState.destination(move));
+				if (distance > bestDistance) {
+					best = move;
+					bestDistance = distance;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * @param ply the ply whose move buffer is used
+		 * @return a move of the next detective: three times out of four one that gets it closest to MrX,
+		 * otherwise a random one
+		 */
+		private int detectiveMove (int ply) {
+			int count = this.state.generateMoves(ply, this.state.nextDetective());
+			int[] moves = this.state.moves(ply);
+			if (this.random.nextInt(4) == 0) return moves[this.random.nextInt(count)];
+			int mrxLocation = this.state.location(SearchState.MRX);
+			int best = moves[0], bestDistance = Integer.MAX_VALUE, ties = 0;
+			for (int i = 0; i < count; ++i) {
+				int distance = MonteCarlo.this.distances.distance(SearchState.destination(moves[i]), mrxLocation);
+				if (distance < bestDistance) {
+					best = moves[i];
+					bestDistance = distance;
+					ties = 1;
+				}
+				// Picks one of the closest moves at random
+				else if (distance == bestDistance && this.random.nextInt(++ties) == 0) best = moves[i];
+			}
+			return best;
+		}
+
+		/**
+		 * @param node the node
+		 * @return the distance from the node to the closest detective
+		 */
+		private int distanceToDetectives (int node) {
+			int distance = Integer.MAX_VALUE;
+			for (int detective = 1; detective < this.state.players(); ++detective) {
+				distance = Math.min(distance, MonteCarlo.this.distances.distance(this.state.location(detective), node));
+			}
+			return distance;
+		}
+
+		/**
+		 * Looks for the node of the game state with the given hash where it is MrX's turn, down to the given depth;
+		 * the moves are made on the search state and unmade before returning
+		 *
+		 * @param node the node
+		 * @param hash the hash of the game state
+		 * @param depth the number of levels of the tree still to look at below the node
+		 * @return the index of the node; -1 if there is none
+		 */
+		private int find (int node, long hash, int depth) {
+			if (node != 0 && this.state.hash() == hash && this.state.isMrxTurn()) return node;
+			if (depth == 0) return -1;
+			int first = this.nodes.firstChildren[node];
+			for (int child = first; child < first + this.nodes.childCounts[node]; ++child) {
+				this.state.make(this.nodes.moves[child]);
+				int found = find(child, hash, depth - 1);
+				this.state.unmake();
+				if (found != -1) return found;
+			}
+			return -1;
+		}
+	}
+}
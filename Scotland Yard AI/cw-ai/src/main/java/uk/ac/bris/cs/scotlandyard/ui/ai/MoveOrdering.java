@@ -0,0 +1,229 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Orders the moves of a player so that alpha-beta cuts off as early as possible: captures of MrX (and, for MrX,
+ * escapes from a detective next to him) go first, then the killer moves of the ply (the last two moves that cut
+ * off in it), then the moves with the best history (how often and how deep moves to the same destination cut
+ * off), and finally the moves that get closest to MrX (for a detective) or furthest from the nearest detective
+ * (for MrX). The best move of the transposition table is searched before all of them by the search itself.
+ * <br>
+ * The order is kept as indices into the moves generated, so the moves themselves (and the indices the
+ * transposition table stores) stay in the order they are generated. The killer moves and the history are
+ * learnt from the cutoffs of the search, so every searcher has its own.
+ */
+final class MoveOrdering {
+
+	/**
+	 * The number of killer moves kept per ply
+	 */
+	private static final int KILLERS = 2;
+	/**
+	 * The score of a capture or an escape; the scores of the other moves are lower
+	 */
+	private static final int CAPTURE_SCORE = 1 << 28;
+	/**
+	 * The score of the first killer move of a ply; the second one scores one less
+	 */
+	private static final int KILLER_SCORE = 1 << 27;
+	/**
+	 * The largest history of a destination before the history of the player is halved
+	 */
+	private static final int MAX_HISTORY = 1 << 18;
+	/**
+	 * The base 2 logarithm of the weight of the history in a score, so that the distance only breaks ties
+	 */
+	private static final int HISTORY_SHIFT = 7;
+
+	/**
+	 * The distances between every pair of nodes of the game graph
+	 */
+	private final DistanceOracle distances;
+	/**
+	 * False to order the moves by distance only, as the search did before the other heuristics were added
+	 */
+	private final boolean enabled;
+	/**
+	 * Orders[ply] stores the indices of the moves of that ply, best first
+	 */
+	private int[][] orders = new int[0][];
+	/**
+	 * Scores[ply] stores the score of every move of that ply, by index
+	 */
+	private int[][] scores = new int[0][];
+	/**
+	 * Killers[ply] stores the killer moves of that ply, most recent first; 0 when there are none yet
+	 */
+	private int[][] killers = new int[0][];
+	/**
+	 * History[player][destination] stores the history of the moves of the player to the destination
+	 */
+	private int[][] history = new int[0][];
+
+	/**
+	 * MoveOrdering constructor
+	 *
+	 * @param distances the distances between every pair of nodes of the game graph
+	 * @param enabled false to order the moves by distance only
+	 */
+	MoveOrdering(@Nonnull DistanceOracle distances, boolean enabled) {
+		this.distances = distances;
+		this.enabled = enabled;
+	}
+
+	//-------------------- Core Functions --------------------//
+
+	/**
+	 * Forgets the killer moves, which belong to the plies of the last search, and halves the history, so that
+	 * it favours what the new search learns
+	 */
+	void newSearch() {
+		// The plies and players never ordered or learnt from have no arrays
+		for (int[] plyKillers : killers) {
+			if (plyKillers != null) Arrays.fill(plyKillers, 0);
+		}
+		for (int[] playerHistory : history) {
+			if (playerHistory == null) continue;
+			for (int i = 0; i < playerHistory.length; ++i) playerHistory[i] >>= 1;
+		}
+	}
+
+	/**
+	 * Keeps one move per destination (the first one generated) and orders them, best first
+	 *
+	 * @param state the search state of the current game state
+	 * @param player the index of the player moving
+	 * @param moves the moves of the player, as generated
+	 * @param count the number of moves of the player
+	 * @param ply the ply of the search
+	 * @param destinations the (cleared) set of the destinations already checked in the ply, as a bitset
+	 * @return the number of moves kept; see {@link #order(int)}
+	 */
+	int order(@Nonnull SearchState state, int player, int[] moves, int count, int ply, long[] destinations) {
+		int[] order = grow(ply, count);
+		int[] moveScores = this.scores[ply];
+		int mrxLocation = state.location(SearchState.MRX);
+		// Only the distances of a detective's moves use the mask, which holds the transports it has tickets for;
+		// MrX's moves are scored by the distance of the nearest detective instead
+		int mask = player == SearchState.MRX ? DistanceOracle.ALL_TRANSPORTS : state.transportMask(player);
+		// MrX is in danger if a detective can reach him in a single move
+		boolean threatened = player == SearchState.MRX && nearestDetective(state, mrxLocation) <= 1;
+		int kept = 0;
+		for (int i = 0; i < count; ++i) {
+			int move = moves[i];
+			int destination = SearchState.destination(move);
+			if ((destinations[destination >>> 6] & 1L << destination) != 0) continue;
+			destinations[destination >>> 6] |= 1L << destination;
+			int score;
+			if (player == SearchState.MRX) {
+				int distance = nearestDetective(state, destination);
+				score = !this.enabled ? 0
+						: threatened && distance > 1 ? CAPTURE_SCORE + distance : heuristicScore(move, player, destination, ply) + distance;
+			}
+			else {
+				// Closer is better
+				int distance = DistanceOracle.UNREACHABLE - this.distances.distance(mask, destination, mrxLocation);
+				score = !this.enabled ? distance
+						: destination == mrxLocation ? CAPTURE_SCORE : heuristicScore(move, player, destination, ply) + distance;
+			}
+			// Insertion sort, keeping the moves with the same score in the order they are generated
+			int j = kept++;
+			for (; j > 0 && moveScores[j - 1] < score; --j) {
+				order[j] = order[j - 1];
+				moveScores[j] = moveScores[j - 1];
+			}
+			order[j] = i;
+			moveScores[j] = score;
+		}
+		return kept;
+	}
+
+	/**
+	 * @param ply the ply given to {@link #order}
+	 * @return the indices of the moves ordered for the ply, best first
+	 */
+	int[] order(int ply) {
+		return this.orders[ply];
+	}
+
+	/**
+	 * Learns from a move that cut off the search: it becomes the first killer move of its ply, and the history
+	 * of its destination grows with the depth searched below it. Captures are not learnt, as they always go first
+	 *
+	 * @param state the search state of the game state the move was made in
+	 * @param move the encoded move
+	 * @param ply the ply of the search
+	 * @param depth the depth searched below the move
+	 */
+	void cutoff(@Nonnull SearchState state, int move, int ply, int depth) {
+		if (!this.enabled) return;
+		int player = SearchState.player(move);
+		int destination = SearchState.destination(move);
+		if (player != SearchState.MRX && destination == state.location(SearchState.MRX)) return;
+		int[] plyKillers = this.killers[ply];
+		if (plyKillers[0] != move) {
+			System.arraycopy(plyKillers, 0, plyKillers, 1, KILLERS - 1);
+			plyKillers[0] = move;
+		}
+		if (player >= this.history.length) this.history = Arrays.copyOf(this.history, player + 1);
+		if (this.history[player] == null) this.history[player] = new int[this.distances.size()];
+		int[] playerHistory = this.history[player];
+		playerHistory[destination] += depth * depth;
+		if (playerHistory[destination] > MAX_HISTORY) {
+			for (int i = 0; i < playerHistory.length; ++i) playerHistory[i] >>= 1;
+		}
+	}
+
+	//-------------------- Auxiliary Functions --------------------//
+
+	/**
+	 * @param move the encoded move
+	 * @param player the index of the player moving
+	 * @param destination the destination of the move
+	 * @param ply the ply of the search
+	 * @return the score of the move from the killer moves and the history, without the distance
+	 */
+	private int heuristicScore(int move, int player, int destination, int ply) {
+		int[] plyKillers = this.killers[ply];
+		for (int k = 0; k < KILLERS; ++k) {
+			if (plyKillers[k] == move) return KILLER_SCORE - k;
+		}
+		if (player >= this.history.length || this.history[player] == null) return 0;
+		return this.history[player][destination] << HISTORY_SHIFT;
+	}
+
+	/**
+	 * @param state the search state
+	 * @param node the node
+	 * @return the number of moves the detective closest to the node needs to reach it, given its transports
+	 */
+	private int nearestDetective(SearchState state, int node) {
+		int nearest = DistanceOracle.UNREACHABLE;
+		for (int detective = 1; detective < state.players(); ++detective) {
+			nearest = Math.min(nearest, this.distances.distance(state.transportMask(detective), state.location(detective), node));
+		}
+		return nearest;
+	}
+
+	/**
+	 * @param ply the ply
+	 * @param count the number of moves of the ply
+	 * @return the order of the ply, grown to hold the moves
+	 */
+	private int[] grow(int ply, int count) {
+		if (ply >= this.orders.length) {
+			this.orders = Arrays.copyOf(this.orders, ply + 1);
+			this.scores = Arrays.copyOf(this.scores, ply + 1);
+			this.killers = Arrays.copyOf(this.killers, ply + 1);
+		}
+		if (this.orders[ply] == null || this.orders[ply].length < count) {
+			this.orders[ply] = new int[Math.max(count, 16)];
+			this.scores[ply] = new int[this.orders[ply].length];
+		}
+		if (this.killers[ply] == null) this.killers[ply] = new int[KILLERS];
+		return this.orders[ply];
+	}
+}
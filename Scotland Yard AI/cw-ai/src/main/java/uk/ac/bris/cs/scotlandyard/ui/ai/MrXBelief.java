@@ -0,0 +1,253 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+/**
+ * The nodes MrX can be at as far as the detectives know, as a bitset over the nodes of the graph.
+ * <br>
+ * The set starts with the nodes MrX can start at ({@link ScotlandYard#MRX_LOCATIONS}) and follows his travel log:
+ * a reveal round ({@link GameSetup#rounds}) shrinks it to the revealed node, and any other round replaces every
+ * node with the nodes it leads to with the ticket MrX used. Only the log entries added since the last update are
+ * applied, and the nodes of the detectives are always left out.
+ */
+final class MrXBelief {
+
+	/**
+	 * The graph of the game setup
+	 */
+	private final DistanceOracle graph;
+	/**
+	 * The number of longs of a bitset of nodes
+	 */
+	private final int words;
+	/**
+	 * Reach[ticket][node] stores the bitset of the nodes the node leads to with that ticket
+	 */
+	private final long[][][] reach;
+	/**
+	 * The nodes MrX can be at
+	 */
+	private long[] nodes;
+	/**
+	 * The bitset the next set of nodes is built in
+	 */
+	private long[] next;
+	/**
+	 * The number of log entries already applied
+	 */
+	private int entries;
+	/**
+	 * False until the set is filled with the nodes MrX can start at
+	 */
+	private boolean started;
+
+	/**
+	 * MrXBelief constructor
+	 *
+	 * @param graph the graph of the game setup
+	 */
+	MrXBelief(@Nonnull DistanceOracle graph) {
+		this.graph = graph;
+		this.words = (graph.size() + 63) / 64;
+		this.nodes = new long[words];
+		this.next = new long[words];
+		ScotlandYard.Ticket[] tickets = ScotlandYard.Ticket.values();
+		this.reach = new long[tickets.length][graph.size()][words];
+		for (ScotlandYard.Ticket ticket : tickets) {
+			if (ticket == ScotlandYard.Ticket.DOUBLE) continue;
+			int mask = ticket == ScotlandYard.Ticket.SECRET ? DistanceOracle.ALL_TRANSPORTS : transports(ticket);
+			for (int node = 0; node < graph.size(); ++node) {
+				int[] adjacentNodes = graph.neighbours(node);
+				int[] edgeTransports = graph.transports(node);
+				for (int i = 0; i < adjacentNodes.length; ++i) {
+					if ((edgeTransports[i] & mask) != 0) add(reach[ticket.ordinal()][node], adjacentNodes[i]);
+				}
+			}
+		}
+	}
+
+	//-------------------- Core Functions --------------------//
+
+	/**
+	 * Forgets the game followed so far; the next update starts over from the nodes MrX can start at
+	 */
+	void reset() {
+		started = false;
+	}
+
+	/**
+	 * Applies the log entries MrX added since the last update, then leaves out the nodes of the detectives
+	 *
+	 * @param board the current board
+	 */
+	void update(@Nonnull Board board) {
+		List<LogEntry> log = board.getMrXTravelLog();
+		// A shorter log means a new game
+		if (!started || log.size() < entries) start();
+		for (; entries < log.size(); ++entries) {
+			LogEntry entry = log.get(entries);
+			if (board.getSetup().rounds.get(entries) && entry.location().isPresent()) {
+				Arrays.fill(nodes, 0);
+				add(nodes, entry.location().get());
+			}
+			else expand(reach[entry.ticket().ordinal()]);
+		}
+		removeDetectives(board);
+		// Only happens when MrX did not start at one of the usual nodes; he can then be anywhere
+		if (size() == 0) {
+			for (int node = 0; node < graph.size(); ++node) {
+				if (graph.neighbours(node).length > 0) add(nodes, node);
+			}
+			removeDetectives(board);
+		}
+	}
+
+	/**
+	 * @param into the bitset where the nodes MrX can be at after his next move (whatever ticket he uses) are stored
+	 */
+	void frontier(@Nonnull long[] into) {
+		Arrays.fill(into, 0);
+		forEach(nodes, node -> or(into, reach[ScotlandYard.Ticket.SECRET.ordinal()][node]));
+	}
+
+	/**
+	 * @param ticket the ticket
+	 * @param node the node
+	 * @return the bitset of the nodes the node leads to with the ticket; it is shared, so it must not be modified
+	 */
+	long[] reach(@Nonnull ScotlandYard.Ticket ticket, int node) {
+		return reach[ticket.ordinal()][node];
+	}
+
+	/**
+	 * @return the nodes MrX can be at; the bitset is shared, so it must not be modified
+	 */
+	long[] nodes() {
+		return nodes;
+	}
+
+	/**
+	 * @param node the node
+	 * @return true if MrX can be at the node
+	 */
+	boolean contains(int node) {
+		return contains(nodes, node);
+	}
+
+	/**
+	 * @return the number of nodes MrX can be at
+	 */
+	int size() {
+		return count(nodes);
+	}
+
+	/**
+	 * @return the number of longs of a bitset of nodes
+	 */
+	int words() {
+		return words;
+	}
+
+	/**
+	 * @param set the bitset
+	 * @param node the node
+	 * @return true if the node is in the bitset
+	 */
+	static boolean contains(@Nonnull long[] set, int node) {
+		return (set[node >>> 6] & 1L << node) != 0;
+	}
+
+	/**
+	 * @param set the bitset
+	 * @param node the node to add to the bitset
+	 */
+	static void add(@Nonnull long[] set, int node) {
+		set[node >>> 6] |= 1L << node;
+	}
+
+	/**
+	 * @param set the bitset where the nodes of the other bitset are added
+	 * @param other the other bitset
+	 */
+	static void or(@Nonnull long[] set, @Nonnull long[] other) {
+		for (int i = 0; i < set.length; ++i) set[i] |= other[i];
+	}
+
+	/**
+	 * @param set the bitset
+	 * @return the number of nodes in the bitset
+	 */
+	static int count(@Nonnull long[] set) {
+		int count = 0;
+		for (long word : set) count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * @param set the bitset
+	 * @param action what is done with every node of the bitset, in increasing order
+	 */
+	static void forEach(@Nonnull long[] set, @Nonnull IntConsumer action) {
+		for (int i = 0; i < set.length; ++i) {
+			for (long word = set[i]; word != 0; word &= word - 1) action.accept(i * 64 + Long.numberOfTrailingZeros(word));
+		}
+	}
+
+	//-------------------- Auxiliary Functions --------------------//
+
+	/**
+	 * Fills the set with the nodes MrX can start at
+	 */
+	private void start() {
+		Arrays.fill(nodes, 0);
+		for (int node : ScotlandYard.MRX_LOCATIONS) {
+			if (node < graph.size()) add(nodes, node);
+		}
+		entries = 0;
+		started = true;
+	}
+
+	/**
+	 * Replaces every node of the set with the nodes it leads to
+	 *
+	 * @param reach reach[node] stores the bitset of the nodes the node leads to
+	 */
+	private void expand(long[][] reach) {
+		Arrays.fill(next, 0);
+		forEach(nodes, node -> or(next, reach[node]));
+		long[] expanded = next;
+		next = nodes;
+		nodes = expanded;
+	}
+
+	/**
+	 * Leaves the nodes of the detectives out of the set
+	 *
+	 * @param board the current board
+	 */
+	private void removeDetectives(Board board) {
+		for (Piece piece : board.getPlayers()) {
+			if (piece.isDetective()) {
+				board.getDetectiveLocation((Piece.Detective) piece).ifPresent(node -> nodes[node >>> 6] &= ~(1L << node));
+			}
+		}
+	}
+
+	/**
+	 * @param ticket a ticket of a transport
+	 * @return the bitmask of the transports the ticket can be used on
+	 */
+	private static int transports(ScotlandYard.Ticket ticket) {
+		int mask = 0;
+		for (ScotlandYard.Transport transport : ScotlandYard.Transport.values()) {
+			if (transport.requiredTicket() == ticket) mask |= 1 << transport.ordinal();
+		}
+		return mask;
+	}
+}
@@ -0,0 +1,14 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+
+/**
+ * An AI that counts the work its search does, so that its speed can be measured (see {@link Tournament})
+ */
+public interface NodeCounter {
+
+	/**
+	 * @return the number of nodes searched by the last call to {@link Ai#pickMove}
+	 */
+	long getNodes();
+}
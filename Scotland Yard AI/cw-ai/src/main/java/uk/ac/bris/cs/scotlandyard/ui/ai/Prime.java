@@ -1,25 +1,219 @@
 package uk.ac.bris.cs.scotlandyard.ui.ai;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
 
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
 import io.atlassian.fugue.Pair;
 import uk.ac.bris.cs.scotlandyard.model.*;
 
 /**
  * A class that is used to automate moves for MrX in a ScotlandYard game
+ * <br>
+ * The game trees are searched by the rules of the coursework model, which decide a few rare game states
+ * differently from the reference model; see {@link SearchState#winner()}
  */
 @SuppressWarnings("UnstableApiUsage")
-public class Prime implements Ai {
+public class Prime implements Ai, NodeCounter, SideRestricted {
 
 	/**
 	 * The game setup
 	 */
 	private GameSetup setup;
+	/**
+	 * The distances between every pair of nodes of the game graph
+	 */
+	private DistanceOracle distances;
+	/**
+	 * Set when the other searchers can stop because one of them found a move where MrX wins
+	 */
+	private volatile boolean stopped;
+	/**
+	 * Set by {@link #onTerminate()} to stop the search and the pondering running, if any; replaced once they
+	 * have stopped, so that the next game can be searched
+	 */
+	private volatile AtomicBoolean terminating = new AtomicBoolean();
+	/**
+	 * Held by {@link #pickMove} and by whatever starts or shuts down the threads, so that the threads are never
+	 * shut down under a running search
+	 */
+	private final Object lock = new Object();
+	/**
+	 * The keys used to hash the game states of the game setup
+	 */
+	private Zobrist zobrist;
+	/**
+	 * The results of the searches so far, kept between moves and shared by the searchers
+	 */
+	private TranspositionTable table;
+	/**
+	 * One searcher per thread
+	 */
+	private Searcher[] searchers = new Searcher[0];
+	/**
+	 * The threads the root moves are searched on; null until a parallel search is needed. Guarded by
+	 * {@link #lock}
+	 */
+	private ForkJoinPool pool;
+	/**
+	 * Searches the game tree after the last move of MrX while the detectives are moving
+	 */
+	private Searcher ponderer;
+	/**
+	 * The thread the ponderer runs on; null unless pondering is enabled and the game has started. Guarded by
+	 * {@link #lock}
+	 */
+	private ExecutorService ponderThread;
+	/**
+	 * The pondering running on the ponder thread; null if there is none. Guarded by {@link #lock}
+	 */
+	private Future<?> pondering;
+	/**
+	 * The number of game states searched by the pondering before the last call to {@link #pickMove}
+	 */
+	private long ponderNodes;
+	/**
+	 * The board of the last call to {@link #pickMove}; null before the first one. Guarded by {@link #lock}
+	 */
+	private Board lastBoard;
+	/**
+	 * The move picked by the last call to {@link #pickMove}. Guarded by {@link #lock}
+	 */
+	private Move lastMove;
+	/**
+	 * The depth of the search below the game state of the last call to {@link #pickMove} found in the
+	 * transposition table when it started; 0 if there was none
+	 */
+	private int reusedDepth;
+	/**
+	 * The number of game states searched by the last call to {@link #pickMove}
+	 */
+	private long nodes;
+	/**
+	 * The time the last call to {@link #pickMove} spent searching, in nanoseconds
+	 */
+	private long searchTime;
+	/**
+	 * The number of cutoffs in the game trees searched by the last call to {@link #pickMove}
+	 */
+	private long cutoffs;
+	/**
+	 * The number of those cutoffs caused by the first move searched
+	 */
+	private long firstMoveCutoffs;
+	/**
+	 * The depth of the last iteration completed by the last call to {@link #pickMove}
+	 */
+	private int depth;
+
+	/**
+	 * How the moves of the detectives are searched
+	 */
+	private final SearchMode searchMode;
+	/**
+	 * The number of threads searching the root moves
+	 */
+	private final int threads;
+	/**
+	 * False to order the moves by distance only (see {@link MoveOrdering}), to measure what the other heuristics gain
+	 */
+	private final boolean moveOrdering;
+	/**
+	 * True to keep searching in the background while the detectives are moving
+	 */
+	private final boolean ponder;
+
+	/**
+	 * The deepest game tree we search
+	 */
+	private static final int MAX_DEPTH = 20;
+	/**
+	 * The minimum time we keep from the timeout to return the move to the game, in milliseconds
+	 */
+	private static final long SAFETY_MARGIN = 500;
+	/**
+	 * The base 2 logarithm of the number of entries of the transposition table
+	 */
+	private static final int TABLE_BITS = 20;
+	/**
+	 * The longest time we ponder after a move, in milliseconds
+	 */
+	private static final long MAX_PONDER_TIME = 60000;
+
+	/**
+	 * Prime constructor; the search mode, the number of threads, the move ordering and the pondering are read
+	 * from the {@code prime.searchMode} (JOINT by default, see {@link SearchMode}), {@code prime.threads}
+	 * (1 by default), {@code prime.moveOrdering} (true by default) and {@code prime.ponder} (false by default)
+	 * system properties
+	 */
+	public Prime() {
+		this(SearchMode.valueOf(System.getProperty("prime.searchMode", SearchMode.JOINT.name()).toUpperCase(Locale.ROOT)),
+				Integer.getInteger("prime.threads", 1),
+				Boolean.parseBoolean(System.getProperty("prime.moveOrdering", "true")),
+				Boolean.getBoolean("prime.ponder"));
+	}
+
+	/**
+	 * Prime constructor for a single thread
+	 *
+	 * @param searchMode how the moves of the detectives are searched
+	 */
+	public Prime(@Nonnull SearchMode searchMode) {
+		this(searchMode, 1);
+	}
+
+	/**
+	 * Prime constructor
+	 *
+	 * @param searchMode how the moves of the detectives are searched
+	 * @param threads the number of threads searching the root moves
+	 * @throws IllegalArgumentException if the number of threads is not positive
+	 */
+	public Prime(@Nonnull SearchMode searchMode, int threads) {
+		this(searchMode, threads, true);
+	}
+
+	/**
+	 * Prime constructor
+	 *
+	 * @param searchMode how the moves of the detectives are searched
+	 * @param threads the number of threads searching the root moves
+	 * @param moveOrdering false to order the moves by distance only, see {@link MoveOrdering}
+	 * @throws IllegalArgumentException if the number of threads is not positive
+	 */
+	public Prime(@Nonnull SearchMode searchMode, int threads, boolean moveOrdering) {
+		this(searchMode, threads, moveOrdering, false);
+	}
+
+	/**
+	 * Prime constructor
+	 *
+	 * @param searchMode how the moves of the detectives are searched
+	 * @param threads the number of threads searching the root moves
+	 * @param moveOrdering false to order the moves by distance only, see {@link MoveOrdering}
+	 * @param ponder true to keep searching in the background while the detectives are moving, between
+	 * {@link #onStart()} and {@link #onTerminate()}
+	 * @throws IllegalArgumentException if the number of threads is not positive
+	 */
+	public Prime(@Nonnull SearchMode searchMode, int threads, boolean moveOrdering, boolean ponder) {
+		if (threads < 1) throw new IllegalArgumentException("Prime needs at least one thread: " + threads);
+		this.searchMode = Objects.requireNonNull(searchMode);
+		this.threads = threads;
+		this.moveOrdering = moveOrdering;
+		this.ponder = ponder;
+	}
 
 	//-------------------- Core Functions --------------------//
 
@@ -33,212 +227,494 @@ public class Prime implements Ai {
 	}
 
 	/**
-	 * Picks the best move for MrX in the current game
+	 * @param piece the piece
+	 * @return true if the piece is MrX, the only one this AI plays
+	 */
+	@Override
+	public boolean supports(@Nonnull Piece piece) {
+		return piece.isMrX();
+	}
+
+	/**
+	 * Starts the thread the pondering runs on, if pondering is enabled
+	 */
+	@Override
+	public void onStart() {
+		synchronized (this.lock) {
+			if (this.ponder && this.ponderThread == null) {
+				this.ponderThread = Executors.newSingleThreadExecutor(runnable -> {
+					Thread thread = new Thread(runnable, "Prime ponder");
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+		}
+	}
+
+	/**
+	 * Picks the best move for MrX in the current game by searching deeper and deeper game trees
+	 * until the time given by the timeout pair (minus a safety margin) runs out. When pondering, the
+	 * background search is stopped first, and what it stored in the transposition table is reused;
+	 * it starts again from the move picked.
+	 * <br>
+	 * If the board follows from the board of the last call, the game state was already searched by that call
+	 * (or the pondering) as part of its game tree: the root moves start in the order that search found, and
+	 * the iterations it already covers are skipped
 	 *
 	 * @param board the current board
 	 * @param timeoutPair the timeout pair
 	 * @return the best move for MrX
+	 * @throws IllegalArgumentException if it is not MrX's turn on the board
 	 */
 	@Nonnull
 	@Override
 	public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
-		this.setup = board.getSetup();
-		GameStateSubstitute gameStateSubstitute = new GameStateSubstitute(board);
-		Integer destination;
-		// The destinations already checked
-		List<Integer> mrxDestinations = new ArrayList<>();
-		// The best value for the maximizing player (MrX) so far, i.e., the largest value so far
-		int alpha = Integer.MIN_VALUE;
-		// The value of the current evaluation
-		int eval;
-		// The best move for MrX so far
-		Move bestMove = gameStateSubstitute.moves.asList().get(0);
-
-		for (Move mrxMove : gameStateSubstitute.moves) {
-			destination = getDestination(mrxMove);
-			if (!mrxDestinations.contains(destination)) {
-				GameStateSubstitute helper = new GameStateSubstitute(gameStateSubstitute);
-				Iterable<ScotlandYard.Ticket> requiredTickets = mrxMove.tickets();
-				Integer secretCount = -1;
-				for (ScotlandYard.Ticket ticket : requiredTickets) {
-					if (secretCount.equals(-1) && ticket.equals(ScotlandYard.Ticket.SECRET)) {
-						secretCount = 1;
-					}
-					else if (!secretCount.equals(-1) && ticket.equals(ScotlandYard.Ticket.SECRET)) {
-						secretCount += 1;
+		return pickMove(board, System.nanoTime() + timeoutPair.right().toNanos(timeoutPair.left()), new AtomicBoolean(), move -> {});
+	}
+
+	/**
+	 * Same as {@link #pickMove(Board, Pair)} with a deadline instead of a timeout, publishing the first root move
+	 * and then the best move of every iteration completed as the search goes deeper, and stopping as soon as it
+	 * is cancelled.
+	 * <br>
+	 * This is the deadline contract of the model's {@code Ai}, which lets the game play the best move so far
+	 * instead of forfeiting; it overrides the default adapter there. It has no {@code @Override} as this module
+	 * builds against the published API, which predates it
+	 *
+	 * @param board the current board
+	 * @param deadline the time, as given by {@link System#nanoTime()}, by which the move must be picked
+	 * @param cancelled set once the move is no longer wanted
+	 * @param bestSoFar receives the best move for MrX found so far, every time it changes
+	 * @return the best move for MrX
+	 * @throws IllegalArgumentException if it is not MrX's turn on the board
+	 */
+	@Nonnull
+	public Move pickMove(@Nonnull Board board, long deadline, @Nonnull AtomicBoolean cancelled, @Nonnull Consumer<Move> bestSoFar) {
+		requireMrXTurn(board, name());
+		synchronized (this.lock) {
+			long start = System.nanoTime();
+			long searchDeadline = start + getSearchTime(deadline - start);
+			stopPondering();
+			if (this.setup != board.getSetup()) {
+				this.setup = board.getSetup();
+				this.distances = DistanceOracle.of(this.setup);
+				this.zobrist = new Zobrist(this.distances.size());
+				this.table = new TranspositionTable(TABLE_BITS);
+				this.searchers = new Searcher[this.threads];
+				for (int i = 0; i < this.threads; ++i) this.searchers[i] = new Searcher();
+				this.ponderer = new Searcher();
+			}
+			if (this.threads > 1 && this.pool == null) this.pool = new ForkJoinPool(this.threads);
+			this.table.newSearch();
+			SearchState state = new SearchState(board, this.distances, this.zobrist);
+			for (Searcher searcher : this.searchers) {
+				searcher.state = new SearchState(state);
+				searcher.deadline = searchDeadline;
+				searcher.cancelled = cancelled;
+				searcher.ordering.newSearch();
+				searcher.nodes = 0;
+				searcher.cutoffs = 0;
+				searcher.firstMoveCutoffs = 0;
+			}
+			List<Move> rootMoves = getRootMoves(board, state);
+			// Each MrX move and each round of detective moves is one level of the game tree
+			int maxDepth = Math.min(MAX_DEPTH, 2 * (this.setup.rounds.size() - state.round()));
+			// The first iteration not covered by the last search
+			int startDepth = 1;
+			this.reusedDepth = 0;
+			long entry = isContinuation(board, state) ? this.table.probe(state.hash()) : TranspositionTable.MISS;
+			if (entry != TranspositionTable.MISS) {
+				this.reusedDepth = TranspositionTable.depth(entry);
+				orderRootMoves(state, rootMoves, TranspositionTable.move(entry));
+				// The moves of a game state are searched one level less deep than the game state itself
+				startDepth = Math.max(1, Math.min(this.reusedDepth - 1, maxDepth));
+			}
+			// The score of each root move in the last completed iteration
+			Map<Move, Integer> scores = new HashMap<>();
+			// The best move for MrX in the last completed iteration
+			Move bestMove = rootMoves.get(0);
+			bestSoFar.accept(bestMove);
+			this.depth = 0;
+
+			for (int depth = startDepth; depth <= Math.max(1, maxDepth); ++depth) {
+				Map<Move, Integer> iterationScores = new HashMap<>();
+				Move iterationBestMove = this.threads == 1 ? searchRoot(rootMoves, depth, iterationScores)
+						: searchRootInParallel(rootMoves, depth, iterationScores);
+				if (iterationBestMove == null) {
+					/* The time ran out before this iteration was completed; we can only trust the moves
+					it has already searched if no iteration was completed before */
+					if (depth == startDepth && !iterationScores.isEmpty()) {
+						bestMove = Collections.max(iterationScores.entrySet(), Map.Entry.comparingByValue()).getKey();
 					}
+					break;
 				}
-				if (secretCount.equals(-1) ||
-						gameStateSubstitute.mrX.hasAtLeast(ScotlandYard.Ticket.SECRET, secretCount)) {
-					helper = helper.advance(mrxMove);
-					mrxDestinations.add(destination);
-				}
-				else continue;
-				// It is the detectives' turn, so we must call minimax to go down the game tree
-				eval = minimax(helper, 2, alpha, Integer.MAX_VALUE, false, destination);
+				if (iterationBestMove != bestMove) bestSoFar.accept(iterationBestMove);
+				bestMove = iterationBestMove;
+				scores = iterationScores;
+				this.depth = depth;
 				// Checks if we found a game state where MrX wins
-				if (eval == 2000000) return mrxMove;
-				if (eval > alpha) {
-					alpha = eval;
-					bestMove = mrxMove;
-				}
+				if (scores.get(bestMove) == 2000000) break;
+				// The best moves of this iteration are searched first in the next one, so alpha-beta prunes more
+				final Map<Move, Integer> previousScores = scores;
+				rootMoves.sort(Comparator.comparingInt((Move move) -> previousScores.getOrDefault(move, Integer.MIN_VALUE)).reversed());
+			}
+			this.searchTime = System.nanoTime() - start;
+			this.nodes = 0;
+			this.cutoffs = 0;
+			this.firstMoveCutoffs = 0;
+			for (Searcher searcher : this.searchers) {
+				this.nodes += searcher.nodes;
+				this.cutoffs += searcher.cutoffs;
+				this.firstMoveCutoffs += searcher.firstMoveCutoffs;
 			}
+			this.lastBoard = board;
+			this.lastMove = bestMove;
+			if (!cancelled.get() && !this.terminating.get()) startPondering(state, bestMove);
+			return bestMove;
 		}
-		return bestMove;
+	}
+
+	/**
+	 * Stops the search and the pondering, if any, then shuts down the ponder thread and the threads of the
+	 * parallel search once nothing runs on them; the next game does not follow from this one. It may be called
+	 * from another thread while {@link #pickMove} runs, which then returns the best move found so far
+	 */
+	@Override
+	public void onTerminate() {
+		this.terminating.set(true);
+		synchronized (this.lock) {
+			stopPondering();
+			if (this.ponderThread != null) this.ponderThread.shutdown();
+			this.ponderThread = null;
+			this.lastBoard = null;
+			this.lastMove = null;
+			if (this.pool != null) this.pool.shutdown();
+			this.pool = null;
+			this.terminating = new AtomicBoolean();
+		}
+	}
+
+	/**
+	 * @return the number of game states searched by the last call to {@link #pickMove}
+	 */
+	@Override
+	public long getNodes() {
+		return this.nodes;
+	}
+
+	/**
+	 * @return the number of game states searched per second by the last call to {@link #pickMove}
+	 */
+	public double getNodesPerSecond() {
+		return this.searchTime == 0 ? 0 : this.nodes * 1e9 / this.searchTime;
+	}
+
+	/**
+	 * @return the number of game states searched by the pondering before the last call to {@link #pickMove}
+	 */
+	public long getPonderNodes() {
+		return this.ponderNodes;
+	}
+
+	/**
+	 * @return the depth of the search below the game state of the last call to {@link #pickMove} that an earlier
+	 * call (or the pondering) left in the transposition table; 0 if there was none
+	 */
+	public int getReusedDepth() {
+		return this.reusedDepth;
+	}
+
+	/**
+	 * @return the depth of the last iteration completed by the last call to {@link #pickMove}; 0 if none was
+	 */
+	public int getDepth() {
+		return this.depth;
+	}
+
+	/**
+	 * @return the share of the cutoffs of the last call to {@link #pickMove} caused by the first move searched,
+	 * which is how close the move ordering is to the best one
+	 */
+	public double getFirstMoveCutoffRate() {
+		return this.cutoffs == 0 ? 0 : (double) this.firstMoveCutoffs / this.cutoffs;
 	}
 
 	//-------------------- Auxiliary Functions --------------------//
 
 	/**
-	 * @param move the move
-	 * @return the destination of the move
+	 * @param board the current board
+	 * @param name the name of the AI playing MrX
+	 * @throws IllegalArgumentException if it is not MrX's turn on the board, which an AI that only plays MrX
+	 * cannot search
 	 */
-	private Integer getDestination (Move move) {
+	static void requireMrXTurn(Board board, String name) {
+		Iterator<Move> moves = board.getAvailableMoves().iterator();
+		if (!moves.hasNext() || !moves.next().commencedBy().isMrX()) {
+			throw new IllegalArgumentException(name + " only plays MrX, but it is not MrX's turn");
+		}
+	}
+
+	/**
+	 * @param timeoutPair the timeout pair
+	 * @return the time we can spend searching, in nanoseconds; see {@link #getSearchTime(long)}
+	 */
+	static long getSearchTime (Pair<Long, TimeUnit> timeoutPair) {
+		return getSearchTime(timeoutPair.right().toNanos(timeoutPair.left()));
+	}
+
+	/**
+	 * @param timeout the time left to pick a move, in nanoseconds
+	 * @return the time we can spend searching, in nanoseconds; a fifth of the timeout (but at least
+	 * {@link #SAFETY_MARGIN} and at most half of it) is kept to return the move to the game
+	 */
+	static long getSearchTime (long timeout) {
+		long margin = Math.max(timeout / 5, TimeUnit.MILLISECONDS.toNanos(SAFETY_MARGIN));
+		return timeout - Math.min(margin, timeout / 2);
+	}
+
+	/**
+	 * Starts searching the game tree after the move of MrX on the ponder thread, if pondering; the results
+	 * are kept in the transposition table for the next call to {@link #pickMove}
+	 *
+	 * @param state the search state of the current game state
+	 * @param move the move of MrX picked
+	 */
+	private void startPondering (SearchState state, Move move) {
+		if (this.ponderThread == null) return;
+		SearchState ponderState = new SearchState(state);
+		ponderState.make(ponderState.encode(move));
+		if (ponderState.winner() != SearchState.NO_WINNER) return;
+		Searcher ponderer = this.ponderer;
+		ponderer.state = ponderState;
+		ponderer.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_PONDER_TIME);
+		ponderer.cancelled = new AtomicBoolean();
+		ponderer.ordering.newSearch();
+		ponderer.nodes = 0;
+		int maxDepth = Math.min(MAX_DEPTH, 2 * (this.setup.rounds.size() - ponderState.round()));
+		// The pondering stores its results as a search of its own
+		this.table.newSearch();
+		this.pondering = this.ponderThread.submit(() -> ponderer.ponder(maxDepth));
+	}
+
+	/**
+	 * Stops the pondering, if any, and waits for it to unwind
+	 */
+	private void stopPondering () {
+		this.ponderNodes = 0;
+		if (this.pondering == null) return;
+		this.ponderer.cancelled.set(true);
+		try {
+			this.pondering.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (CancellationException e) {
+			// The ponder thread was shut down before the pondering started
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("The pondering failed", e.getCause());
+		}
+		this.pondering = null;
+		this.ponderNodes = this.ponderer.nodes;
+	}
+
+	/**
+	 * @param board the current board
+	 * @param state the search state of the current board
+	 * @return true if the board follows from the board of the last call to {@link #pickMove} by the move it
+	 * picked, i.e., MrX made that move and the detectives made one round of moves since
+	 */
+	private boolean isContinuation (Board board, SearchState state) {
+		if (this.lastBoard == null || this.lastBoard.getSetup() != board.getSetup()) return false;
 		SpecVisitor visitor = new SpecVisitor();
-		move.visit(visitor);
-		// Checks if the move is a single move
-		if (visitor.destination != -1) return visitor.destination;
-			// If it is not, then it is a double move
-		else return visitor.destination2;
+		this.lastMove.visit(visitor);
+		// A double move takes two entries of the travel log
+		int entries = visitor.destination != -1 ? 1 : 2;
+		List<LogEntry> lastLog = this.lastBoard.getMrXTravelLog();
+		List<LogEntry> log = board.getMrXTravelLog();
+		if (log.size() != lastLog.size() + entries || !log.subList(0, lastLog.size()).equals(lastLog)) return false;
+		if (state.location(SearchState.MRX) != getDestination(this.lastMove)) return false;
+		// Every detective moved at most once since
+		for (Piece piece : board.getPlayers()) {
+			if (piece.isMrX()) continue;
+			Optional<Integer> lastLocation = this.lastBoard.getDetectiveLocation((Piece.Detective) piece);
+			Optional<Integer> location = board.getDetectiveLocation((Piece.Detective) piece);
+			if (lastLocation.isEmpty() || location.isEmpty()
+					|| this.distances.distance(lastLocation.get(), location.get()) > 1) return false;
+		}
+		return true;
 	}
 
 	/**
-	 * @param gameStateSubstitute the substitute for the current game state
-	 * @return the location of all detectives
+	 * Sorts the root moves by what the transposition table knows of them: the best move stored for the current
+	 * game state first, then the others by the score stored for the game state they lead to (unknown last)
+	 *
+	 * @param state the search state of the current game state
+	 * @param rootMoves the moves of MrX worth searching; they are sorted in place
+	 * @param tableMove the best move stored for the current game state, as an index in the order the moves are
+	 * generated; {@link TranspositionTable#NO_MOVE} if there is none
 	 */
-	private Set<Integer> getDetectivesLocations (GameStateSubstitute gameStateSubstitute){
-		Set<Integer> detectivesLocation = new HashSet<>();
-		ImmutableSet<Piece> piecesInTheGame = gameStateSubstitute.getPlayers();
-		for (Piece piece : piecesInTheGame) {
-			if (piece.isDetective()) {
-				if (gameStateSubstitute.getDetectiveLocation((Piece.Detective) piece).isPresent()) {
-					detectivesLocation.add(gameStateSubstitute.getDetectiveLocation((Piece.Detective) piece).get());
-				}
+	private void orderRootMoves (SearchState state, List<Move> rootMoves, int tableMove) {
+		int bestMove = TranspositionTable.NO_MOVE;
+		if (tableMove != TranspositionTable.NO_MOVE && tableMove < state.generateMoves(0)) bestMove = state.moves(0)[tableMove];
+		Map<Move, Integer> tableScores = new HashMap<>();
+		for (Move move : rootMoves) {
+			int encoded = state.encode(move);
+			if (encoded == bestMove) {
+				tableScores.put(move, Integer.MAX_VALUE);
+				continue;
 			}
+			state.make(encoded);
+			long entry = this.table.probe(state.hash());
+			state.unmake();
+			tableScores.put(move, entry == TranspositionTable.MISS ? Integer.MIN_VALUE : TranspositionTable.score(entry));
+		}
+		rootMoves.sort(Comparator.comparingInt((Move move) -> tableScores.get(move)).reversed());
+	}
+
+	/**
+	 * @param board the current board
+	 * @param state the search state of the current board
+	 * @return the moves of MrX worth searching, i.e., one move per destination
+	 */
+	private List<Move> getRootMoves (Board board, SearchState state) {
+		// The model also offers moves using more secret tickets than MrX has (two through ferries with a
+		// single one), so only the moves the search state generates are kept
+		Set<Integer> legalMoves = new HashSet<>();
+		int count = state.generateMoves(0);
+		for (int i = 0; i < count; ++i) legalMoves.add(state.moves(0)[i]);
+		List<Move> rootMoves = new ArrayList<>();
+		// The destinations already checked
+		Set<Integer> mrxDestinations = new HashSet<>();
+		for (Move mrxMove : board.getAvailableMoves()) {
+			if (!legalMoves.contains(state.encode(mrxMove))) continue;
+			if (mrxDestinations.add(getDestination(mrxMove))) rootMoves.add(mrxMove);
 		}
-		return detectivesLocation;
+		return rootMoves;
 	}
 
 	/**
-	 * Lets us build a game tree
+	 * Searches every root move up to the given depth (one iteration of the iterative deepening)
 	 *
-	 * @param gameStateSubstitute the substitute for the current game state
+	 * @param rootMoves the moves of MrX worth searching
 	 * @param depth the depth we want to search
-	 * @param alpha the best value for the maximizing player (MrX) so far, i.e., the largest value
-	 * @param beta the best value for the minimizing player (detectives) so far, i.e., the lowest value
-	 * @param maximizingPlayer true if we are the maximizing player, false otherwise
-	 * @param mrxLocation MrX's location
-	 * @return the best possible score
+	 * @param scores where the score of each root move searched is stored
+	 * @return the best move for MrX; null if the time ran out before every root move was searched
 	 */
-	private Integer minimax (GameStateSubstitute gameStateSubstitute, Integer depth, Integer alpha, Integer beta,
-						   Boolean maximizingPlayer, Integer mrxLocation) {
+	private Move searchRoot (List<Move> rootMoves, int depth, Map<Move, Integer> scores) {
+		Searcher searcher = this.searchers[0];
+		// The best value for the maximizing player (MrX) so far, i.e., the largest value so far
+		int alpha = Integer.MIN_VALUE;
 		// The value of the current evaluation
 		int eval;
+		// The best move for MrX so far
+		Move bestMove = rootMoves.get(0);
 
-		// Checks if we are in a leaf
-		if (depth == 0) {
-			Set<Integer> detectivesLocation = getDetectivesLocations(gameStateSubstitute);
-			// Returns the heuristic/static evaluation of the current game state
-			return score(detectivesLocation, gameStateSubstitute.mrX);
-		}
-		// Checks if we are in a level of the game tree where we want to maximize the score
-		int maxEval;
-		if (maximizingPlayer) {
-			/* The best value for the maximizing player so far in
-			this level of this branch in the game tree (the largest value so far) */
-			maxEval = Integer.MIN_VALUE;
-			// The destinations already checked
-			List<Integer> mrxDestinations = new ArrayList<>();
-			/* Checks if MrX can move
-			 If not, return a low score that will not be picked by MrX in the top level */
-			if (gameStateSubstitute.moves.isEmpty()) return 0;
-			for (Move mrxMove : gameStateSubstitute.moves) {
-				mrxLocation = getDestination(mrxMove);
-				if (!mrxDestinations.contains(mrxLocation)) {
-					GameStateSubstitute helper = new GameStateSubstitute(gameStateSubstitute);
-					Iterable<ScotlandYard.Ticket> requiredTickets = mrxMove.tickets();
-					Integer secretCount = -1;
-					for (ScotlandYard.Ticket ticket : requiredTickets) {
-						if (secretCount.equals(-1) && ticket.equals(ScotlandYard.Ticket.SECRET)) {
-							secretCount = 1;
-						}
-						else if (!secretCount.equals(-1) && ticket.equals(ScotlandYard.Ticket.SECRET)) {
-							secretCount += 1;
-						}
-					}
-					if (secretCount.equals(-1) ||
-							gameStateSubstitute.mrX.hasAtLeast(ScotlandYard.Ticket.SECRET, secretCount)) {
-						helper = helper.advance(mrxMove);
-						mrxDestinations.add(mrxLocation);
-					}
-					else continue;
-					if (helper.winner.contains(mrxMove.commencedBy())) return 2000000;
-					else {
-						// It is the detectives' turn, so we must call minimax to go down the game tree
-						eval = minimax(helper, depth - 1, alpha, beta, false, mrxLocation);
-						maxEval = Math.max(maxEval, eval);
-						alpha = Math.max(alpha, eval);
-						// Checks if the lowest value so far is less or equal than the largest
-						if (beta <= alpha) return maxEval;
-					}
+		try {
+			for (Move mrxMove : rootMoves) {
+				eval = searcher.searchRootMove(searcher.state.encode(mrxMove), depth, alpha);
+				scores.put(mrxMove, eval);
+				// Checks if we found a game state where MrX wins
+				if (eval == 2000000) return mrxMove;
+				if (eval > alpha) {
+					alpha = eval;
+					bestMove = mrxMove;
 				}
 			}
+		} catch (SearchTimeout e) {
+			return null;
 		}
-		else {
-			/* The best value for the minimizing player so far in
-			this level of this branch in the game tree (the lowest value so far) */
-			maxEval = Integer.MAX_VALUE;
-			List<List<Move.SingleMove>> allDetectivesMovesCombinations = getAllDetectivesMovesCombinations(gameStateSubstitute);
-			/* Checks if the detectives can move
-			 If not, return a low score that will not be picked by MrX in the top level */
-			if (allDetectivesMovesCombinations.isEmpty()) return 0;
-			// Each combination is a list of moves that we can execute before it is MrX's turn
-			for (List<Move.SingleMove> combination : allDetectivesMovesCombinations) {
-				GameStateSubstitute helper = new GameStateSubstitute(gameStateSubstitute);
-				for (Move.SingleMove move : combination) {
-					helper = helper.advance(move);
-					if (helper.winner.contains(move.commencedBy())) return -2000000;
-				}
-				// It is MrX's turn, so we must call minimax to go down the game tree
-				eval = minimax(helper, depth - 1, alpha, beta, true, mrxLocation);
-				maxEval = Math.min(maxEval, eval);
-				beta = Math.min(beta, eval);
-				// Checks if the lowest value so far is less or equal than the largest
-				if (beta <= alpha) return maxEval;
-			}
+		return bestMove;
+	}
+
+	/**
+	 * Searches every root move up to the given depth on every thread: the first (presumably best) root move
+	 * is searched alone, and the others are then shared out among the threads, which search each one with
+	 * the best value any of them has found so far
+	 *
+	 * @param rootMoves the moves of MrX worth searching
+	 * @param depth the depth we want to search
+	 * @param scores where the score of each root move searched is stored
+	 * @return the best move for MrX; null if the time ran out before every root move was searched
+	 */
+	private Move searchRootInParallel (List<Move> rootMoves, int depth, Map<Move, Integer> scores) {
+		Move firstMove = rootMoves.get(0);
+		int firstEval;
+		try {
+			firstEval = this.searchers[0].searchRootMove(this.searchers[0].state.encode(firstMove), depth, Integer.MIN_VALUE);
+		} catch (SearchTimeout e) {
+			return null;
 		}
-		return maxEval;
+		scores.put(firstMove, firstEval);
+		if (firstEval == 2000000 || rootMoves.size() == 1) return firstMove;
+		RootSplit split = new RootSplit(rootMoves, firstEval);
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (Searcher searcher : this.searchers) tasks.add(() -> split.search(searcher, depth));
+		try {
+			for (Future<Void> future : this.pool.invokeAll(tasks)) future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			split.timedOut = true;
+		} catch (CancellationException | RejectedExecutionException e) {
+			// The threads were shut down under the search, which only keeps what it has already searched
+			split.timedOut = true;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("The parallel search failed", e.getCause());
+		} finally {
+			this.stopped = false;
+		}
+		for (int i = 1; i < rootMoves.size(); ++i) {
+			if (split.scores[i] != null) scores.put(rootMoves.get(i), split.scores[i]);
+		}
+		if (split.winner != -1) return rootMoves.get(split.winner);
+		return split.timedOut ? null : rootMoves.get(split.bestMove);
+	}
+
+	/**
+	 * @param move the move
+	 * @return the destination of the move
+	 */
+	private Integer getDestination (Move move) {
+		SpecVisitor visitor = new SpecVisitor();
+		move.visit(visitor);
+		// Checks if the move is a single move
+		if (visitor.destination != -1) return visitor.destination;
+			// If it is not, then it is a double move
+		else return visitor.destination2;
 	}
 
 	/**
 	 * The largest the better for MrX; the lowest the better for the detectives
 	 *
-	 * @param detectivesLocation the location of the detectives
-	 * @param mrx MrX player
+	 * @param state the search state of the game state we want to score
 	 * @return the score of the given "board"
 	 */
-	private Integer score (Set<Integer> detectivesLocation, Player mrx) {
-		Integer mrxLocation = mrx.location();
-		Integer numberOfDoubleTickets = mrx.tickets().get(ScotlandYard.Ticket.DOUBLE);
-		// The distance from MrX to every detective
-		List<Integer> distances = new ArrayList<>();
-		Integer minimumDistance;
+	int score (SearchState state) {
+		int mrxLocation = state.location(SearchState.MRX);
+		int detectives = state.players() - 1;
+		int numberOfDoubleTickets = state.tickets(SearchState.MRX, ScotlandYard.Ticket.DOUBLE.ordinal());
+		// The number of rounds the closest detective needs to reach MrX, given its tickets
+		int minimumDistance = Integer.MAX_VALUE;
+		// The sum of the number of rounds every detective needs to reach MrX
+		int sumDistances = 0;
 		// The number of nodes adjacent to MrX that are not occupied by detectives
 		int freeNodes = 0;
 		// The number of nodes adjacent to MrX's adjacent nodes that are not occupied by detectives
 		int freeSecondaryNodes = 0;
-		int score = 0, sumRemainingDistances = 0;
+		int score = 0;
 
-		for (Integer detectiveLocation : detectivesLocation) {
-			distances.add( bfs(mrxLocation, detectiveLocation) );
+		for (int detective = 1; detective <= detectives; ++detective) {
+			int distance = this.distances.rounds(state.location(detective),
+					state.tickets(detective, ScotlandYard.Ticket.TAXI.ordinal()),
+					state.tickets(detective, ScotlandYard.Ticket.BUS.ordinal()),
+					state.tickets(detective, ScotlandYard.Ticket.UNDERGROUND.ordinal()), mrxLocation);
+			sumDistances += distance;
+			minimumDistance = Math.min(minimumDistance, distance);
 		}
-		minimumDistance = Collections.min(distances);
 		if (numberOfDoubleTickets > 0) {
-			for (int adjacentNode : this.setup.graph.adjacentNodes(mrxLocation)) {
-				if (!detectivesLocation.contains(adjacentNode)) {
+			for (int adjacentNode : this.distances.neighbours(mrxLocation)) {
+				if (!state.isOccupied(adjacentNode)) {
 					freeNodes += 1;
-					for (int adjacentNode2 : this.setup.graph.adjacentNodes(adjacentNode)) {
-						if (!detectivesLocation.contains(adjacentNode2)) freeSecondaryNodes += 1;
+					for (int adjacentNode2 : this.distances.neighbours(adjacentNode)) {
+						if (!state.isOccupied(adjacentNode2)) freeSecondaryNodes += 1;
 					}
 				}
 			}
@@ -254,8 +730,8 @@ public class Prime implements Ai {
 			}
 		}
 		else {
-			for (int adjacentNode : this.setup.graph.adjacentNodes(mrxLocation)) {
-				if (!detectivesLocation.contains(adjacentNode)) freeNodes += 1;
+			for (int adjacentNode : this.distances.neighbours(mrxLocation)) {
+				if (!state.isOccupied(adjacentNode)) freeNodes += 1;
 			}
 			if (minimumDistance == 1) {
 				score -= 5000;
@@ -266,1251 +742,438 @@ public class Prime implements Ai {
 				score += freeNodes * 20;
 			}
 		}
-		distances.remove(minimumDistance);
-		for (Integer distance : distances) sumRemainingDistances += distance;
-		score += (sumRemainingDistances / distances.size());
+		// The average distance to the remaining detectives (all of them but the closest one)
+		if (detectives > 1) score += (sumDistances - minimumDistance) / (detectives - 1);
 		return score;
 	}
 
-	/**
-	 * @param source MrX's location
-	 * @param destination detective's location
-	 * @return the distance from the source to the destination; null if the destination is not in our graph
-	 */
-	public Integer bfs (Integer source, Integer destination) {
-		LinkedList<Integer> queue = new LinkedList<>();
-		// Distance[i] stores the distance between the node i and the source
-		List<Integer> distance = Arrays.asList(new Integer[200]);
-		// Visited[i] stores if the node i has been visited or not
-		List<Boolean> visited = Arrays.asList(new Boolean[200]);
-
-		if (source.equals(destination)) return 0;
-
-		// Goes through all the nodes in our graph (1 to 199)
-		for (int i = 1; i < 200; ++i) {
-			visited.set(i, false);
-			distance.set(i, Integer.MAX_VALUE);
-		}
-
-		visited.set(source, true);
-		distance.set(source, 0);
-		queue.add(source);
-
-		while (queue.size() != 0) {
-			int u = queue.remove();
-
-			for (Integer adjacentNode : this.setup.graph.adjacentNodes(u)) {
-				if (!visited.get(adjacentNode)) {
-					visited.set(adjacentNode, true);
-					/* Sets the distance between the adjacent node and the source to the result of
-					adding 1 to the distance between the dequeued node and the source
-					(because we are one "level" further in the graph) */
-					distance.set(adjacentNode, distance.get(u) + 1);
-					queue.add(adjacentNode);
-					if (adjacentNode.equals(destination)) return distance.get(destination);
-				}
-			}
-		}
-		return null;
-	}
+	//-------------------- Auxiliary Classes --------------------//
 
 	/**
-	 * @param gameStateSubstitute the substitute for the current game state
-	 * @return all the possible combinations of moves from the detectives in the current game state
+	 * Searches game trees on its own search state, so that several searchers can run at the same time
+	 * (they only share the transposition table)
 	 */
-	private List<List<Move.SingleMove>> getAllDetectivesMovesCombinations (GameStateSubstitute gameStateSubstitute) {
-		boolean redIsOutOfMoves = false;
-		boolean greenIsOutOfMoves = false;
-		boolean blueIsOutOfMoves = false;
-		boolean whiteIsOutOfMoves = false;
-		boolean yellowIsOutOfMoves = false;
-		// The corresponding player's destinations already checked
-		List<Integer> redDestinations = new ArrayList<>();
-		List<Integer> greenDestinations = new ArrayList<>();
-		List<Integer> blueDestinations = new ArrayList<>();
-		List<Integer> whiteDestinations = new ArrayList<>();
-		List<Integer> yellowDestinations = new ArrayList<>();
-		// The corresponding player's discarded destinations already checked
-		List<Integer> redDestinationsDiscarded = new ArrayList<>();
-		List<Integer> greenDestinationsDiscarded = new ArrayList<>();
-		List<Integer> blueDestinationsDiscarded = new ArrayList<>();
-		List<Integer> whiteDestinationsDiscarded = new ArrayList<>();
-		List<Integer> yellowDestinationsDiscarded = new ArrayList<>();
-		/* The corresponding player's available moves that will not get the player further away from MrX */
-		List<Move.SingleMove> redMoves = new ArrayList<>();
-		List<Move.SingleMove> greenMoves = new ArrayList<>();
-		List<Move.SingleMove> blueMoves = new ArrayList<>();
-		List<Move.SingleMove> whiteMoves = new ArrayList<>();
-		List<Move.SingleMove> yellowMoves = new ArrayList<>();
-		/* The corresponding player's available moves that will get the player further away from MrX */
-		List<Move.SingleMove> redMovesDiscarded = new ArrayList<>();
-		List<Move.SingleMove> greenMovesDiscarded = new ArrayList<>();
-		List<Move.SingleMove> blueMovesDiscarded = new ArrayList<>();
-		List<Move.SingleMove> whiteMovesDiscarded = new ArrayList<>();
-		List<Move.SingleMove> yellowMovesDiscarded = new ArrayList<>();
-		List<List<Move.SingleMove>> result = new ArrayList<>();
-		Integer mrxLocation = gameStateSubstitute.mrX.location();
-		Integer destination;
-
-		for (Move detectiveMove : gameStateSubstitute.moves) {
-			Piece.Detective detectiveMoving = (Piece.Detective) detectiveMove.commencedBy();
-			Move.SingleMove single = (Move.SingleMove) detectiveMove;
-			destination = single.destination;
-			switch (detectiveMoving) {
-				case RED:
-					if (!redDestinations.contains(destination) && !redDestinationsDiscarded.contains(destination)) {
-						if (detectiveMoving.webColour().equals("#f00")) {
-							if (bfs(mrxLocation, destination) <= bfs(mrxLocation, detectiveMove.source())) {
-								redDestinations.add(destination);
-								redMoves.add(single);
-								break;
-							}
-							redDestinationsDiscarded.add(destination);
-							redMovesDiscarded.add(single);
-						}
-					}
-					break;
-				case GREEN:
-					if (!greenDestinations.contains(destination) && !greenDestinationsDiscarded.contains(destination)) {
-						if (detectiveMoving.webColour().equals("#0f0")) {
-							if (bfs(mrxLocation, destination) <= bfs(mrxLocation, detectiveMove.source())) {
-								greenDestinations.add(destination);
-								greenMoves.add(single);
-								break;
-							}
-							greenDestinationsDiscarded.add(destination);
-							greenMovesDiscarded.add(single);
-						}
-					}
-					break;
-				case BLUE:
-					if (!blueDestinations.contains(destination) && !blueDestinationsDiscarded.contains(destination)) {
-						if (detectiveMoving.webColour().equals("#00f")) {
-							if (bfs(mrxLocation, destination) <= bfs(mrxLocation, detectiveMove.source())) {
-								blueDestinations.add(destination);
-								blueMoves.add(single);
-								break;
-							}
-							blueDestinationsDiscarded.add(destination);
-							blueMovesDiscarded.add(single);
-						}
-					}
-					break;
-				case WHITE:
-					if (!whiteDestinations.contains(destination) && !whiteDestinationsDiscarded.contains(destination)) {
-						if (detectiveMoving.webColour().equals("#fff")) {
-							if (bfs(mrxLocation, destination) <= bfs(mrxLocation, detectiveMove.source())) {
-								whiteDestinations.add(destination);
-								whiteMoves.add(single);
-								break;
-							}
-							whiteDestinationsDiscarded.add(destination);
-							whiteMovesDiscarded.add(single);
-						}
-					}
-					break;
-				case YELLOW:
-					if (!yellowDestinations.contains(destination) && !yellowDestinationsDiscarded.contains(destination)) {
-						if (detectiveMoving.webColour().equals("#ff0")) {
-							if (bfs(mrxLocation, destination) <= bfs(mrxLocation, detectiveMove.source())) {
-								yellowDestinations.add(destination);
-								yellowMoves.add(single);
-								break;
-							}
-							yellowDestinationsDiscarded.add(destination);
-							yellowMovesDiscarded.add(single);
-						}
-					}
-					break;
-			}
-		}
+	private final class Searcher {
+		/**
+		 * The search state the game trees are searched on
+		 */
+		private SearchState state;
+		/**
+		 * DestinationSets[ply] stores the destinations already checked in that ply of the search
+		 */
+		private long[][] destinationSets = new long[0][];
+		/**
+		 * JointMoves[ply] stores the joint moves of the detectives in that ply of the search
+		 */
+		private JointMoves[] jointMoves = new JointMoves[0];
+		/**
+		 * Orders the moves of MrX and of the detectives moving one at a time
+		 */
+		private final MoveOrdering ordering = new MoveOrdering(Prime.this.distances, Prime.this.moveOrdering);
+		/**
+		 * The time (as given by {@link System#nanoTime()}) at which the current search must stop
+		 */
+		private long deadline;
+		/**
+		 * Set to stop the current search of this searcher alone: the token given to {@link #pickMove} by the
+		 * game, or the one of the pondering
+		 */
+		private AtomicBoolean cancelled = new AtomicBoolean();
+		/**
+		 * The number of game states searched so far
+		 */
+		private long nodes;
+		/**
+		 * The number of cutoffs so far
+		 */
+		private long cutoffs;
+		/**
+		 * The number of those cutoffs caused by the first move searched
+		 */
+		private long firstMoveCutoffs;
 
-		/* A chain of if-else statements that helps us address problems that would come up further
-		 ahead in the for loops; we avoid empty return values when we actually want to move some
-		 detectives (even considering that these moves are presumably bad) */
-		if (redMoves.isEmpty()) {
-			if (redMovesDiscarded.isEmpty()) redIsOutOfMoves = true;
-			else if (redMovesDiscarded.size() == 1) {
-				redMoves.add(redMovesDiscarded.get(0));
-				redDestinations.add(redDestinationsDiscarded.get(0));
-			}
-			else {
-				redMoves.add(redMovesDiscarded.get(0));
-				redDestinations.add(redDestinationsDiscarded.get(0));
-				redMoves.add(redMovesDiscarded.get(1));
-				redDestinations.add(redDestinationsDiscarded.get(1));
-			}
-		}
-		else if (redMoves.size() == 1) {
-			if (!redMovesDiscarded.isEmpty()) {
-				redMoves.add(redMovesDiscarded.get(0));
-				redDestinations.add(redDestinationsDiscarded.get(0));
-			}
-		}
+		//-------------------- Core Functions --------------------//
 
-		if (greenMoves.isEmpty()) {
-			if (greenMovesDiscarded.isEmpty()) greenIsOutOfMoves = true;
-			else if (greenMovesDiscarded.size() == 1) {
-				greenMoves.add(greenMovesDiscarded.get(0));
-				greenDestinations.add(greenDestinationsDiscarded.get(0));
-				if (redDestinations.contains(greenDestinations.get(0))) greenIsOutOfMoves = true;
-			}
-			else {
-				greenMoves.add(greenMovesDiscarded.get(0));
-				greenDestinations.add(greenDestinationsDiscarded.get(0));
-				greenMoves.add(greenMovesDiscarded.get(1));
-				greenDestinations.add(greenDestinationsDiscarded.get(1));
-			}
-		}
-		else if (greenMoves.size() == 1) {
-			if (!greenMovesDiscarded.isEmpty()) {
-				greenMoves.add(greenMovesDiscarded.get(0));
-				greenDestinations.add(greenDestinationsDiscarded.get(0));
+		/**
+		 * Searches a root move
+		 *
+		 * @param move the move of MrX, encoded for the search state
+		 * @param depth the depth we want to search
+		 * @param alpha the best value for MrX among the root moves searched so far
+		 * @return the score of the move
+		 * @throws SearchTimeout if the time ran out (or the search was stopped)
+		 */
+		private int searchRootMove (int move, int depth, int alpha) {
+			this.state.make(move);
+			try {
+				// It is the detectives' turn, so we must call minimax to go down the game tree
+				return this.state.winner() == SearchState.MRX_WINS ? 2000000
+						: minimax(this.state, depth, 1, alpha, Integer.MAX_VALUE);
+			} finally {
+				// Also restores the search state when the search was interrupted somewhere down the game tree
+				this.state.unmakeAll();
 			}
-			else if (redDestinations.contains(greenDestinations.get(0))) greenIsOutOfMoves = true;
 		}
 
-		if (blueMoves.isEmpty()) {
-			if (blueMovesDiscarded.isEmpty()) blueIsOutOfMoves = true;
-			else if (blueMovesDiscarded.size() == 1) {
-				blueMoves.add(blueMovesDiscarded.get(0));
-				blueDestinations.add(blueDestinationsDiscarded.get(0));
-				if (redDestinations.contains(blueDestinations.get(0)) ||
-					greenDestinations.contains(blueDestinations.get(0))) blueIsOutOfMoves = true;
-			}
-			else {
-				blueMoves.add(blueMovesDiscarded.get(0));
-				blueDestinations.add(blueDestinationsDiscarded.get(0));
-				blueMoves.add(blueMovesDiscarded.get(1));
-				blueDestinations.add(blueDestinationsDiscarded.get(1));
-			}
-		}
-		else if (blueMoves.size() == 1) {
-			if (!blueMovesDiscarded.isEmpty()) {
-				blueMoves.add(blueMovesDiscarded.get(0));
-				blueDestinations.add(blueDestinationsDiscarded.get(0));
+		/**
+		 * Searches deeper and deeper game trees from the search state, where it is the detectives' turn,
+		 * until it is stopped, the time runs out or the maximum depth is reached; only the results stored in
+		 * the transposition table are kept
+		 *
+		 * @param maxDepth the deepest game tree to search
+		 */
+		private void ponder (int maxDepth) {
+			try {
+				for (int depth = 1; depth <= Math.max(1, maxDepth); ++depth) {
+					int eval = minimax(this.state, depth, 1, Integer.MIN_VALUE, Integer.MAX_VALUE);
+					// Checks if the game is already decided
+					if (Math.abs(eval) == 2000000) return;
+				}
+			} catch (SearchTimeout e) {
+				// Stopped by the next call to pickMove
 			}
-			else if (redDestinations.contains(blueDestinations.get(0)) ||
-			         greenDestinations.contains(blueDestinations.get(0))) blueIsOutOfMoves = true;
 		}
 
-		if (whiteMoves.isEmpty()) {
-			if (whiteMovesDiscarded.isEmpty()) whiteIsOutOfMoves = true;
-			else if (whiteMovesDiscarded.size() == 1) {
-				whiteMoves.add(whiteMovesDiscarded.get(0));
-				whiteDestinations.add(whiteDestinationsDiscarded.get(0));
-				if (redDestinations.contains(whiteDestinations.get(0)) ||
-					greenDestinations.contains(whiteDestinations.get(0)) ||
-					blueDestinations.contains(whiteDestinations.get(0))) whiteIsOutOfMoves = true;
-			}
-			else {
-				whiteMoves.add(whiteMovesDiscarded.get(0));
-				whiteDestinations.add(whiteDestinationsDiscarded.get(0));
-				whiteMoves.add(whiteMovesDiscarded.get(1));
-				whiteDestinations.add(whiteDestinationsDiscarded.get(1));
-			}
-		}
-		else if (whiteMoves.size() == 1) {
-			if (!whiteMovesDiscarded.isEmpty()) {
-				whiteMoves.add(whiteMovesDiscarded.get(0));
-				whiteDestinations.add(whiteDestinationsDiscarded.get(0));
-			}
-			else if (redDestinations.contains(whiteDestinations.get(0)) ||
-					greenDestinations.contains(whiteDestinations.get(0)) ||
-					blueDestinations.contains(whiteDestinations.get(0))) whiteIsOutOfMoves = true;
-		}
+		//-------------------- Auxiliary Functions --------------------//
 
-		if (yellowMoves.isEmpty()) {
-			if (yellowMovesDiscarded.isEmpty()) yellowIsOutOfMoves = true;
-			else if (yellowMovesDiscarded.size() == 1) {
-				yellowMoves.add(yellowMovesDiscarded.get(0));
-				yellowDestinations.add(yellowDestinationsDiscarded.get(0));
-				if (redDestinations.contains(yellowDestinations.get(0)) ||
-					greenDestinations.contains(yellowDestinations.get(0)) ||
-					blueDestinations.contains(yellowDestinations.get(0)) ||
-					whiteDestinations.contains(yellowDestinations.get(0))) yellowIsOutOfMoves = true;
-			}
-			else {
-				yellowMoves.add(yellowMovesDiscarded.get(0));
-				yellowDestinations.add(yellowDestinationsDiscarded.get(0));
-				yellowMoves.add(yellowMovesDiscarded.get(1));
-				yellowDestinations.add(yellowDestinationsDiscarded.get(1));
-			}
-		}
-		else if (yellowMoves.size() == 1) {
-			if (!yellowMovesDiscarded.isEmpty()) {
-				yellowMoves.add(yellowMovesDiscarded.get(0));
-				yellowDestinations.add(yellowDestinationsDiscarded.get(0));
-			}
-			else if (redDestinations.contains(yellowDestinations.get(0)) ||
-					greenDestinations.contains(yellowDestinations.get(0)) ||
-					blueDestinations.contains(yellowDestinations.get(0)) ||
-					whiteDestinations.contains(yellowDestinations.get(0))) yellowIsOutOfMoves = true;
-		}
+		/**
+		 * Lets us build a game tree; every move is made on the search state and unmade before returning
+		 *
+		 * @param state the search state of the current game state
+		 * @param depth the depth we want to search
+		 * @param ply the number of levels of the game tree above this one
+		 * @param alpha the best value for the maximizing player (MrX) so far, i.e., the largest value
+		 * @param beta the best value for the minimizing player (detectives) so far, i.e., the lowest value
+		 * @return the best possible score
+		 */
+		private int minimax (SearchState state, int depth, int ply, int alpha, int beta) {
+			// The value of the current evaluation
+			int eval;
 
-		/* A massive chain of if-else statements and for loops that allows us to create all the correct
-		 combinations of available moves and address some possible problems:
-		 If one or more of the detectives do not have any move, we still return combinations
-		 using the rest of the detectives;
-		 If we have moves with the same destination inside the same combination, we skip that combination */
-		if (!redIsOutOfMoves) {
-			if (!greenIsOutOfMoves) {
-				if (!blueIsOutOfMoves) {
-					if (!whiteIsOutOfMoves) {
-						if (!yellowIsOutOfMoves) {
-							for (Move.SingleMove redMove : redMoves) {
-								for (Move.SingleMove greenMove : greenMoves) {
-									if (redMove.destination == greenMove.destination) continue;
-									for (Move.SingleMove blueMove : blueMoves) {
-										if (redMove.destination == blueMove.destination ||
-												greenMove.destination == blueMove.destination) continue;
-										for (Move.SingleMove whiteMove : whiteMoves) {
-											if (redMove.destination == whiteMove.destination ||
-													greenMove.destination == whiteMove.destination ||
-													blueMove.destination == whiteMove.destination) continue;
-											for (Move.SingleMove yellowMove : yellowMoves) {
-												if (redMove.destination == yellowMove.destination ||
-														greenMove.destination == yellowMove.destination ||
-														blueMove.destination == yellowMove.destination ||
-														whiteMove.destination == yellowMove.destination) continue;
-												List<Move.SingleMove> combination = new ArrayList<>();
-												combination.add(redMove);
-												combination.add(greenMove);
-												combination.add(blueMove);
-												combination.add(whiteMove);
-												combination.add(yellowMove);
-												result.add(combination);
-											}
-										}
-									}
-								}
-							}
-						}
-						else {
-							for (Move.SingleMove redMove : redMoves) {
-								for (Move.SingleMove greenMove : greenMoves) {
-									if (redMove.destination == greenMove.destination) continue;
-									for (Move.SingleMove blueMove : blueMoves) {
-										if (redMove.destination == blueMove.destination ||
-												greenMove.destination == blueMove.destination) continue;
-										for (Move.SingleMove whiteMove : whiteMoves) {
-											if (redMove.destination == whiteMove.destination ||
-													greenMove.destination == whiteMove.destination ||
-													blueMove.destination == whiteMove.destination) continue;
-											List<Move.SingleMove> combination = new ArrayList<>();
-											combination.add(redMove);
-											combination.add(greenMove);
-											combination.add(blueMove);
-											combination.add(whiteMove);
-											result.add(combination);
-										}
-									}
-								}
-							}
-						}
-					}
-					else if (!yellowIsOutOfMoves) {
-						for (Move.SingleMove redMove : redMoves) {
-							for (Move.SingleMove greenMove : greenMoves) {
-								if (redMove.destination == greenMove.destination) continue;
-								for (Move.SingleMove blueMove : blueMoves) {
-									if (redMove.destination == blueMove.destination ||
-											greenMove.destination == blueMove.destination) continue;
-									for (Move.SingleMove yellowMove : yellowMoves) {
-										if (redMove.destination == yellowMove.destination ||
-												greenMove.destination == yellowMove.destination ||
-												blueMove.destination == yellowMove.destination) continue;
-										List<Move.SingleMove> combination = new ArrayList<>();
-										combination.add(redMove);
-										combination.add(greenMove);
-										combination.add(blueMove);
-										combination.add(yellowMove);
-										result.add(combination);
-									}
-								}
-							}
-						}
-					}
-					else {
-						for (Move.SingleMove redMove : redMoves) {
-							for (Move.SingleMove greenMove : greenMoves) {
-								if (redMove.destination == greenMove.destination) continue;
-								for (Move.SingleMove blueMove : blueMoves) {
-									if (redMove.destination == blueMove.destination ||
-											greenMove.destination == blueMove.destination) continue;
-									List<Move.SingleMove> combination = new ArrayList<>();
-									combination.add(redMove);
-									combination.add(greenMove);
-									combination.add(blueMove);
-									result.add(combination);
-								}
-							}
-						}
-					}
-				}
-				else if (!whiteIsOutOfMoves) {
-					if (!yellowIsOutOfMoves) {
-						for (Move.SingleMove redMove : redMoves) {
-							for (Move.SingleMove greenMove : greenMoves) {
-								if (redMove.destination == greenMove.destination) continue;
-								for (Move.SingleMove whiteMove : whiteMoves) {
-									if (redMove.destination == whiteMove.destination ||
-											greenMove.destination == whiteMove.destination) continue;
-									for (Move.SingleMove yellowMove : yellowMoves) {
-										if (redMove.destination == yellowMove.destination ||
-												greenMove.destination == yellowMove.destination ||
-												whiteMove.destination == yellowMove.destination) continue;
-										List<Move.SingleMove> combination = new ArrayList<>();
-										combination.add(redMove);
-										combination.add(greenMove);
-										combination.add(whiteMove);
-										combination.add(yellowMove);
-										result.add(combination);
-									}
-								}
-							}
-						}
-					}
-					else {
-						for (Move.SingleMove redMove : redMoves) {
-							for (Move.SingleMove greenMove : greenMoves) {
-								if (redMove.destination == greenMove.destination) continue;
-								for (Move.SingleMove whiteMove : whiteMoves) {
-									if (redMove.destination == whiteMove.destination ||
-											greenMove.destination == whiteMove.destination) continue;
-									List<Move.SingleMove> combination = new ArrayList<>();
-									combination.add(redMove);
-									combination.add(greenMove);
-									combination.add(whiteMove);
-									result.add(combination);
-								}
-							}
-						}
-					}
-				}
-				else if (!yellowIsOutOfMoves) {
-					for (Move.SingleMove redMove : redMoves) {
-						for (Move.SingleMove greenMove : greenMoves) {
-							if (redMove.destination == greenMove.destination) continue;
-							for (Move.SingleMove yellowMove : yellowMoves) {
-								if (redMove.destination == yellowMove.destination ||
-										greenMove.destination == yellowMove.destination) continue;
-								List<Move.SingleMove> combination = new ArrayList<>();
-								combination.add(redMove);
-								combination.add(greenMove);
-								combination.add(yellowMove);
-								result.add(combination);
-							}
-						}
-					}
-				}
-				else {
-					for (Move.SingleMove redMove : redMoves) {
-						for (Move.SingleMove greenMove : greenMoves) {
-							if (redMove.destination == greenMove.destination) continue;
-							List<Move.SingleMove> combination = new ArrayList<>();
-							combination.add(redMove);
-							combination.add(greenMove);
-							result.add(combination);
-						}
-					}
-				}
+			this.nodes += 1;
+			if (Prime.this.stopped || Prime.this.terminating.get() || this.cancelled.get() || System.nanoTime() > this.deadline) {
+				throw SearchTimeout.INSTANCE;
 			}
-			else if (!blueIsOutOfMoves) {
-				if (!whiteIsOutOfMoves) {
-					if (!yellowIsOutOfMoves) {
-						for (Move.SingleMove redMove : redMoves) {
-							for (Move.SingleMove blueMove : blueMoves) {
-								if (redMove.destination == blueMove.destination) continue;
-								for (Move.SingleMove whiteMove : whiteMoves) {
-									if (redMove.destination == whiteMove.destination ||
-											blueMove.destination == whiteMove.destination) continue;
-									for (Move.SingleMove yellowMove : yellowMoves) {
-										if (redMove.destination == yellowMove.destination ||
-												blueMove.destination == yellowMove.destination ||
-												whiteMove.destination == yellowMove.destination) continue;
-										List<Move.SingleMove> combination = new ArrayList<>();
-										combination.add(redMove);
-										combination.add(blueMove);
-										combination.add(whiteMove);
-										combination.add(yellowMove);
-										result.add(combination);
-									}
-								}
-							}
-						}
-					}
-					else {
-						for (Move.SingleMove redMove : redMoves) {
-							for (Move.SingleMove blueMove : blueMoves) {
-								if (redMove.destination == blueMove.destination) continue;
-								for (Move.SingleMove whiteMove : whiteMoves) {
-									if (redMove.destination == whiteMove.destination ||
-											blueMove.destination == whiteMove.destination) continue;
-									List<Move.SingleMove> combination = new ArrayList<>();
-									combination.add(redMove);
-									combination.add(blueMove);
-									combination.add(whiteMove);
-									result.add(combination);
-								}
-							}
-						}
-					}
-				}
-				else if (!yellowIsOutOfMoves) {
-					for (Move.SingleMove redMove : redMoves) {
-						for (Move.SingleMove blueMove : blueMoves) {
-							if (redMove.destination == blueMove.destination) continue;
-							for (Move.SingleMove yellowMove : yellowMoves) {
-								if (redMove.destination == yellowMove.destination ||
-										blueMove.destination == yellowMove.destination) continue;
-								List<Move.SingleMove> combination = new ArrayList<>();
-								combination.add(redMove);
-								combination.add(blueMove);
-								combination.add(yellowMove);
-								result.add(combination);
-							}
-						}
-					}
-				}
-				else {
-					for (Move.SingleMove redMove : redMoves) {
-						for (Move.SingleMove blueMove : blueMoves) {
-							if (redMove.destination == blueMove.destination) continue;
-							List<Move.SingleMove> combination = new ArrayList<>();
-							combination.add(redMove);
-							combination.add(blueMove);
-							result.add(combination);
-						}
-					}
-				}
+			// Checks if we are in a leaf
+			if (depth == 0) {
+				// Returns the heuristic/static evaluation of the current game state
+				return score(state);
 			}
-			else if (!whiteIsOutOfMoves) {
-				if (!yellowIsOutOfMoves) {
-					for (Move.SingleMove redMove : redMoves) {
-						for (Move.SingleMove whiteMove : whiteMoves) {
-							if (redMove.destination == whiteMove.destination) continue;
-							for (Move.SingleMove yellowMove : yellowMoves) {
-								if (redMove.destination == yellowMove.destination ||
-										whiteMove.destination == yellowMove.destination) continue;
-								List<Move.SingleMove> combination = new ArrayList<>();
-								combination.add(redMove);
-								combination.add(whiteMove);
-								combination.add(yellowMove);
-								result.add(combination);
-							}
-						}
-					}
-				}
-				else {
-					for (Move.SingleMove redMove : redMoves) {
-						for (Move.SingleMove whiteMove : whiteMoves) {
-							if (redMove.destination == whiteMove.destination) continue;
-							List<Move.SingleMove> combination = new ArrayList<>();
-							combination.add(redMove);
-							combination.add(whiteMove);
-							result.add(combination);
-						}
-					}
-				}
-			}
-			else if (!yellowIsOutOfMoves) {
-				for (Move.SingleMove redMove : redMoves) {
-					for (Move.SingleMove yellowMove : yellowMoves) {
-						if (redMove.destination == yellowMove.destination) continue;
-						List<Move.SingleMove> combination = new ArrayList<>();
-						combination.add(redMove);
-						combination.add(yellowMove);
-						result.add(combination);
-					}
-				}
-			}
-			else {
-				for (Move.SingleMove redMove : redMoves) {
-					List<Move.SingleMove> combination = new ArrayList<>();
-					combination.add(redMove);
-					result.add(combination);
+			// Checks if this game state has already been searched (possibly through a different order of moves)
+			long key = state.hash();
+			int alphaOriginal = alpha, betaOriginal = beta;
+			long entry = Prime.this.table.probe(key);
+			// The best move found the last time this game state was searched, which is searched first
+			int tableMove = TranspositionTable.NO_MOVE;
+			if (entry != TranspositionTable.MISS) {
+				tableMove = TranspositionTable.move(entry);
+				if (TranspositionTable.depth(entry) >= depth) {
+					int tableScore = TranspositionTable.score(entry);
+					byte bound = TranspositionTable.bound(entry);
+					if (bound == TranspositionTable.EXACT) return tableScore;
+					if (bound == TranspositionTable.LOWER) alpha = Math.max(alpha, tableScore);
+					else beta = Math.min(beta, tableScore);
+					if (beta <= alpha) return tableScore;
 				}
 			}
-		}
-		else if (!greenIsOutOfMoves) {
-			if (!blueIsOutOfMoves) {
-				if (!whiteIsOutOfMoves) {
-					if (!yellowIsOutOfMoves) {
-						for (Move.SingleMove greenMove : greenMoves) {
-							for (Move.SingleMove blueMove : blueMoves) {
-								if (greenMove.destination == blueMove.destination) continue;
-								for (Move.SingleMove whiteMove : whiteMoves) {
-									if (greenMove.destination == whiteMove.destination ||
-											blueMove.destination == whiteMove.destination) continue;
-									for (Move.SingleMove yellowMove : yellowMoves) {
-										if (greenMove.destination == yellowMove.destination ||
-												blueMove.destination == yellowMove.destination ||
-												whiteMove.destination == yellowMove.destination) continue;
-										List<Move.SingleMove> combination = new ArrayList<>();
-										combination.add(greenMove);
-										combination.add(blueMove);
-										combination.add(whiteMove);
-										combination.add(yellowMove);
-										result.add(combination);
-									}
-								}
-							}
-						}
+			// The best move in this level of this branch, as an index in the order the moves are generated
+			int bestMove = TranspositionTable.NO_MOVE;
+			// Checks if we are in a level of the game tree where we want to maximize the score (MrX's turn)
+			int maxEval;
+			if (state.isMrxTurn()) {
+				/* The best value for the maximizing player so far in
+				this level of this branch in the game tree (the largest value so far) */
+				maxEval = Integer.MIN_VALUE;
+				int count = state.generateMoves(ply);
+				int[] mrxMoves = state.moves(ply);
+				/* Checks if MrX can move
+				 If not, return a low score that will not be picked by MrX in the top level */
+				if (count == 0) return 0;
+				if (tableMove >= count) tableMove = TranspositionTable.NO_MOVE;
+				int kept = this.ordering.order(state, SearchState.MRX, mrxMoves, count, ply, destinationSet(ply));
+				int[] order = this.ordering.order(ply);
+				int searched = 0;
+				for (int i = tableMove == TranspositionTable.NO_MOVE ? 0 : -1; i < kept; ++i) {
+					// The move of the table goes first, and is not searched again in its place
+					int index = i == -1 ? tableMove : order[i];
+					if (i != -1 && index == tableMove) continue;
+					int mrxMove = mrxMoves[index];
+					searched += 1;
+					state.make(mrxMove);
+					if (state.winner() == SearchState.MRX_WINS) {
+						state.unmake();
+						return 2000000;
 					}
-					else {
-						for (Move.SingleMove greenMove : greenMoves) {
-							for (Move.SingleMove blueMove : blueMoves) {
-								if (greenMove.destination == blueMove.destination) continue;
-								for (Move.SingleMove whiteMove : whiteMoves) {
-									if (greenMove.destination == whiteMove.destination ||
-											blueMove.destination == whiteMove.destination) continue;
-									List<Move.SingleMove> combination = new ArrayList<>();
-									combination.add(greenMove);
-									combination.add(blueMove);
-									combination.add(whiteMove);
-									result.add(combination);
-								}
-							}
-						}
-					}
-				}
-				else if (!yellowIsOutOfMoves) {
-					for (Move.SingleMove greenMove : greenMoves) {
-						for (Move.SingleMove blueMove : blueMoves) {
-							if (greenMove.destination == blueMove.destination) continue;
-							for (Move.SingleMove yellowMove : yellowMoves) {
-								if (greenMove.destination == yellowMove.destination ||
-										blueMove.destination == yellowMove.destination) continue;
-								List<Move.SingleMove> combination = new ArrayList<>();
-								combination.add(greenMove);
-								combination.add(blueMove);
-								combination.add(yellowMove);
-								result.add(combination);
-							}
-						}
+					// It is the detectives' turn, so we must call minimax to go down the game tree
+					eval = minimax(state, depth - 1, ply + 1, alpha, beta);
+					state.unmake();
+					if (eval > maxEval) {
+						maxEval = eval;
+						bestMove = index;
 					}
-				}
-				else {
-					for (Move.SingleMove greenMove : greenMoves) {
-						for (Move.SingleMove blueMove : blueMoves) {
-							if (greenMove.destination == blueMove.destination) continue;
-							List<Move.SingleMove> combination = new ArrayList<>();
-							combination.add(greenMove);
-							combination.add(blueMove);
-							result.add(combination);
-						}
+					alpha = Math.max(alpha, eval);
+					// Checks if the lowest value so far is less or equal than the largest
+					if (beta <= alpha) {
+						cutoff(state, mrxMove, ply, depth, searched);
+						break;
 					}
 				}
 			}
-			else if (!whiteIsOutOfMoves) {
-				if (!yellowIsOutOfMoves) {
-					for (Move.SingleMove greenMove : greenMoves) {
-						for (Move.SingleMove whiteMove : whiteMoves) {
-							if (greenMove.destination == whiteMove.destination) continue;
-							for (Move.SingleMove yellowMove : yellowMoves) {
-								if (greenMove.destination == yellowMove.destination ||
-										whiteMove.destination == yellowMove.destination) continue;
-								List<Move.SingleMove> combination = new ArrayList<>();
-								combination.add(greenMove);
-								combination.add(whiteMove);
-								combination.add(yellowMove);
-								result.add(combination);
-							}
-						}
+			else if (Prime.this.searchMode == SearchMode.SEQUENTIAL) {
+				/* The best value for the minimizing player so far in
+				this level of this branch in the game tree (the lowest value so far) */
+				maxEval = Integer.MAX_VALUE;
+				int detective = state.nextDetective();
+				int count = state.generateMoves(ply, detective);
+				int[] detectiveMoves = state.moves(ply);
+				/* Checks if the detective can move
+				 If not, return a low score that will not be picked by MrX in the top level */
+				if (count == 0) return 0;
+				if (tableMove >= count) tableMove = TranspositionTable.NO_MOVE;
+				int kept = this.ordering.order(state, detective, detectiveMoves, count, ply, destinationSet(ply));
+				int[] order = this.ordering.order(ply);
+				int searched = 0;
+				for (int i = tableMove == TranspositionTable.NO_MOVE ? 0 : -1; i < kept; ++i) {
+					// The move of the table goes first, and is not searched again in its place
+					int index = i == -1 ? tableMove : order[i];
+					if (i != -1 && index == tableMove) continue;
+					int detectiveMove = detectiveMoves[index];
+					searched += 1;
+					state.make(detectiveMove);
+					if (state.winner() == SearchState.DETECTIVES_WIN) {
+						state.unmake();
+						return -2000000;
 					}
-				}
-				else {
-					for (Move.SingleMove greenMove : greenMoves) {
-						for (Move.SingleMove whiteMove : whiteMoves) {
-							if (greenMove.destination == whiteMove.destination) continue;
-							List<Move.SingleMove> combination = new ArrayList<>();
-							combination.add(greenMove);
-							combination.add(whiteMove);
-							result.add(combination);
-						}
+					// The depth only goes down once every detective has moved, so it means the same in both modes
+					eval = minimax(state, state.isMrxTurn() ? depth - 1 : depth, ply + 1, alpha, beta);
+					state.unmake();
+					if (eval < maxEval) {
+						maxEval = eval;
+						bestMove = index;
 					}
-				}
-			}
-			else if (!yellowIsOutOfMoves) {
-				for (Move.SingleMove greenMove : greenMoves) {
-					for (Move.SingleMove yellowMove : yellowMoves) {
-						if (greenMove.destination == yellowMove.destination) continue;
-						List<Move.SingleMove> combination = new ArrayList<>();
-						combination.add(greenMove);
-						combination.add(yellowMove);
-						result.add(combination);
+					beta = Math.min(beta, eval);
+					// Checks if the lowest value so far is less or equal than the largest
+					if (beta <= alpha) {
+						cutoff(state, detectiveMove, ply, depth, searched);
+						break;
 					}
 				}
 			}
 			else {
-				for (Move.SingleMove greenMove : greenMoves) {
-					List<Move.SingleMove> combination = new ArrayList<>();
-					combination.add(greenMove);
-					result.add(combination);
-				}
-			}
-		}
-		else if (!blueIsOutOfMoves) {
-			if (!whiteIsOutOfMoves) {
-				if (!yellowIsOutOfMoves) {
-					for (Move.SingleMove blueMove : blueMoves) {
-						for (Move.SingleMove whiteMove : whiteMoves) {
-							if (blueMove.destination == whiteMove.destination) continue;
-							for (Move.SingleMove yellowMove : yellowMoves) {
-								if (blueMove.destination == yellowMove.destination ||
-										whiteMove.destination == yellowMove.destination) continue;
-								List<Move.SingleMove> combination = new ArrayList<>();
-								combination.add(blueMove);
-								combination.add(whiteMove);
-								combination.add(yellowMove);
-								result.add(combination);
-							}
-						}
+				/* The best value for the minimizing player so far in
+				this level of this branch in the game tree (the lowest value so far) */
+				maxEval = Integer.MAX_VALUE;
+				JointMoves jointMoves = jointMoves(ply);
+				jointMoves.reset(state, ply);
+				// The combination of the table goes first, and is not searched again in its place
+				boolean searchingTableMove = tableMove != TranspositionTable.NO_MOVE && jointMoves.select(tableMove);
+				if (!searchingTableMove) tableMove = TranspositionTable.NO_MOVE;
+				/* Checks if the detectives can move
+				 If not, return a low score that will not be picked by MrX in the top level */
+				boolean detectivesCanMove = false;
+				int searched = 0;
+				// Each combination is a set of moves that we can execute before it is MrX's turn
+				while (searchingTableMove || jointMoves.next()) {
+					int index = jointMoves.code();
+					if (!searchingTableMove && index == tableMove) continue;
+					searchingTableMove = false;
+					detectivesCanMove = true;
+					searched += 1;
+					int made = 0;
+					boolean captured = false;
+					while (made < jointMoves.size() && !captured) {
+						state.make(jointMoves.move(made++));
+						captured = state.winner() == SearchState.DETECTIVES_WIN;
 					}
-				}
-				else {
-					for (Move.SingleMove blueMove : blueMoves) {
-						for (Move.SingleMove whiteMove : whiteMoves) {
-							if (blueMove.destination == whiteMove.destination) continue;
-							List<Move.SingleMove> combination = new ArrayList<>();
-							combination.add(blueMove);
-							combination.add(whiteMove);
-							result.add(combination);
-						}
+					/* It is usually MrX's turn, so we must call minimax to go down the game tree; it is still the
+					detectives' turn if a detective that can move was left out of the combination */
+					eval = captured ? -2000000 : minimax(state, depth - 1, ply + 1, alpha, beta);
+					for (; made > 0; --made) state.unmake();
+					if (captured) return eval;
+					if (eval < maxEval) {
+						maxEval = eval;
+						bestMove = index;
 					}
-				}
-			}
-			else if (!yellowIsOutOfMoves) {
-				for (Move.SingleMove blueMove : blueMoves) {
-					for (Move.SingleMove yellowMove : yellowMoves) {
-						if (blueMove.destination == yellowMove.destination) continue;
-						List<Move.SingleMove> combination = new ArrayList<>();
-						combination.add(blueMove);
-						combination.add(yellowMove);
-						result.add(combination);
+					beta = Math.min(beta, eval);
+					// Checks if the lowest value so far is less or equal than the largest
+					if (beta <= alpha) {
+						// Joint moves are only ordered by distance, so there is nothing to learn from the cutoff
+						this.cutoffs += 1;
+						if (searched == 1) this.firstMoveCutoffs += 1;
+						break;
 					}
 				}
+				if (!detectivesCanMove) return 0;
 			}
-			else {
-				for (Move.SingleMove blueMove : blueMoves) {
-					List<Move.SingleMove> combination = new ArrayList<>();
-					combination.add(blueMove);
-					result.add(combination);
-				}
-			}
+			byte bound = maxEval <= alphaOriginal ? TranspositionTable.UPPER
+					: maxEval >= betaOriginal ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+			Prime.this.table.store(key, depth, bound, maxEval, bestMove);
+			return maxEval;
 		}
-		else if (!whiteIsOutOfMoves) {
-			if (!yellowIsOutOfMoves) {
-				for (Move.SingleMove whiteMove : whiteMoves) {
-					for (Move.SingleMove yellowMove : yellowMoves) {
-						if (whiteMove.destination == yellowMove.destination) continue;
-						List<Move.SingleMove> combination = new ArrayList<>();
-						combination.add(whiteMove);
-						combination.add(yellowMove);
-						result.add(combination);
-					}
-				}
-			}
-			else {
-				for (Move.SingleMove whiteMove : whiteMoves) {
-					List<Move.SingleMove> combination = new ArrayList<>();
-					combination.add(whiteMove);
-					result.add(combination);
-				}
+
+		/**
+		 * @param ply the ply
+		 * @return the (cleared) set of the destinations already checked in the given ply, as a bitset
+		 */
+		private long[] destinationSet (int ply) {
+			if (ply >= this.destinationSets.length) {
+				this.destinationSets = Arrays.copyOf(this.destinationSets, ply + 1);
 			}
+			if (this.destinationSets[ply] == null) this.destinationSets[ply] = new long[(Prime.this.distances.size() + 63) / 64];
+			else Arrays.fill(this.destinationSets[ply], 0);
+			return this.destinationSets[ply];
 		}
-		else if (!yellowIsOutOfMoves) {
-			for (Move.SingleMove yellowMove : yellowMoves) {
-				List<Move.SingleMove> combination = new ArrayList<>();
-				combination.add(yellowMove);
-				result.add(combination);
-			}
+
+		/**
+		 * Counts a cutoff and lets the move ordering learn from it
+		 *
+		 * @param state the search state of the game state the move was made in
+		 * @param move the encoded move that cut off the search
+		 * @param ply the ply of the search
+		 * @param depth the depth searched below the move
+		 * @param searched the number of moves searched before the cutoff, including the move
+		 */
+		private void cutoff (SearchState state, int move, int ply, int depth, int searched) {
+			this.cutoffs += 1;
+			if (searched == 1) this.firstMoveCutoffs += 1;
+			this.ordering.cutoff(state, move, ply, depth);
 		}
-		return result;
-	}
 
-	//-------------------- Auxiliary Classes --------------------//
+		/**
+		 * @param ply the ply
+		 * @return the joint moves of the detectives for the given ply
+		 */
+		private JointMoves jointMoves (int ply) {
+			if (ply >= this.jointMoves.length) this.jointMoves = Arrays.copyOf(this.jointMoves, ply + 1);
+			if (this.jointMoves[ply] == null) this.jointMoves[ply] = new JointMoves(Prime.this.distances, Prime.this.moveOrdering);
+			return this.jointMoves[ply];
+		}
+	}
 
 	/**
-	 * A substitute class for Board.GameState; we get more flexibility and speed by using it
+	 * The root moves of one iteration shared out among the searchers of a parallel search
 	 */
-	public class GameStateSubstitute {
-
+	private final class RootSplit {
 		/**
-		 * The pieces that can still move in the current round
+		 * The moves of MrX worth searching; the first one is already searched
 		 */
-		public Set<Piece> remaining;
+		private final List<Move> rootMoves;
 		/**
-		 * The current round
+		 * The index of the next root move to search
 		 */
-		public Integer roundCount;
+		private final AtomicInteger next = new AtomicInteger(1);
 		/**
-		 * MrX player
+		 * Scores[i] stores the score of rootMoves[i]; null if it was not searched
 		 */
-		public Player mrX;
+		private final Integer[] scores;
 		/**
-		 * Detective players
+		 * The best value for MrX so far among the root moves searched by every searcher
 		 */
-		public List<Player> detectives;
+		private int alpha;
 		/**
-		 * The current available moves of the game
+		 * The index of the best root move so far
 		 */
-		public ImmutableSet<Move> moves;
+		private int bestMove;
 		/**
-		 * The winner(s) of this game, if any
+		 * The index of a root move where MrX wins; -1 if none was found
 		 */
-		public ImmutableSet<Piece> winner;
-
+		private volatile int winner = -1;
 		/**
-		 * GameStateSubstitute constructor
-		 *
-		 * @param board the original game board
+		 * Set when the time ran out before every root move was searched
 		 */
-		public GameStateSubstitute (Board board) {
-			List<Player> detectives = new ArrayList<>();
-			Player mrX = null, red, green, blue, white, yellow;
-			Piece mrxPiece = null, redPiece = null, greenPiece = null, bluePiece = null, whitePiece = null, yellowPiece = null;
-			Integer mrxLocation = null;
-			List<Map<String, Map<ScotlandYard.Ticket, Integer>>> allTickets = getTickets(board);
-			ImmutableSet<Piece> piecesInTheGame = board.getPlayers();
-			Set<Piece> remaining = new HashSet<>();
-			ImmutableSet<Move> moves = board.getAvailableMoves();
-			for (Move move : moves) {
-				if (move.commencedBy().isMrX()) {
-					mrxLocation = move.source();
-					mrxPiece = move.commencedBy();
-					remaining.add(mrxPiece);
-					break;
-				}
-			}
-			for (Piece piece : piecesInTheGame) {
-				String colour = piece.webColour();
-				switch (colour) {
-					case "#f00":
-						redPiece = piece;
-						break;
-					case "#0f0":
-						greenPiece = piece;
-						break;
-					case "#00f":
-						bluePiece = piece;
-						break;
-					case "#fff":
-						whitePiece = piece;
-						break;
-					case "#ff0":
-						yellowPiece = piece;
-						break;
-				}
-			}
-
-			for (Map<String, Map<ScotlandYard.Ticket, Integer>> tickets : allTickets) {
-				if (tickets.containsKey("#000")) {
-					mrX = new Player(mrxPiece, ImmutableMap.copyOf(tickets.get("#000")), mrxLocation);
-				}
-				else if (tickets.containsKey("#f00")) {
-					if (board.getDetectiveLocation((Piece.Detective) redPiece).isPresent()){
-						red = new Player(redPiece, ImmutableMap.copyOf(tickets.get("#f00")), (board.getDetectiveLocation((Piece.Detective) redPiece)).get());
-						detectives.add(red);
-					}
-				}
-				else if (tickets.containsKey("#0f0")) {
-					if (board.getDetectiveLocation((Piece.Detective) greenPiece).isPresent()){
-						green = new Player(greenPiece, ImmutableMap.copyOf(tickets.get("#0f0")), (board.getDetectiveLocation((Piece.Detective) greenPiece)).get());
-						detectives.add(green);
-					}
-				}
-				else if (tickets.containsKey("#00f")) {
-					if (board.getDetectiveLocation((Piece.Detective) bluePiece).isPresent()){
-						blue = new Player(bluePiece, ImmutableMap.copyOf(tickets.get("#00f")), (board.getDetectiveLocation((Piece.Detective) bluePiece)).get());
-						detectives.add(blue);
-					}
-				}
-				else if (tickets.containsKey("#fff")) {
-					if (board.getDetectiveLocation((Piece.Detective) whitePiece).isPresent()){
-						white = new Player(whitePiece, ImmutableMap.copyOf(tickets.get("#fff")), (board.getDetectiveLocation((Piece.Detective) whitePiece)).get());
-						detectives.add(white);
-					}
-				}
-				else if (tickets.containsKey("#ff0")) {
-					if (board.getDetectiveLocation((Piece.Detective) yellowPiece).isPresent()){
-						yellow = new Player(yellowPiece, ImmutableMap.copyOf(tickets.get("#ff0")), (board.getDetectiveLocation((Piece.Detective) yellowPiece)).get());
-						detectives.add(yellow);
-					}
-				}
-			}
-			this.remaining = remaining;
-			this.roundCount = board.getMrXTravelLog().size();
-			this.mrX = mrX;
-			this.detectives = detectives;
-			this.winner = getWinner();
-			this.moves = getAvailableMoves();
-		}
+		private volatile boolean timedOut;
 
 		/**
-		 * Copy constructor
+		 * RootSplit constructor
 		 *
-		 * @param gameStateSubstitute the original game state substitute
+		 * @param rootMoves the moves of MrX worth searching
+		 * @param firstEval the score of the first root move
 		 */
-		public GameStateSubstitute (GameStateSubstitute gameStateSubstitute) {
-			List<Player> detectives = new ArrayList<>();
-			Player mrX = gameStateSubstitute.mrX;
-			Player mrX1 = new Player(mrX.piece(), mrX.tickets(), mrX.location());
-			for (Player detective1 : gameStateSubstitute.detectives) {
-				Player detective = new Player(detective1.piece(), detective1.tickets(), detective1.location());
-				detectives.add(detective);
-			}
-			this.remaining = new HashSet<>(gameStateSubstitute.remaining);
-			this.roundCount = gameStateSubstitute.roundCount;
-			this.mrX = mrX1;
-			this.detectives = detectives;
-			this.winner = gameStateSubstitute.winner;
-			this.moves = gameStateSubstitute.moves;
+		private RootSplit (List<Move> rootMoves, int firstEval) {
+			this.rootMoves = rootMoves;
+			this.scores = new Integer[rootMoves.size()];
+			this.alpha = firstEval;
+			this.bestMove = 0;
 		}
 
 		//-------------------- Core Functions --------------------//
 
 		/**
-		 * @return the pieces of all players in the game
-		 */
-		@Nonnull
-		private ImmutableSet<Piece> getPlayers() {
-			List<Piece> piecesList = new ArrayList<>();
-			piecesList.add(mrX.piece());
-			for (Player player : detectives) piecesList.add(player.piece());
-			return ImmutableSet.copyOf(piecesList);
-		}
-
-		/**
-		 * @param detective the detective
-		 * @return the location of the given detective; empty if the detective is not part of the game
-		 */
-		@Nonnull
-		private Optional<Integer> getDetectiveLocation(Piece.Detective detective) {
-			Player player = getPlayerFromPiece(detective);
-			if (player != null) return Optional.of(player.location());
-			else return Optional.empty();
-		}
-
-		/**
-		 * @return the winner of this game; empty if the game has no winners yet
-		 */
-		@Nonnull
-		private ImmutableSet<Piece> getWinner() {
-			int mrXTurn = 0;
-			List<Piece> detectivePiecesList = new ArrayList<>();
-			List<Integer> detectivesLocation = new ArrayList<>();
-			// Holds the number of detectives that ran out of moves
-			int noMovesCount = 0;
-			// Holds the number of adjacent nodes to MrX that are occupied by detectives
-			int blockCount = 0;
-			if (this.remaining.contains(mrX.piece())) mrXTurn = 1;
-			for (Player detective : this.detectives) {
-				detectivePiecesList.add(detective.piece());
-				detectivesLocation.add(detective.location());
-			}
-			for (int destination : Prime.this.setup.graph.adjacentNodes(mrX.location())) {
-				if (detectivesLocation.contains(destination)) blockCount += 1;
-			}
-			for (Player detective : this.detectives) {
-				if (detective.location() == this.mrX.location()) return ImmutableSet.copyOf(detectivePiecesList);
-				if (makeSingleMoves(Prime.this.setup, this.detectives, detective, detective.location()).isEmpty()) {
-					noMovesCount += 1;
-				}
-			}
-			if (noMovesCount == this.detectives.size()) return ImmutableSet.of(this.mrX.piece());
-			if ((makeSingleMoves(Prime.this.setup, this.detectives, this.mrX, this.mrX.location()).isEmpty() &&
-					makeDoubleMoves(Prime.this.setup, this.detectives, this.mrX, this.mrX.location(), this.roundCount).isEmpty()) &&
-					(blockCount != 0 || mrXTurn == 1)) return ImmutableSet.copyOf(detectivePiecesList);
-			if (Prime.this.setup.rounds.size() == this.roundCount &&
-					mrXTurn == 1) return ImmutableSet.of(this.mrX.piece());
-			return ImmutableSet.of();
-		}
-
-		/**
-		 * @return the current available moves of the game
-		 */
-		@Nonnull
-		private ImmutableSet<Move> getAvailableMoves() {
-			List<Move.SingleMove> singleMoves = new ArrayList<>();
-			List<Move.DoubleMove> doubleMoves = new ArrayList<>();
-			List<Move> moves = new ArrayList<>();
-			if (remaining.contains(mrX.piece())) {
-				singleMoves.addAll(makeSingleMoves(Prime.this.setup, detectives, mrX, mrX.location()));
-				doubleMoves.addAll(makeDoubleMoves(Prime.this.setup, detectives, mrX, mrX.location(), this.roundCount));
-			}
-			else {
-				for (Player player : detectives) {
-					if (remaining.contains(player.piece())) {
-						singleMoves.addAll(makeSingleMoves(Prime.this.setup, detectives, player, player.location()));
-					}
-				}
-			}
-			moves.addAll(singleMoves);
-			moves.addAll(doubleMoves);
-			return ImmutableSet.copyOf(moves);
-		}
-
-		/**
-		 * Computes the next game state substitute given a move from {@link #getAvailableMoves()}
+		 * Searches root moves with the given searcher until there are none left
 		 *
-		 * @param move the move to make
-		 * @return the same game state substitute but with changes that reflect the move made
-		 * @throws IllegalArgumentException if the move was not a move from {@link #getAvailableMoves()}
+		 * @param searcher the searcher of the current thread
+		 * @param depth the depth we want to search
+		 * @return null
 		 */
-		@Nonnull
-		public GameStateSubstitute advance (Move move) {
-			Player detective;
-			Piece pieceMoving = move.commencedBy();
-			Player playerMoving = getPlayerFromPiece(pieceMoving);
-			Iterable<ScotlandYard.Ticket> requiredTickets = move.tickets();
-			if (playerMoving == null) return this;
-			if (!this.moves.contains(move)) throw new IllegalArgumentException("Illegal move: " + move);
-			if (this.remaining.contains(pieceMoving)) {
-				SpecVisitor visitor = new SpecVisitor();
-				move.visit(visitor);
-				if (playerMoving.isMrX()) {
-					// Checks if the move is a single move
-					if (visitor.destination != -1) {
-						this.mrX = this.mrX.use(requiredTickets);
-						this.mrX = this.mrX.at(visitor.destination);
-						++this.roundCount;
-					}
-					// If it is not, then it must be a double move
-					else {
-						this.mrX = this.mrX.use(requiredTickets);
-						this.mrX = this.mrX.at(visitor.destination2);
-						/* Add 2 to the round count because we would need to add two separate entries
-						to MrX's travel log, one for each move within the double move */
-						this.roundCount += 2;
-					}
-					this.remaining.remove(pieceMoving);
-					if (this.remaining.isEmpty()) {
-						for (Player player : this.detectives) {
-							this.remaining.add(player.piece());
-						}
-					}
-				}
-				// If it is not MrX, then it must be a detective
-				else {
-					detective = playerMoving.use(requiredTickets);
-					detective = detective.at(visitor.destination);
-					this.mrX = this.mrX.give(requiredTickets);
-					this.detectives.set(this.detectives.indexOf(playerMoving), detective);
-					this.remaining.remove(pieceMoving);
-					if (this.remaining.isEmpty()) {
-						this.remaining.add(this.mrX.piece());
-					}
+		private Void search (Searcher searcher, int depth) {
+			for (int i = this.next.getAndIncrement(); i < this.rootMoves.size(); i = this.next.getAndIncrement()) {
+				int eval;
+				try {
+					eval = searcher.searchRootMove(searcher.state.encode(this.rootMoves.get(i)), depth, getAlpha());
+				} catch (SearchTimeout e) {
+					if (this.winner == -1) this.timedOut = true;
+					return null;
 				}
-			}
-			Set<Piece> copyRemaining = new HashSet<>(this.remaining);
-			for (Piece piece1 : copyRemaining) {
-				Player player1 = getPlayerFromPiece(piece1);
-				if (player1 == null) continue;
-				/* Checks if the piece(s) that can still move in the current round have indeed
-                available moves; if they do not, then they cannot play in this round */
-				if (makeSingleMoves(Prime.this.setup, this.detectives, player1, player1.location()).isEmpty()) {
-					this.remaining.remove(piece1);
+				this.scores[i] = eval;
+				// Checks if we found a game state where MrX wins; the other searchers can stop
+				if (eval == 2000000) {
+					this.winner = i;
+					Prime.this.stopped = true;
+					return null;
 				}
+				raiseAlpha(eval, i);
 			}
-			if (this.remaining.isEmpty()) this.remaining.add(this.mrX.piece());
-			this.winner = getWinner();
-			this.moves = getAvailableMoves();
-			return this;
+			return null;
 		}
 
 		//-------------------- Auxiliary Functions --------------------//
 
 		/**
-		 * Gets the player from its piece (in order to have more methods and information available)
-		 *
-		 * @param piece the piece that we want to work on
-		 * @return the player of the piece; null if the piece does not belong to the game
+		 * @return the best value for MrX so far
 		 */
-		private Player getPlayerFromPiece (Piece piece) {
-			if (mrX.piece().equals(piece)) return mrX;
-			for (Player player : detectives) {
-				if (player.piece().equals(piece)) return player;
-			}
-			return null;
+		private synchronized int getAlpha () {
+			return this.alpha;
 		}
 
 		/**
-		 * @param board the current game board
-		 * @return a list where each entry is a map that maps the colour of a piece to its available tickets
+		 * @param eval the score of a root move
+		 * @param index the index of the root move
 		 */
-		private List<Map<String, Map<ScotlandYard.Ticket, Integer>>> getTickets (Board board) {
-			List<Map<String, Map<ScotlandYard.Ticket, Integer>>> tickets = new ArrayList<>();
-			// Each map maps the corresponding colour of its piece to its available tickets
-			Map<String, Map<ScotlandYard.Ticket, Integer>> mrxFinal = new HashMap<>();
-			Map<String, Map<ScotlandYard.Ticket, Integer>> redFinal = new HashMap<>();
-			Map<String, Map<ScotlandYard.Ticket, Integer>> greenFinal = new HashMap<>();
-			Map<String, Map<ScotlandYard.Ticket, Integer>> blueFinal = new HashMap<>();
-			Map<String, Map<ScotlandYard.Ticket, Integer>> whiteFinal = new HashMap<>();
-			Map<String, Map<ScotlandYard.Ticket, Integer>> yellowFinal = new HashMap<>();
-			/* Each map maps a type of ticket to the number of tickets of this type that the
-			corresponding player has */
-			Map<ScotlandYard.Ticket, Integer> mrxTickets = new HashMap<>();
-			Map<ScotlandYard.Ticket, Integer> redTickets = new HashMap<>();
-			Map<ScotlandYard.Ticket, Integer> greenTickets = new HashMap<>();
-			Map<ScotlandYard.Ticket, Integer> blueTickets = new HashMap<>();
-			Map<ScotlandYard.Ticket, Integer> whiteTickets = new HashMap<>();
-			Map<ScotlandYard.Ticket, Integer> yellowTickets = new HashMap<>();
-			ImmutableSet<Piece> piecesInTheGame = board.getPlayers();
-			for (Piece piece : piecesInTheGame) {
-				if (board.getPlayerTickets(piece).isPresent()) {
-					Board.TicketBoard ticketBoard = board.getPlayerTickets(piece).get();
-					switch (piece.webColour()) {
-						case "#000":
-							mrxTickets.put(ScotlandYard.Ticket.TAXI, ticketBoard.getCount(ScotlandYard.Ticket.TAXI));
-							mrxTickets.put(ScotlandYard.Ticket.BUS, ticketBoard.getCount(ScotlandYard.Ticket.BUS));
-							mrxTickets.put(ScotlandYard.Ticket.UNDERGROUND, ticketBoard.getCount(ScotlandYard.Ticket.UNDERGROUND));
-							mrxTickets.put(ScotlandYard.Ticket.DOUBLE, ticketBoard.getCount(ScotlandYard.Ticket.DOUBLE));
-							mrxTickets.put(ScotlandYard.Ticket.SECRET, ticketBoard.getCount(ScotlandYard.Ticket.SECRET));
-							mrxFinal.put("#000", mrxTickets);
-							tickets.add(mrxFinal);
-							break;
-						case "#f00":
-							redTickets.put(ScotlandYard.Ticket.TAXI, ticketBoard.getCount(ScotlandYard.Ticket.TAXI));
-							redTickets.put(ScotlandYard.Ticket.BUS, ticketBoard.getCount(ScotlandYard.Ticket.BUS));
-							redTickets.put(ScotlandYard.Ticket.UNDERGROUND, ticketBoard.getCount(ScotlandYard.Ticket.UNDERGROUND));
-							redFinal.put("#f00", redTickets);
-							tickets.add(redFinal);
-							break;
-						case "#0f0":
-							greenTickets.put(ScotlandYard.Ticket.TAXI, ticketBoard.getCount(ScotlandYard.Ticket.TAXI));
-							greenTickets.put(ScotlandYard.Ticket.BUS, ticketBoard.getCount(ScotlandYard.Ticket.BUS));
-							greenTickets.put(ScotlandYard.Ticket.UNDERGROUND, ticketBoard.getCount(ScotlandYard.Ticket.UNDERGROUND));
-							greenFinal.put("#0f0", greenTickets);
-							tickets.add(greenFinal);
-							break;
-						case "#00f":
-							blueTickets.put(ScotlandYard.Ticket.TAXI, ticketBoard.getCount(ScotlandYard.Ticket.TAXI));
-							blueTickets.put(ScotlandYard.Ticket.BUS, ticketBoard.getCount(ScotlandYard.Ticket.BUS));
-							blueTickets.put(ScotlandYard.Ticket.UNDERGROUND, ticketBoard.getCount(ScotlandYard.Ticket.UNDERGROUND));
-							blueFinal.put("#00f", blueTickets);
-							tickets.add(blueFinal);
-							break;
-						case "#fff":
-							whiteTickets.put(ScotlandYard.Ticket.TAXI, ticketBoard.getCount(ScotlandYard.Ticket.TAXI));
-							whiteTickets.put(ScotlandYard.Ticket.BUS, ticketBoard.getCount(ScotlandYard.Ticket.BUS));
-							whiteTickets.put(ScotlandYard.Ticket.UNDERGROUND, ticketBoard.getCount(ScotlandYard.Ticket.UNDERGROUND));
-							whiteFinal.put("#fff", whiteTickets);
-							tickets.add(whiteFinal);
-							break;
-						case "#ff0":
-							yellowTickets.put(ScotlandYard.Ticket.TAXI, ticketBoard.getCount(ScotlandYard.Ticket.TAXI));
-							yellowTickets.put(ScotlandYard.Ticket.BUS, ticketBoard.getCount(ScotlandYard.Ticket.BUS));
-							yellowTickets.put(ScotlandYard.Ticket.UNDERGROUND, ticketBoard.getCount(ScotlandYard.Ticket.UNDERGROUND));
-							yellowFinal.put("#ff0", yellowTickets);
-							tickets.add(yellowFinal);
-							break;
-					}
-				}
+		private synchronized void raiseAlpha (int eval, int index) {
+			if (eval > this.alpha) {
+				this.alpha = eval;
+				this.bestMove = index;
 			}
-			return tickets;
 		}
+	}
 
+	/**
+	 * How the moves of the detectives are searched
+	 */
+	public enum SearchMode {
 		/**
-		 * @param setup the game setup
-		 * @param detectives the detective players
-		 * @param player the player
-		 * @param source the source of the player
-		 * @return all the available single moves for the player
+		 * Every detective moves in the same level of the game tree: one joint move per round, built from the
+		 * moves of each detective that do not get it further away from MrX
 		 */
-		private ImmutableSet<Move.SingleMove> makeSingleMoves(
-				GameSetup setup,
-				@Nonnull List<Player> detectives,
-				Player player,
-				int source) {
-
-			List<Move.SingleMove> singleMoves = new ArrayList<>();
-			Set<Integer> detectivesLocation = new HashSet<>();
-
-			for (Player detective : detectives) { detectivesLocation.add(detective.location()); }
-			for (int destination : setup.graph.adjacentNodes(source)) {
-				if (detectivesLocation.contains(destination)) continue;
-				for (ScotlandYard.Transport t : Objects.requireNonNull(setup.graph.edgeValueOrDefault(source, destination, ImmutableSet.of()))) {
-					if (player.has(t.requiredTicket())) {
-						Move.SingleMove singleMove = new Move.SingleMove(player.piece(), source, t.requiredTicket(), destination);
-						singleMoves.add(singleMove);
-					}
-				}
-				if (player.has(ScotlandYard.Ticket.SECRET)) {
-					Move.SingleMove singleMove = new Move.SingleMove(player.piece(), source, ScotlandYard.Ticket.SECRET, destination);
-					singleMoves.add(singleMove);
-				}
-			}
-			return ImmutableSet.copyOf(singleMoves);
-		}
+		JOINT,
+		/**
+		 * Every detective moves in its own level of the game tree, closest to MrX first, so alpha-beta
+		 * can prune between the detectives of the same round
+		 */
+		SEQUENTIAL
+	}
 
+	/**
+	 * Thrown (without a stack trace) to unwind the search when the time runs out
+	 */
+	private static final class SearchTimeout extends RuntimeException {
+		private static final long serialVersionUID = 8151574963165235624L;
 		/**
-		 * @param setup the game setup
-		 * @param detectives the detective players
-		 * @param player the player
-		 * @param source the source of the player
-		 * @param roundCount the round count
-		 * @return all the available double moves for the player
+		 * The only instance; it does not need to be created every time
 		 */
-		private ImmutableSet<Move.DoubleMove> makeDoubleMoves(
-				GameSetup setup,
-				List<Player> detectives,
-				Player player,
-				int source,
-				Integer roundCount) {
-
-			List<Move.DoubleMove> doubleMoves = new ArrayList<>();
-			Set<Integer> detectivesLocation = new HashSet<>();
-
-			for (Player detective : detectives) detectivesLocation.add(detective.location());
-			if (player.has(ScotlandYard.Ticket.DOUBLE) && (setup.rounds.size() - roundCount >= 2)) {
-				for (int destination1 : setup.graph.adjacentNodes(source)) {
-					if (detectivesLocation.contains(destination1)) continue;
-					for (ScotlandYard.Transport t1 : Objects.requireNonNull(setup.graph.edgeValueOrDefault(source, destination1, ImmutableSet.of()))) {
-						if (player.has(t1.requiredTicket())) {
-							for (int destination2 : setup.graph.adjacentNodes(destination1)) {
-								if (detectivesLocation.contains(destination2)) continue;
-								for (ScotlandYard.Transport t2 : Objects.requireNonNull(setup.graph.edgeValueOrDefault(destination1, destination2, ImmutableSet.of()))) {
-									/* Checks if the required ticket for the first and for the
-									second move within the double move are the same */
-									if (t2.requiredTicket() == t1.requiredTicket()) {
-										if (player.hasAtLeast(t2.requiredTicket(), 2)) {
-											Move.DoubleMove doubleMove = new Move.DoubleMove(player.piece(), source, t2.requiredTicket(), destination1, t2.requiredTicket(), destination2);
-											doubleMoves.add(doubleMove);
-										}
-									}
-									else if (player.has(t2.requiredTicket())) {
-										Move.DoubleMove doubleMove = new Move.DoubleMove(player.piece(), source, t1.requiredTicket(), destination1, t2.requiredTicket(), destination2);
-										doubleMoves.add(doubleMove);
-									}
-								}
-								if (player.has(ScotlandYard.Ticket.SECRET)) {
-									Move.DoubleMove doubleMove = new Move.DoubleMove(player.piece(), source, t1.requiredTicket(), destination1, ScotlandYard.Ticket.SECRET, destination2);
-									doubleMoves.add(doubleMove);
-								}
-							}
-						}
-					}
-					if (player.has(ScotlandYard.Ticket.SECRET)) {
-						for (int destination2 : setup.graph.adjacentNodes(destination1)) {
-							if (detectivesLocation.contains(destination2)) continue;
-							for (ScotlandYard.Transport t2 : Objects.requireNonNull(setup.graph.edgeValueOrDefault(destination1, destination2, ImmutableSet.of()))) {
-								if (player.has(t2.requiredTicket())) {
-									Move.DoubleMove doubleMove = new Move.DoubleMove(player.piece(), source, ScotlandYard.Ticket.SECRET, destination1, t2.requiredTicket(), destination2);
-									doubleMoves.add(doubleMove);
-								}
-							}
-							if (player.hasAtLeast(ScotlandYard.Ticket.SECRET, 2)) {
-								Move.DoubleMove doubleMove = new Move.DoubleMove(player.piece(), source, ScotlandYard.Ticket.SECRET, destination1, ScotlandYard.Ticket.SECRET, destination2);
-								doubleMoves.add(doubleMove);
-							}
-						}
-					}
-				}
-			}
-			return ImmutableSet.copyOf(doubleMoves);
-		}
+		static final SearchTimeout INSTANCE = new SearchTimeout();
+
+		private SearchTimeout() { super(null, null, false, false); }
 	}
 
 	/**
@@ -0,0 +1,700 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+
+/**
+ * A mutable game state used only by the search. The locations and the tickets of the players are kept in
+ * arrays, and every move is made and unmade in place through an undo stack, so going down and back up
+ * the game tree does not allocate anything.
+ * <br>
+ * Players are referred to by their index: MrX is always 0 and the detectives follow in the order of
+ * {@link Board#getPlayers()}. Moves are encoded as ints, see {@link #single(int, int, int)} and
+ * {@link #doubleMove(int, int, int, int, int)}; tickets are referred to by their ordinal.
+ */
+final class SearchState {
+
+	/**
+	 * The game has no winners yet
+	 */
+	static final int NO_WINNER = 0;
+	/**
+	 * MrX won the game
+	 */
+	static final int MRX_WINS = 1;
+	/**
+	 * The detectives won the game
+	 */
+	static final int DETECTIVES_WIN = 2;
+
+	/**
+	 * The index of MrX
+	 */
+	static final int MRX = 0;
+	/**
+	 * The ordinals of the tickets
+	 */
+	private static final int TAXI = ScotlandYard.Ticket.TAXI.ordinal();
+	private static final int BUS = ScotlandYard.Ticket.BUS.ordinal();
+	private static final int UNDERGROUND = ScotlandYard.Ticket.UNDERGROUND.ordinal();
+	private static final int DOUBLE = ScotlandYard.Ticket.DOUBLE.ordinal();
+	private static final int SECRET = ScotlandYard.Ticket.SECRET.ordinal();
+	/**
+	 * Every ticket type, in ordinal order
+	 */
+	private static final ScotlandYard.Ticket[] TICKET_TYPES = ScotlandYard.Ticket.values();
+	/**
+	 * The number of ticket types
+	 */
+	private static final int TICKETS = TICKET_TYPES.length;
+	/**
+	 * The tickets that can only take their own transport
+	 */
+	private static final int[] TRANSPORT_ONLY_TICKETS = {TAXI, BUS, UNDERGROUND};
+	/**
+	 * The transports that can be taken with each ticket type (a bitmask of {@link ScotlandYard.Transport} ordinals),
+	 * apart from the secret ticket, which can take any transport
+	 */
+	private static final int[] TICKET_TRANSPORTS = new int[TICKETS];
+	/**
+	 * The layout of an encoded move: the first destination and ticket, the second destination and ticket
+	 * (double moves only), the index of the player and whether it is a double move
+	 */
+	private static final int NODE_BITS = 10;
+	private static final int NODE_MASK = (1 << NODE_BITS) - 1;
+	private static final int TICKET_BITS = 3;
+	private static final int TICKET_MASK = (1 << TICKET_BITS) - 1;
+	private static final int TICKET1_SHIFT = NODE_BITS;
+	private static final int DESTINATION2_SHIFT = TICKET1_SHIFT + TICKET_BITS;
+	private static final int TICKET2_SHIFT = DESTINATION2_SHIFT + NODE_BITS;
+	private static final int PLAYER_SHIFT = TICKET2_SHIFT + TICKET_BITS;
+	private static final int PLAYER_MASK = 0xF;
+	private static final int DOUBLE_FLAG = 1 << 30;
+	/**
+	 * The number of moves the undo stack and the move buffers can initially hold; they grow when needed
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	static {
+		for (ScotlandYard.Transport transport : ScotlandYard.Transport.values()) {
+			TICKET_TRANSPORTS[transport.requiredTicket().ordinal()] |= 1 << transport.ordinal();
+		}
+	}
+
+	/**
+	 * The graph of the game setup
+	 */
+	private final DistanceOracle graph;
+	/**
+	 * The keys used to hash this state
+	 */
+	private final Zobrist zobrist;
+	/**
+	 * The number of rounds of the game
+	 */
+	private final int rounds;
+	/**
+	 * The number of players (MrX included)
+	 */
+	private final int players;
+	/**
+	 * The piece of each player
+	 */
+	private final Piece[] pieces;
+	/**
+	 * The index of the piece of each player in the {@link Zobrist} tables
+	 */
+	private final int[] zobristPieces;
+	/**
+	 * The location of each player
+	 */
+	private final int[] locations;
+	/**
+	 * Tickets[player][ticket] stores the number of tickets of that type the player has
+	 */
+	private final int[][] tickets;
+	/**
+	 * The current round, i.e., the number of entries of MrX's travel log
+	 */
+	private int round;
+	/**
+	 * The players that can still move in the current round (bit i is set if player i can)
+	 */
+	private int remaining;
+	/**
+	 * The hash of this state, updated with every change
+	 */
+	private long hash;
+	/**
+	 * The number of moves made and not unmade yet
+	 */
+	private int made;
+	/**
+	 * The undo stack: the move, the source of the player and the players that could still move before every move made;
+	 * a source of -1 means the move was not made because its player could not move anymore
+	 */
+	private int[] undoMoves = new int[INITIAL_CAPACITY];
+	private int[] undoSources = new int[INITIAL_CAPACITY];
+	private int[] undoRemaining = new int[INITIAL_CAPACITY];
+	/**
+	 * Buffers[ply] stores the moves generated by {@link #generateMoves(int)} for that ply
+	 */
+	private int[][] buffers = new int[0][];
+
+	/**
+	 * SearchState constructor; it must be MrX's turn
+	 *
+	 * @param board the current board
+	 * @param graph the graph of the game setup
+	 * @param zobrist the keys used to hash the game states of the game setup
+	 */
+	SearchState(@Nonnull Board board, @Nonnull DistanceOracle graph, @Nonnull Zobrist zobrist) {
+		this.graph = graph;
+		this.zobrist = zobrist;
+		this.rounds = board.getSetup().rounds.size();
+		this.players = board.getPlayers().size();
+		this.pieces = new Piece[players];
+		this.zobristPieces = new int[players];
+		this.locations = new int[players];
+		this.tickets = new int[players][TICKETS];
+		int player = 1;
+		for (Piece piece : board.getPlayers()) {
+			int index = piece.isMrX() ? MRX : player++;
+			this.pieces[index] = piece;
+			this.zobristPieces[index] = Zobrist.index(piece);
+			if (piece.isDetective()) {
+				this.locations[index] = board.getDetectiveLocation((Piece.Detective) piece).orElseThrow();
+			}
+			Board.TicketBoard ticketBoard = board.getPlayerTickets(piece).orElseThrow();
+			for (ScotlandYard.Ticket ticket : TICKET_TYPES) {
+				this.tickets[index][ticket.ordinal()] = ticketBoard.getCount(ticket);
+			}
+		}
+		// MrX's location is only known from his moves
+		this.locations[MRX] = board.getAvailableMoves().iterator().next().source();
+		this.round = board.getMrXTravelLog().size();
+		this.remaining = 1 << MRX;
+		this.hash = zobrist.round(round) ^ zobrist.remaining(zobristPieces[MRX]);
+		for (int i = 0; i < players; ++i) {
+			this.hash ^= zobrist.location(zobristPieces[i], locations[i]);
+			for (ScotlandYard.Ticket ticket : TICKET_TYPES) {
+				this.hash ^= zobrist.tickets(zobristPieces[i], ticket, tickets[i][ticket.ordinal()]);
+			}
+		}
+	}
+
+	/**
+	 * Copy constructor; the copy starts with an empty undo stack, so it cannot unmake the moves made on the original
+	 *
+	 * @param state the original search state
+	 */
+	SearchState(@Nonnull SearchState state) {
+		this.graph = state.graph;
+		this.zobrist = state.zobrist;
+		this.rounds = state.rounds;
+		this.players = state.players;
+		this.pieces = state.pieces;
+		this.zobristPieces = state.zobristPieces;
+		this.locations = state.locations.clone();
+		this.tickets = new int[players][];
+		for (int i = 0; i < players; ++i) this.tickets[i] = state.tickets[i].clone();
+		this.round = state.round;
+		this.remaining = state.remaining;
+		this.hash = state.hash;
+	}
+
+	//-------------------- Core Functions --------------------//
+
+	/**
+	 * @param player the index of the player
+	 * @param ticket the ticket
+	 * @param destination the destination
+	 * @return the encoded single move
+	 */
+	static int single(int player, int ticket, int destination) {
+		return destination | ticket << TICKET1_SHIFT | player << PLAYER_SHIFT;
+	}
+
+	/**
+	 * @param player the index of the player
+	 * @param ticket1 the ticket of the first move
+	 * @param destination1 the destination of the first move
+	 * @param ticket2 the ticket of the second move
+	 * @param destination2 the destination of the second move
+	 * @return the encoded double move
+	 */
+	static int doubleMove(int player, int ticket1, int destination1, int ticket2, int destination2) {
+		return single(player, ticket1, destination1) | destination2 << DESTINATION2_SHIFT |
+				ticket2 << TICKET2_SHIFT | DOUBLE_FLAG;
+	}
+
+	/**
+	 * @param move the encoded move
+	 * @return the index of the player making the move
+	 */
+	static int player(int move) {
+		return move >>> PLAYER_SHIFT & PLAYER_MASK;
+	}
+
+	/**
+	 * @param move the encoded move
+	 * @return true if the move is a double move
+	 */
+	static boolean isDouble(int move) {
+		return (move & DOUBLE_FLAG) != 0;
+	}
+
+	/**
+	 * @param move the encoded move
+	 * @return the (first) ticket of the move
+	 */
+	static int ticket(int move) {
+		return move >>> TICKET1_SHIFT & TICKET_MASK;
+	}
+
+	/**
+	 * @param move the encoded double move
+	 * @return the ticket of the second move
+	 */
+	static int secondTicket(int move) {
+		return move >>> TICKET2_SHIFT & TICKET_MASK;
+	}
+
+	/**
+	 * @param move the encoded move
+	 * @return the (first) destination of the move
+	 */
+	static int firstDestination(int move) {
+		return move & NODE_MASK;
+	}
+
+	/**
+	 * @param move the encoded move
+	 * @return the final destination of the move
+	 */
+	static int destination(int move) {
+		return isDouble(move) ? move >>> DESTINATION2_SHIFT & NODE_MASK : move & NODE_MASK;
+	}
+
+	/**
+	 * @param move a move of the game
+	 * @return the encoded move
+	 */
+	int encode(@Nonnull Move move) {
+		int player = indexOf(move.commencedBy());
+		return move.visit(new Move.FunctionalVisitor<>(
+				single -> single(player, single.ticket.ordinal(), single.destination),
+				doubleMove -> doubleMove(player, doubleMove.ticket1.ordinal(), doubleMove.destination1,
+						doubleMove.ticket2.ordinal(), doubleMove.destination2)));
+	}
+
+	/**
+	 * Makes a move; it must have been generated by {@link #generateMoves(int)} in the current round.
+	 * A move of a player that cannot move anymore in the current round changes nothing, but still has to be unmade.
+	 *
+	 * @param move the encoded move
+	 */
+	void make(int move) {
+		int player = player(move);
+		if (made == undoMoves.length) {
+			undoMoves = Arrays.copyOf(undoMoves, made * 2);
+			undoSources = Arrays.copyOf(undoSources, made * 2);
+			undoRemaining = Arrays.copyOf(undoRemaining, made * 2);
+		}
+		undoMoves[made] = move;
+		undoRemaining[made] = remaining;
+		if ((remaining & 1 << player) == 0) {
+			undoSources[made++] = -1;
+			return;
+		}
+		undoSources[made++] = locations[player];
+		int ticket = ticket(move);
+		addTickets(player, ticket, -1);
+		if (player == MRX) {
+			if (isDouble(move)) {
+				addTickets(MRX, secondTicket(move), -1);
+				addTickets(MRX, DOUBLE, -1);
+				setRound(round + 2);
+			}
+			else setRound(round + 1);
+			setLocation(MRX, destination(move));
+			int next = remaining & ~1;
+			// Every detective can move after MrX
+			if (next == 0) next = (1 << players) - 2;
+			setRemaining(next);
+		}
+		else {
+			// The tickets used by the detectives are given to MrX
+			addTickets(MRX, ticket, 1);
+			setLocation(player, destination(move));
+			int next = remaining & ~(1 << player);
+			if (next == 0) next = 1 << MRX;
+			setRemaining(next);
+		}
+		// The players that can still move in the current round must have a move
+		int next = remaining;
+		for (int i = 0; i < players; ++i) {
+			if ((next & 1 << i) != 0 && !hasSingleMove(i)) next &= ~(1 << i);
+		}
+		if (next == 0) next = 1 << MRX;
+		setRemaining(next);
+	}
+
+	/**
+	 * Unmakes the last move made
+	 */
+	void unmake() {
+		int move = undoMoves[--made];
+		int source = undoSources[made];
+		setRemaining(undoRemaining[made]);
+		if (source == -1) return;
+		int player = player(move);
+		int ticket = ticket(move);
+		setLocation(player, source);
+		addTickets(player, ticket, 1);
+		if (player == MRX) {
+			if (isDouble(move)) {
+				addTickets(MRX, secondTicket(move), 1);
+				addTickets(MRX, DOUBLE, 1);
+				setRound(round - 2);
+			}
+			else setRound(round - 1);
+		}
+		else addTickets(MRX, ticket, -1);
+	}
+
+	/**
+	 * Unmakes every move made, going back to the state this search state was created with
+	 */
+	void unmakeAll() {
+		while (made > 0) unmake();
+	}
+
+	/**
+	 * Generates the available moves into the buffer of the given ply, which is only overwritten by the
+	 * next call with the same ply
+	 *
+	 * @param ply the ply of the search generating the moves
+	 * @return the number of moves generated; see {@link #moves(int)}
+	 */
+	int generateMoves(int ply) {
+		if (isMrxTurn()) return generateMoves(ply, MRX);
+		prepare(ply);
+		int count = 0;
+		for (int player = 1; player < players; ++player) {
+			if ((remaining & 1 << player) != 0) count = addSingleMoves(ply, count, player);
+		}
+		return count;
+	}
+
+	/**
+	 * Generates the available moves of a single player into the buffer of the given ply, see {@link #generateMoves(int)}
+	 *
+	 * @param ply the ply of the search generating the moves
+	 * @param player the index of the player; it must be able to move in the current round
+	 * @return the number of moves generated; see {@link #moves(int)}
+	 */
+	int generateMoves(int ply, int player) {
+		int count = addSingleMoves(prepare(ply), 0, player);
+		if (player == MRX && tickets[MRX][DOUBLE] > 0 && rounds - round >= 2) count = addDoubleMoves(ply, count);
+		return count;
+	}
+
+	/**
+	 * @param ply the ply given to {@link #generateMoves(int)}
+	 * @return the buffer of the moves generated for the ply
+	 */
+	int[] moves(int ply) {
+		return buffers[ply];
+	}
+
+	/**
+	 * Decides the game by the rules of the coursework model (cw-model's {@code MyGameStateFactory}), checked in
+	 * this order: a detective on MrX's node wins it for the detectives, detectives all out of moves win it for
+	 * MrX, MrX unable to move (on his turn, or cornered) wins it for the detectives, and the rounds running out
+	 * win it for MrX.
+	 * <br>
+	 * The reference model in the published jars checks these in another order, so it gives MrX two kinds of
+	 * game states that these rules give the detectives: MrX caught by the last detective able to move, and MrX
+	 * unable to move once the last round is over. The search keeps to the coursework rules, which the game the
+	 * coursework builds plays by (see {@code SearchStateTest})
+	 *
+	 * @return the winner of the game in this state; one of {@link #NO_WINNER}, {@link #MRX_WINS} and {@link #DETECTIVES_WIN}
+	 */
+	int winner() {
+		boolean mrxTurn = (remaining & 1 << MRX) != 0;
+		// The number of detectives that ran out of moves
+		int stuck = 0;
+		for (int player = 1; player < players; ++player) {
+			if (locations[player] == locations[MRX]) return DETECTIVES_WIN;
+			if (!hasSingleMove(player)) stuck += 1;
+		}
+		if (stuck == players - 1) return MRX_WINS;
+		if (!hasSingleMove(MRX) && (mrxTurn || isBlocked(locations[MRX]))) return DETECTIVES_WIN;
+		if (round == rounds && mrxTurn) return MRX_WINS;
+		return NO_WINNER;
+	}
+
+	/**
+	 * @return the index of the first detective that can still move in the current round; -1 if it is MrX's turn
+	 */
+	int nextDetective() {
+		int detectives = remaining & ~(1 << MRX);
+		return detectives == 0 ? -1 : Integer.numberOfTrailingZeros(detectives);
+	}
+
+	/**
+	 * @return true if it is MrX's turn
+	 */
+	boolean isMrxTurn() {
+		return (remaining & 1 << MRX) != 0;
+	}
+
+	/**
+	 * @return the hash of this state
+	 */
+	long hash() {
+		return hash;
+	}
+
+	/**
+	 * @return the number of players (MrX included)
+	 */
+	int players() {
+		return players;
+	}
+
+	/**
+	 * @param player the index of the player
+	 * @return the piece of the player
+	 */
+	@Nonnull
+	Piece piece(int player) {
+		return pieces[player];
+	}
+
+	/**
+	 * @param player the index of the player
+	 * @return the location of the player
+	 */
+	int location(int player) {
+		return locations[player];
+	}
+
+	/**
+	 * @param player the index of the player
+	 * @param ticket the ordinal of the ticket
+	 * @return the number of tickets of that type the player has
+	 */
+	int tickets(int player, int ticket) {
+		return tickets[player][ticket];
+	}
+
+	/**
+	 * @return the current round
+	 */
+	int round() {
+		return round;
+	}
+
+	/**
+	 * @param player the index of the player
+	 * @return the bitmask of the transports the player has at least one ticket for (a secret ticket allows every
+	 * transport, ferries included), as used by {@link DistanceOracle#distance}
+	 */
+	int transportMask(int player) {
+		if (tickets[player][SECRET] > 0) return DistanceOracle.ALL_TRANSPORTS;
+		int mask = 0;
+		for (int ticket : TRANSPORT_ONLY_TICKETS) {
+			if (tickets[player][ticket] > 0) mask |= TICKET_TRANSPORTS[ticket];
+		}
+		return mask;
+	}
+
+	/**
+	 * @param node the node
+	 * @return true if a detective is at the node
+	 */
+	boolean isOccupied(int node) {
+		for (int player = 1; player < players; ++player) {
+			if (locations[player] == node) return true;
+		}
+		return false;
+	}
+
+	//-------------------- Auxiliary Functions --------------------//
+
+	/**
+	 * @param piece the piece
+	 * @return the index of the player of the piece
+	 */
+	private int indexOf(Piece piece) {
+		for (int player = 0; player < players; ++player) {
+			if (pieces[player].equals(piece)) return player;
+		}
+		throw new IllegalArgumentException("Piece not in the game: " + piece);
+	}
+
+	/**
+	 * @param player the index of the player
+	 * @return true if the player has at least one single move
+	 */
+	private boolean hasSingleMove(int player) {
+		int source = locations[player];
+		int[] adjacentNodes = graph.neighbours(source);
+		int[] edgeTransports = graph.transports(source);
+		int mask = transportMask(player);
+		for (int i = 0; i < adjacentNodes.length; ++i) {
+			if ((edgeTransports[i] & mask) != 0 && !isOccupied(adjacentNodes[i])) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param node MrX's location
+	 * @return true if a detective is at one of the nodes adjacent to MrX
+	 */
+	private boolean isBlocked(int node) {
+		for (int adjacentNode : graph.neighbours(node)) {
+			if (isOccupied(adjacentNode)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Makes sure the buffer of the ply exists
+	 *
+	 * @param ply the ply
+	 * @return the ply
+	 */
+	private int prepare(int ply) {
+		if (ply >= buffers.length) buffers = Arrays.copyOf(buffers, ply + 1);
+		if (buffers[ply] == null) buffers[ply] = new int[INITIAL_CAPACITY];
+		return ply;
+	}
+
+	/**
+	 * Adds the single moves of the player to the buffer of the ply
+	 *
+	 * @param ply the ply
+	 * @param count the number of moves already in the buffer
+	 * @param player the index of the player
+	 * @return the number of moves in the buffer
+	 */
+	private int addSingleMoves(int ply, int count, int player) {
+		int source = locations[player];
+		int[] adjacentNodes = graph.neighbours(source);
+		int[] edgeTransports = graph.transports(source);
+		for (int i = 0; i < adjacentNodes.length; ++i) {
+			int destination = adjacentNodes[i];
+			if (isOccupied(destination)) continue;
+			for (int ticket : TRANSPORT_ONLY_TICKETS) {
+				if ((edgeTransports[i] & TICKET_TRANSPORTS[ticket]) != 0 && tickets[player][ticket] > 0) {
+					count = add(ply, count, single(player, ticket, destination));
+				}
+			}
+			if (tickets[player][SECRET] > 0) count = add(ply, count, single(player, SECRET, destination));
+		}
+		return count;
+	}
+
+	/**
+	 * Adds the double moves of MrX to the buffer of the ply
+	 *
+	 * @param ply the ply
+	 * @param count the number of moves already in the buffer
+	 * @return the number of moves in the buffer
+	 */
+	private int addDoubleMoves(int ply, int count) {
+		int source = locations[MRX];
+		int[] adjacentNodes = graph.neighbours(source);
+		int[] edgeTransports = graph.transports(source);
+		for (int i = 0; i < adjacentNodes.length; ++i) {
+			int destination1 = adjacentNodes[i];
+			if (isOccupied(destination1)) continue;
+			for (int ticket1 = 0; ticket1 < TICKETS; ++ticket1) {
+				if (!canUse(ticket1, edgeTransports[i], 1)) continue;
+				int[] adjacentNodes2 = graph.neighbours(destination1);
+				int[] edgeTransports2 = graph.transports(destination1);
+				for (int j = 0; j < adjacentNodes2.length; ++j) {
+					int destination2 = adjacentNodes2[j];
+					if (isOccupied(destination2)) continue;
+					for (int ticket2 = 0; ticket2 < TICKETS; ++ticket2) {
+						if (canUse(ticket2, edgeTransports2[j], ticket1 == ticket2 ? 2 : 1)) {
+							count = add(ply, count, doubleMove(MRX, ticket1, destination1, ticket2, destination2));
+						}
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param ticket the ordinal of the ticket
+	 * @param edgeTransports the transports of the edge
+	 * @param needed the number of tickets of that type needed
+	 * @return true if MrX can use the ticket on the edge
+	 */
+	private boolean canUse(int ticket, int edgeTransports, int needed) {
+		if (ticket == DOUBLE || tickets[MRX][ticket] < needed) return false;
+		return ticket == SECRET || (edgeTransports & TICKET_TRANSPORTS[ticket]) != 0;
+	}
+
+	/**
+	 * @param ply the ply
+	 * @param count the number of moves already in the buffer
+	 * @param move the encoded move
+	 * @return the number of moves in the buffer
+	 */
+	private int add(int ply, int count, int move) {
+		if (count == buffers[ply].length) buffers[ply] = Arrays.copyOf(buffers[ply], count * 2);
+		buffers[ply][count] = move;
+		return count + 1;
+	}
+
+	/**
+	 * @param player the index of the player
+	 * @param node the new location of the player
+	 */
+	private void setLocation(int player, int node) {
+		hash ^= zobrist.location(zobristPieces[player], locations[player]) ^ zobrist.location(zobristPieces[player], node);
+		locations[player] = node;
+	}
+
+	/**
+	 * @param player the index of the player
+	 * @param ticket the ordinal of the ticket
+	 * @param delta the number of tickets given (or taken, if negative)
+	 */
+	private void addTickets(int player, int ticket, int delta) {
+		ScotlandYard.Ticket type = TICKET_TYPES[ticket];
+		int count = tickets[player][ticket];
+		hash ^= zobrist.tickets(zobristPieces[player], type, count) ^ zobrist.tickets(zobristPieces[player], type, count + delta);
+		tickets[player][ticket] = count + delta;
+	}
+
+	/**
+	 * @param round the new round
+	 */
+	private void setRound(int round) {
+		hash ^= zobrist.round(this.round) ^ zobrist.round(round);
+		this.round = round;
+	}
+
+	/**
+	 * @param remaining the players that can still move in the current round
+	 */
+	private void setRemaining(int remaining) {
+		for (int changed = this.remaining ^ remaining; changed != 0; changed &= changed - 1) {
+			hash ^= zobrist.remaining(zobristPieces[Integer.numberOfTrailingZeros(changed)]);
+		}
+		this.remaining = remaining;
+	}
+}
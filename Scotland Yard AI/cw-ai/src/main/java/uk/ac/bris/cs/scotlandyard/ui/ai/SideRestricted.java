@@ -0,0 +1,18 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+
+/**
+ * An AI that can only play some of the pieces, so that it is only given their side (see {@link Tournament});
+ * an AI that is not one plays every piece
+ */
+public interface SideRestricted {
+
+	/**
+	 * @param piece the piece
+	 * @return true if this AI can pick the moves of the piece
+	 */
+	boolean supports(@Nonnull Piece piece);
+}
@@ -0,0 +1,421 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+
+import io.atlassian.fugue.Pair;
+import io.github.fastclasspathscanner.FastClasspathScanner;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+/**
+ * Plays ScotlandYard games between AIs without the UI, many at a time, and reports how well and how fast
+ * each AI played.
+ * <br>
+ * Every game is built with {@link MyGameStateFactory} on the standard map, with MrX and five detectives
+ * starting where {@link ScotlandYard#generateMrXLocation} and {@link ScotlandYard#generateDetectiveLocations}
+ * put them for the seed of the game, so the same seeds always give the same start positions. One instance of
+ * an AI plays MrX and another one plays every detective; both are made for each game.
+ * <br>
+ * Usage: {@code Tournament [--games N] [--threads N] [--time MILLISECONDS] [--seed N] [--mrx AI] [--detectives AI]}.
+ * AIs are found on the classpath and referred to by their name; without {@code --mrx} (or {@code --detectives})
+ * every AI found that can play that side plays it in turn. An AI that only plays some of the pieces says so by
+ * being {@link SideRestricted}, and is never given the other side.
+ */
+public final class Tournament {
+
+	/**
+	 * The detectives of every game
+	 */
+	private static final ImmutableList<Piece.Detective> DETECTIVES = ImmutableList.of(Piece.Detective.RED,
+			Piece.Detective.GREEN, Piece.Detective.BLUE, Piece.Detective.WHITE, Piece.Detective.YELLOW);
+
+	/**
+	 * The game setup
+	 */
+	private final GameSetup setup;
+	/**
+	 * The number of games of every pairing
+	 */
+	private final int games;
+	/**
+	 * The number of games played at the same time
+	 */
+	private final int threads;
+	/**
+	 * The time an AI has for each move, in milliseconds
+	 */
+	private final long moveTime;
+	/**
+	 * The seed of the first game; the next games take the next seeds
+	 */
+	private final int seed;
+
+	/**
+	 * Tournament constructor
+	 *
+	 * @param setup the game setup
+	 * @param games the number of games of every pairing
+	 * @param threads the number of games played at the same time
+	 * @param moveTime the time an AI has for each move, in milliseconds
+	 * @param seed the seed of the first game
+	 * @throws IllegalArgumentException if the number of games, threads or the move time is not positive
+	 */
+	public Tournament(@Nonnull GameSetup setup, int games, int threads, long moveTime, int seed) {
+		if (games <= 0) throw new IllegalArgumentException("Games must be positive!");
+		if (threads <= 0) throw new IllegalArgumentException("Threads must be positive!");
+		if (moveTime <= 0) throw new IllegalArgumentException("Move time must be positive!");
+		this.setup = Objects.requireNonNull(setup);
+		this.games = games;
+		this.threads = threads;
+		this.moveTime = moveTime;
+		this.seed = seed;
+	}
+
+	//-------------------- Core Functions --------------------//
+
+	/**
+	 * Plays the tournament described by the arguments and prints one line of results per pairing
+	 *
+	 * @param args the arguments, see {@link Tournament}
+	 * @throws IOException if the standard map cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<>();
+		for (int i = 0; i < args.length; i += 2) {
+			if (!args[i].startsWith("--") || i + 1 == args.length) throw new IllegalArgumentException("Bad argument: " + args[i]);
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		Tournament tournament = new Tournament(
+				new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24ROUNDS),
+				Integer.parseInt(options.getOrDefault("games", "100")),
+				Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+				Long.parseLong(options.getOrDefault("time", "1000")),
+				Integer.parseInt(options.getOrDefault("seed", "0")));
+		Map<String, Supplier<Ai>> mrXAis = findAis(List.of(Piece.MrX.MRX));
+		Map<String, Supplier<Ai>> detectivesAis = findAis(DETECTIVES);
+		Collection<String> mrXNames = getSide(mrXAis, options.get("mrx"), "MrX");
+		Collection<String> detectivesNames = getSide(detectivesAis, options.get("detectives"), "the detectives");
+		System.out.println(Result.HEADER);
+		for (String mrX : mrXNames) {
+			for (String detectives : detectivesNames) {
+				try {
+					System.out.println(tournament.play(mrX, mrXAis.get(mrX), detectives, detectivesAis.get(detectives)));
+				}
+				catch (RuntimeException e) {
+					System.out.printf("%-12s %-12s failed: %s%n", mrX, detectives, e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Plays the games of a pairing, as many at a time as there are threads
+	 *
+	 * @param mrXName the name of the AI playing MrX
+	 * @param mrX makes the AI playing MrX
+	 * @param detectivesName the name of the AI playing the detectives
+	 * @param detectives makes the AI playing the detectives
+	 * @return the results of the games
+	 * @throws IllegalStateException if an AI failed or made a move that is not available
+	 */
+	@Nonnull
+	public Result play(@Nonnull String mrXName, @Nonnull Supplier<Ai> mrX,
+	                   @Nonnull String detectivesName, @Nonnull Supplier<Ai> detectives) {
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		Result result = new Result(mrXName, detectivesName);
+		long start = System.nanoTime();
+		try {
+			List<Future<Game>> futures = new ArrayList<>();
+			for (int i = 0; i < this.games; ++i) {
+				int gameSeed = this.seed + i;
+				futures.add(executor.submit(() -> playGame(mrX, detectives, gameSeed)));
+			}
+			for (Future<Game> future : futures) result.add(future.get());
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause().toString(), e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted", e);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		result.time = System.nanoTime() - start;
+		return result;
+	}
+
+	/**
+	 * @param pieces the pieces of a side
+	 * @return the AIs on the classpath that can be made with a public constructor without arguments and can play
+	 * every one of the pieces, by name
+	 */
+	@Nonnull
+	public static Map<String, Supplier<Ai>> findAis(@Nonnull Collection<? extends Piece> pieces) {
+		Map<String, Supplier<Ai>> ais = new TreeMap<>();
+		List<Class<Ai>> classes = new FastClasspathScanner().enableClassInfo().whitelistPackages("uk.ac.bris.cs")
+				.scan().getClassesImplementing(Ai.class.getName()).loadClasses(Ai.class);
+		for (Class<Ai> type : classes) {
+			if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || !Modifier.isPublic(type.getModifiers())) continue;
+			try {
+				type.getConstructor();
+			}
+			catch (NoSuchMethodException e) {
+				continue;
+			}
+			Supplier<Ai> supplier = () -> {
+				try {
+					return type.getConstructor().newInstance();
+				}
+				catch (ReflectiveOperationException e) {
+					throw new IllegalStateException("Cannot make " + type.getName(), e);
+				}
+			};
+			Ai ai = supplier.get();
+			if (ai instanceof SideRestricted && !pieces.stream().allMatch(((SideRestricted) ai)::supports)) continue;
+			ais.put(ai.name(), supplier);
+		}
+		return ais;
+	}
+
+	//-------------------- Auxiliary Functions --------------------//
+
+	/**
+	 * @param ais the AIs that can play a side, by name
+	 * @param name the name of the AI chosen for the side; null if every AI plays the side
+	 * @param side the side, for the error message
+	 * @return the names of the AIs playing the side
+	 * @throws IllegalArgumentException if there is no AI with the name that can play the side
+	 */
+	private static Collection<String> getSide(Map<String, Supplier<Ai>> ais, String name, String side) {
+		if (name == null) return ais.keySet();
+		if (!ais.containsKey(name)) {
+			throw new IllegalArgumentException("No AI named " + name + " that can play " + side + " among " + ais.keySet());
+		}
+		return List.of(name);
+	}
+
+	/**
+	 * Plays a game to the end
+	 *
+	 * @param mrXAi makes the AI playing MrX
+	 * @param detectivesAi makes the AI playing the detectives
+	 * @param gameSeed the seed of the start positions
+	 * @return the game played
+	 * @throws IllegalStateException if an AI made a move that is not available
+	 */
+	private Game playGame(Supplier<Ai> mrXAi, Supplier<Ai> detectivesAi, int gameSeed) {
+		Ai mrX = mrXAi.get();
+		Ai detectives = detectivesAi.get();
+		Game game = new Game();
+		mrX.onStart();
+		detectives.onStart();
+		try {
+			List<Player> detectivePlayers = new ArrayList<>();
+			List<Integer> locations = ScotlandYard.generateDetectiveLocations(gameSeed, DETECTIVES.size());
+			for (int i = 0; i < DETECTIVES.size(); ++i) {
+				detectivePlayers.add(new Player(DETECTIVES.get(i), ScotlandYard.defaultDetectiveTickets(), locations.get(i)));
+			}
+			Player mrXPlayer = new Player(Piece.MrX.MRX, ScotlandYard.defaultMrXTickets(), ScotlandYard.generateMrXLocation(gameSeed));
+			Board.GameState state = new MyGameStateFactory().build(this.setup, mrXPlayer, ImmutableList.copyOf(detectivePlayers));
+			while (state.getWinner().isEmpty()) {
+				ImmutableSet<Move> moves = state.getAvailableMoves();
+				boolean mrXTurn = moves.iterator().next().commencedBy().isMrX();
+				Ai ai = mrXTurn ? mrX : detectives;
+				long start = System.nanoTime();
+				Move move = ai.pickMove(state, new Pair<>(this.moveTime, TimeUnit.MILLISECONDS));
+				long time = System.nanoTime() - start;
+				if (!moves.contains(move)) {
+					throw new IllegalStateException(ai.name() + " made the move " + move + ", which is not available, in game " + gameSeed);
+				}
+				(mrXTurn ? game.mrX : game.detectives).add(time, ai instanceof NodeCounter ? ((NodeCounter) ai).getNodes() : -1);
+				state = state.advance(move);
+			}
+			game.mrXWon = state.getWinner().contains(Piece.MrX.MRX);
+			game.rounds = state.getMrXTravelLog().size();
+		}
+		finally {
+			mrX.onTerminate();
+			detectives.onTerminate();
+		}
+		return game;
+	}
+
+	//-------------------- Auxiliary Classes --------------------//
+
+	/**
+	 * The moves one side made in one or more games
+	 */
+	private static final class Side {
+		/**
+		 * The time each move took, in nanoseconds
+		 */
+		private final List<Long> times = new ArrayList<>();
+		/**
+		 * The nodes searched by the moves of an AI that counts them
+		 */
+		private long nodes;
+		/**
+		 * The time of the moves of an AI that counts its nodes, in nanoseconds
+		 */
+		private long nodeTime;
+
+		/**
+		 * @param time the time the move took, in nanoseconds
+		 * @param nodes the nodes searched for the move; negative if the AI does not count them
+		 */
+		private void add(long time, long nodes) {
+			this.times.add(time);
+			if (nodes >= 0) {
+				this.nodes += nodes;
+				this.nodeTime += time;
+			}
+		}
+
+		/**
+		 * @param other the moves added to these ones
+		 */
+		private void add(Side other) {
+			this.times.addAll(other.times);
+			this.nodes += other.nodes;
+			this.nodeTime += other.nodeTime;
+		}
+
+		/**
+		 * @return the mean, 99th percentile and longest time of a move in milliseconds, and the nodes searched
+		 * per second ("-" if the AI does not count them)
+		 */
+		@Override
+		public String toString() {
+			long[] sorted = this.times.stream().mapToLong(Long::longValue).sorted().toArray();
+			if (sorted.length == 0) return String.format("%7s %7s %7s %10s", "-", "-", "-", "-");
+			double mean = Arrays.stream(sorted).average().orElse(0);
+			long p99 = sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)];
+			String nodesPerSecond = this.nodeTime == 0 ? "-" : String.format("%.0f", this.nodes * 1e9 / this.nodeTime);
+			return String.format("%7.1f %7.1f %7.1f %10s", mean / 1e6, p99 / 1e6, sorted[sorted.length - 1] / 1e6, nodesPerSecond);
+		}
+	}
+
+	/**
+	 * A game played
+	 */
+	private static final class Game {
+		/**
+		 * The moves of MrX
+		 */
+		private final Side mrX = new Side();
+		/**
+		 * The moves of the detectives
+		 */
+		private final Side detectives = new Side();
+		/**
+		 * True if MrX won the game
+		 */
+		private boolean mrXWon;
+		/**
+		 * The number of rounds played, i.e., the size of MrX's travel log
+		 */
+		private int rounds;
+	}
+
+	/**
+	 * The results of the games of a pairing
+	 */
+	public static final class Result {
+		/**
+		 * The header of the columns of {@link #toString()}
+		 */
+		public static final String HEADER = String.format("%-12s %-12s %6s %7s %6s | %7s %7s %7s %10s | %7s %7s %7s %10s | %7s",
+				"MrX", "Detectives", "Games", "MrX win", "Rounds",
+				"MrX ms", "p99", "max", "nodes/s", "Det ms", "p99", "max", "nodes/s", "Wall s");
+
+		/**
+		 * The name of the AI playing MrX
+		 */
+		private final String mrXName;
+		/**
+		 * The name of the AI playing the detectives
+		 */
+		private final String detectivesName;
+		/**
+		 * The moves of MrX
+		 */
+		private final Side mrX = new Side();
+		/**
+		 * The moves of the detectives
+		 */
+		private final Side detectives = new Side();
+		/**
+		 * The number of games played
+		 */
+		private int games;
+		/**
+		 * The number of games MrX won
+		 */
+		private int mrXWins;
+		/**
+		 * The number of rounds of every game added up
+		 */
+		private long rounds;
+		/**
+		 * The time the games took, in nanoseconds
+		 */
+		private long time;
+
+		/**
+		 * Result constructor
+		 *
+		 * @param mrXName the name of the AI playing MrX
+		 * @param detectivesName the name of the AI playing the detectives
+		 */
+		private Result(String mrXName, String detectivesName) {
+			this.mrXName = mrXName;
+			this.detectivesName = detectivesName;
+		}
+
+		/**
+		 * @param game the game added to the results
+		 */
+		private void add(Game game) {
+			this.games += 1;
+			if (game.mrXWon) this.mrXWins += 1;
+			this.rounds += game.rounds;
+			this.mrX.add(game.mrX);
+			this.detectives.add(game.detectives);
+		}
+
+		/**
+		 * @return the number of games played
+		 */
+		public int getGames() {
+			return this.games;
+		}
+
+		/**
+		 * @return the fraction of the games MrX won
+		 */
+		public double getMrXWinRate() {
+			return this.games == 0 ? 0 : (double) this.mrXWins / this.games;
+		}
+
+		/**
+		 * @return one line with the win rate of MrX, the mean number of rounds, the move times and the search
+		 * speed of both sides, and the time the games took (see {@link #HEADER})
+		 */
+		@Override
+		public String toString() {
+			return String.format("%-12s %-12s %6d %6.1f%% %6.1f | %s | %s | %7.1f",
+					this.mrXName, this.detectivesName, this.games, 100 * getMrXWinRate(),
+					this.games == 0 ? 0 : (double) this.rounds / this.games, this.mrX, this.detectives, this.time / 1e9);
+		}
+	}
+}
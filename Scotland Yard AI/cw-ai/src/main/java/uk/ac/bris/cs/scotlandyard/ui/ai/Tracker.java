@@ -0,0 +1,229 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import io.atlassian.fugue.Pair;
+import uk.ac.bris.cs.scotlandyard.model.*;
+
+/**
+ * A class that is used to automate moves for the detectives in a ScotlandYard game
+ * <br>
+ * The detectives keep track of the nodes MrX can be at (see {@link MrXBelief}) and plan their moves together:
+ * each detective in turn takes the destination that can catch MrX, or else lets the detectives reach the most
+ * nodes MrX can move to next that the detectives before it do not reach already.
+ */
+public class Tracker implements Ai {
+
+	/**
+	 * The game setup
+	 */
+	private GameSetup setup;
+	/**
+	 * The distances between every pair of nodes of the game graph
+	 */
+	private DistanceOracle distances;
+	/**
+	 * The nodes MrX can be at
+	 */
+	private MrXBelief belief;
+
+	/**
+	 * The tickets a detective can move with
+	 */
+	private static final ScotlandYard.Ticket[] DETECTIVE_TICKETS = ScotlandYard.DETECTIVE_TICKETS.toArray(new ScotlandYard.Ticket[0]);
+
+	//-------------------- Core Functions --------------------//
+
+	/**
+	 * @return the name of this AI
+	 */
+	@Nonnull
+	@Override
+	public String name() {
+		return "Tracker";
+	}
+
+	/**
+	 * Forgets the game followed so far
+	 */
+	@Override
+	public void onStart() {
+		if (this.belief != null) this.belief.reset();
+	}
+
+	/**
+	 * Picks the move of a detective that can move in the current round, planned together with the moves of
+	 * the other detectives that can still move
+	 *
+	 * @param board the current board
+	 * @param timeoutPair the timeout pair
+	 * @return the best move for the detective
+	 */
+	@Nonnull
+	@Override
+	public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
+		if (this.setup != board.getSetup()) {
+			this.setup = board.getSetup();
+			this.distances = DistanceOracle.of(this.setup);
+			this.belief = new MrXBelief(this.distances);
+		}
+		// The moves of every detective that can still move, one per destination
+		Map<Piece, Map<Integer, Move>> moves = new LinkedHashMap<>();
+		for (Move move : board.getAvailableMoves()) {
+			// Only happens when this AI plays MrX
+			if (move.commencedBy().isMrX()) return getEscape(board);
+			Map<Integer, Move> destinations = moves.computeIfAbsent(move.commencedBy(), piece -> new HashMap<>());
+			int destination = getDestination(move);
+			// Keeps the ticket the detective has the most of
+			destinations.merge(destination, move, (kept, other) -> getTicketCount(board, other) > getTicketCount(board, kept) ? other : kept);
+		}
+		this.belief.update(board);
+
+		long[] frontier = new long[this.belief.words()];
+		this.belief.frontier(frontier);
+		// The nodes the detectives can reach in the next round
+		long[] covered = new long[this.belief.words()];
+		for (Piece piece : board.getPlayers()) {
+			if (piece.isDetective() && !moves.containsKey(piece)) {
+				board.getDetectiveLocation((Piece.Detective) piece).ifPresent(node -> cover(board, piece, node, covered));
+			}
+		}
+		// The detectives with the fewest destinations choose first
+		List<Piece> detectives = new ArrayList<>(moves.keySet());
+		detectives.sort(Comparator.comparingInt((Piece piece) -> moves.get(piece).size()).thenComparing(ScotlandYard.PIECE_VALUE_ORDER));
+		Move firstMove = null;
+		for (Piece detective : detectives) {
+			Move bestMove = null;
+			int bestScore = Integer.MIN_VALUE;
+			for (Map.Entry<Integer, Move> entry : moves.get(detective).entrySet()) {
+				int score = score(board, detective, entry.getKey(), frontier, covered);
+				if (score > bestScore || score == bestScore && entry.getKey() < getDestination(bestMove)) {
+					bestMove = entry.getValue();
+					bestScore = score;
+				}
+			}
+			cover(board, detective, getDestination(Objects.requireNonNull(bestMove)), covered);
+			if (firstMove == null) firstMove = bestMove;
+		}
+		return Objects.requireNonNull(firstMove);
+	}
+
+	//-------------------- Auxiliary Functions --------------------//
+
+	/**
+	 * @param board the current board
+	 * @param detective the detective
+	 * @param destination the destination of a move of the detective
+	 * @param frontier the nodes MrX can be at after his next move
+	 * @param covered the nodes the detectives already planned can reach in the next round
+	 * @return the score of the destination: moving to a node MrX can be at comes first, then reaching the most
+	 * new nodes MrX can move to, then getting closest to a node MrX can be at
+	 */
+	private int score (Board board, Piece detective, int destination, long[] frontier, long[] covered) {
+		// The nodes this detective would reach in the next round that no other detective reaches
+		int gain = 0;
+		long[] reach = reachable(board, detective, destination);
+		for (int i = 0; i < reach.length; ++i) gain += Long.bitCount(reach[i] & frontier[i] & ~covered[i]);
+		int mask = getTransportMask(board, detective);
+		int[] closest = {DistanceOracle.UNREACHABLE};
+		MrXBelief.forEach(this.belief.nodes(), node -> closest[0] = Math.min(closest[0], this.distances.distance(mask, destination, node)));
+		return (this.belief.contains(destination) ? 1 << 20 : 0) + (gain << 8) - closest[0];
+	}
+
+	/**
+	 * Adds the nodes a detective at the given node can reach in the next round to the covered nodes
+	 *
+	 * @param board the current board
+	 * @param detective the detective
+	 * @param node the node of the detective
+	 * @param covered the nodes the detectives can reach in the next round
+	 */
+	private void cover (Board board, Piece detective, int node, long[] covered) {
+		MrXBelief.or(covered, reachable(board, detective, node));
+	}
+
+	/**
+	 * @param board the current board
+	 * @param detective the detective
+	 * @param node the node of the detective
+	 * @return the node and the nodes the detective can move to from it with the tickets it has
+	 */
+	private long[] reachable (Board board, Piece detective, int node) {
+		long[] reach = new long[this.belief.words()];
+		MrXBelief.add(reach, node);
+		Board.TicketBoard tickets = board.getPlayerTickets(detective).orElseThrow();
+		for (ScotlandYard.Ticket ticket : DETECTIVE_TICKETS) {
+			if (tickets.getCount(ticket) > 0) MrXBelief.or(reach, this.belief.reach(ticket, node));
+		}
+		return reach;
+	}
+
+	/**
+	 * @param board the current board
+	 * @param detective the detective
+	 * @return the bitmask of the transports the detective has tickets for
+	 */
+	private int getTransportMask (Board board, Piece detective) {
+		Board.TicketBoard tickets = board.getPlayerTickets(detective).orElseThrow();
+		int mask = 0;
+		for (ScotlandYard.Transport transport : ScotlandYard.Transport.values()) {
+			if (tickets.getCount(transport.requiredTicket()) > 0) mask |= 1 << transport.ordinal();
+		}
+		return mask;
+	}
+
+	/**
+	 * @param board the current board
+	 * @param move a single move of a detective
+	 * @return the number of tickets of the type the move uses the detective has
+	 */
+	private int getTicketCount (Board board, Move move) {
+		return board.getPlayerTickets(move.commencedBy()).orElseThrow().getCount(move.tickets().iterator().next());
+	}
+
+	/**
+	 * Used when this AI plays MrX
+	 *
+	 * @param board the current board
+	 * @return the move of MrX whose destination is the furthest from the closest detective
+	 */
+	private Move getEscape (Board board) {
+		Move bestMove = null;
+		int bestDistance = -1;
+		for (Move move : board.getAvailableMoves()) {
+			int distance = DistanceOracle.UNREACHABLE;
+			for (Piece piece : board.getPlayers()) {
+				if (piece.isDetective()) {
+					int location = board.getDetectiveLocation((Piece.Detective) piece).orElseThrow();
+					distance = Math.min(distance, this.distances.distance(location, getDestination(move)));
+				}
+			}
+			if (distance > bestDistance) {
+				bestMove = move;
+				bestDistance = distance;
+			}
+		}
+		return Objects.requireNonNull(bestMove);
+	}
+
+	/**
+	 * @param move the move
+	 * @return the destination of the move
+	 */
+	private static int getDestination (Move move) {
+		return move.visit(new Move.Visitor<Integer>() {
+			@Override
+			public Integer visit(Move.SingleMove move) {
+				return move.destination;
+			}
+
+			@Override
+			public Integer visit(Move.DoubleMove move) {
+				return move.destination2;
+			}
+		});
+	}
+}
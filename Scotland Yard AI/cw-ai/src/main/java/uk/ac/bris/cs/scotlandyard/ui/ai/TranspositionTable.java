@@ -0,0 +1,163 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+/**
+ * A fixed-size hash table of search results indexed by the {@link Zobrist} hash of a game state.
+ * Every entry is packed into a single long, so probing and storing never allocate.
+ * <br>
+ * The table can be shared by several search threads without locks: the key of every entry is stored XORed
+ * with its data, so an entry torn by two threads writing at the same time no longer matches its key and is
+ * simply treated as a miss.
+ * <br>
+ * An entry is replaced when the new result comes from a deeper (or equally deep) search, or when the
+ * stored one comes from an older search.
+ */
+final class TranspositionTable {
+
+	/**
+	 * The score is exact
+	 */
+	static final byte EXACT = 0;
+	/**
+	 * The score is a lower bound (the search failed high)
+	 */
+	static final byte LOWER = 1;
+	/**
+	 * The score is an upper bound (the search failed low)
+	 */
+	static final byte UPPER = 2;
+	/**
+	 * The best move stored when there is none
+	 */
+	static final int NO_MOVE = -1;
+	/**
+	 * The entry returned by {@link #probe(long)} when the game state is not in the table
+	 */
+	static final long MISS = 0;
+
+	/**
+	 * The layout of an entry: the score, the best move plus one (so that 0 means no move), the depth,
+	 * the bound type and the (truncated) search it was stored in
+	 */
+	private static final int MOVE_SHIFT = 32;
+	private static final int MOVE_BITS = 20;
+	private static final int DEPTH_SHIFT = MOVE_SHIFT + MOVE_BITS;
+	private static final int DEPTH_BITS = 8;
+	private static final int BOUND_SHIFT = DEPTH_SHIFT + DEPTH_BITS;
+	private static final int AGE_SHIFT = BOUND_SHIFT + 2;
+
+	/**
+	 * The number of entries minus one (the number of entries is a power of two)
+	 */
+	private final int mask;
+	/**
+	 * The hash of the game state of each entry XORed with its data; 0 marks an empty entry
+	 */
+	private final long[] keys;
+	/**
+	 * The data of each entry
+	 */
+	private final long[] data;
+	/**
+	 * The current search
+	 */
+	private int age;
+
+	/**
+	 * TranspositionTable constructor
+	 *
+	 * @param bits the base 2 logarithm of the number of entries
+	 */
+	TranspositionTable(int bits) {
+		int size = 1 << bits;
+		this.mask = size - 1;
+		this.keys = new long[size];
+		this.data = new long[size];
+	}
+
+	//-------------------- Core Functions --------------------//
+
+	/**
+	 * Marks the beginning of a new search, so that older entries get replaced first; it must not be
+	 * called while a search is using the table
+	 */
+	void newSearch() {
+		age = (age + 1) & 3;
+	}
+
+	/**
+	 * @param key the hash of the game state
+	 * @return the entry of the game state, to be read with the static accessors; {@link #MISS} if the game
+	 * state is not in the table
+	 */
+	long probe(long key) {
+		int index = (int) key & mask;
+		long entry = data[index];
+		return (keys[index] ^ entry) == key && key != 0 ? entry : MISS;
+	}
+
+	/**
+	 * Stores the result of a search, if it is worth more than the entry already in its place
+	 *
+	 * @param key the hash of the game state
+	 * @param depth the depth searched, at least 1
+	 * @param bound the bound type of the score
+	 * @param score the score
+	 * @param move the best move, as an index in the order the moves are generated
+	 */
+	void store(long key, int depth, byte bound, int score, int move) {
+		int index = (int) key & mask;
+		long entry = data[index];
+		boolean sameKey = (keys[index] ^ entry) == key;
+		if (!sameKey && age(entry) == age && depth(entry) > depth) return;
+		// Keeps the best move of an earlier search of the same game state if this one has none
+		if (move == NO_MOVE && sameKey) move = move(entry);
+		// Moves that do not fit in an entry are not worth remembering
+		if (move >= (1 << MOVE_BITS) - 1) move = NO_MOVE;
+		entry = (score & 0xFFFFFFFFL) | (long) (move + 1) << MOVE_SHIFT | (long) Math.min(depth, (1 << DEPTH_BITS) - 1) << DEPTH_SHIFT |
+				(long) bound << BOUND_SHIFT | (long) age << AGE_SHIFT;
+		data[index] = entry;
+		keys[index] = key ^ entry;
+	}
+
+	/**
+	 * @param entry the entry, as returned by {@link #probe(long)}
+	 * @return the depth searched below the entry
+	 */
+	static int depth(long entry) {
+		return (int) (entry >>> DEPTH_SHIFT) & ((1 << DEPTH_BITS) - 1);
+	}
+
+	/**
+	 * @param entry the entry, as returned by {@link #probe(long)}
+	 * @return the bound type of the score of the entry
+	 */
+	static byte bound(long entry) {
+		return (byte) (entry >>> BOUND_SHIFT & 3);
+	}
+
+	/**
+	 * @param entry the entry, as returned by {@link #probe(long)}
+	 * @return the score of the entry
+	 */
+	static int score(long entry) {
+		return (int) entry;
+	}
+
+	/**
+	 * @param entry the entry, as returned by {@link #probe(long)}
+	 * @return the best move of the entry; {@link #NO_MOVE} if there is none
+	 */
+	static int move(long entry) {
+		return (int) (entry >>> MOVE_SHIFT & ((1 << MOVE_BITS) - 1)) - 1;
+	}
+
+	//-------------------- Auxiliary Functions --------------------//
+
+	/**
+	 * @param entry the entry
+	 * @return the (truncated) search the entry was stored in
+	 */
+	private static int age(long entry) {
+		return (int) (entry >>> AGE_SHIFT & 3);
+	}
+}
@@ -0,0 +1,113 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+
+/**
+ * The random keys used to hash a game state: the hash of a state is the XOR of the keys of its parts
+ * (the location and the ticket counts of every player, the round and the pieces left to move), so it can
+ * be updated incrementally when a single part changes
+ */
+final class Zobrist {
+
+	/**
+	 * The number of pieces a game can have (MrX and every detective colour)
+	 */
+	static final int PIECES = ScotlandYard.ALL_PIECES.size();
+	/**
+	 * Ticket counts at or above this value share the same key
+	 */
+	private static final int MAX_COUNT = 64;
+	/**
+	 * Rounds at or above this value share the same key
+	 */
+	private static final int MAX_ROUND = 64;
+
+	/**
+	 * Locations[piece][node] stores the key of the piece being at the node
+	 */
+	private final long[][] locations;
+	/**
+	 * Tickets[piece][ticket][count] stores the key of the piece having that many tickets of that type
+	 */
+	private final long[][][] tickets;
+	/**
+	 * Rounds[round] stores the key of the round
+	 */
+	private final long[] rounds;
+	/**
+	 * Remaining[piece] stores the key of the piece still having to move in the current round
+	 */
+	private final long[] remaining;
+
+	/**
+	 * Zobrist constructor; the keys are always the same for the same number of nodes
+	 *
+	 * @param nodes the largest node of the graph plus one
+	 */
+	Zobrist(int nodes) {
+		Random random = new Random(0x5C07_1A9DL);
+		int ticketTypes = ScotlandYard.Ticket.values().length;
+		this.locations = new long[PIECES][nodes];
+		this.tickets = new long[PIECES][ticketTypes][MAX_COUNT];
+		this.rounds = new long[MAX_ROUND];
+		this.remaining = new long[PIECES];
+		for (int piece = 0; piece < PIECES; ++piece) {
+			for (int node = 0; node < nodes; ++node) this.locations[piece][node] = random.nextLong();
+			for (int ticket = 0; ticket < ticketTypes; ++ticket) {
+				for (int count = 0; count < MAX_COUNT; ++count) this.tickets[piece][ticket][count] = random.nextLong();
+			}
+			this.remaining[piece] = random.nextLong();
+		}
+		for (int round = 0; round < MAX_ROUND; ++round) this.rounds[round] = random.nextLong();
+	}
+
+	//-------------------- Core Functions --------------------//
+
+	/**
+	 * @param piece the piece
+	 * @return the index of the piece in {@link ScotlandYard#ALL_PIECES} (MrX is always 0)
+	 */
+	static int index(@Nonnull Piece piece) {
+		return piece.isMrX() ? 0 : ((Piece.Detective) piece).ordinal() + 1;
+	}
+
+	/**
+	 * @param piece the index of the piece
+	 * @param node the node
+	 * @return the key of the piece being at the node
+	 */
+	long location(int piece, int node) {
+		return locations[piece][node];
+	}
+
+	/**
+	 * @param piece the index of the piece
+	 * @param ticket the ticket
+	 * @param count the number of tickets
+	 * @return the key of the piece having that many tickets of the given type
+	 */
+	long tickets(int piece, @Nonnull ScotlandYard.Ticket ticket, int count) {
+		return tickets[piece][ticket.ordinal()][Math.min(count, MAX_COUNT - 1)];
+	}
+
+	/**
+	 * @param round the round
+	 * @return the key of the round
+	 */
+	long round(int round) {
+		return rounds[Math.min(round, MAX_ROUND - 1)];
+	}
+
+	/**
+	 * @param piece the index of the piece
+	 * @return the key of the piece still having to move in the current round
+	 */
+	long remaining(int piece) {
+		return remaining[piece];
+	}
+}
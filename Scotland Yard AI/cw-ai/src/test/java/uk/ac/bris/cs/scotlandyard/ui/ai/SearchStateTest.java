@@ -0,0 +1,136 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+
+/**
+ * Plays random games with {@link MyGameStateFactory} and checks that a {@link SearchState} making the same moves
+ * generates the same moves, finds the same winner and has the same hash as a search state built afresh.
+ * <br>
+ * The search follows the rules of the coursework model; the reference model this module is built against
+ * differs in two kinds of game states, see {@link SearchState#winner()}.
+ */
+public class SearchStateTest {
+
+	private static final int GAMES = 300;
+	private static final ImmutableList<Piece.Detective> DETECTIVES = ImmutableList.of(Piece.Detective.RED,
+			Piece.Detective.GREEN, Piece.Detective.BLUE, Piece.Detective.WHITE, Piece.Detective.YELLOW);
+
+	@Test public void testRandomGamesMatchTheModel() throws IOException {
+		GameSetup setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24ROUNDS);
+		DistanceOracle distances = DistanceOracle.of(setup);
+		Zobrist zobrist = new Zobrist(distances.size());
+		for (int seed = 0; seed < GAMES; seed++) {
+			Random random = new Random(seed);
+			List<Integer> locations = ScotlandYard.generateDetectiveLocations(seed, DETECTIVES.size());
+			int detectiveCount = 1 + random.nextInt(DETECTIVES.size());
+			List<Player> detectives = new ArrayList<>();
+			for (int i = 0; i < detectiveCount; i++) {
+				detectives.add(new Player(DETECTIVES.get(i), ScotlandYard.defaultDetectiveTickets(), locations.get(i)));
+			}
+			Player mrX = new Player(MRX, ScotlandYard.defaultMrXTickets(), ScotlandYard.generateMrXLocation(seed));
+			GameState board = new MyGameStateFactory().build(setup, mrX, ImmutableList.copyOf(detectives));
+			SearchState state = new SearchState(board, distances, zobrist);
+			long startHash = state.hash();
+			while (true) {
+				String where = "seed " + seed + ", round " + board.getMrXTravelLog().size();
+				assertSameWinner(board, state, where);
+				if (!board.getWinner().isEmpty()) break;
+				if (state.isMrxTurn()) {
+					assertThat(state.hash()).as(where).isEqualTo(new SearchState(board, distances, zobrist).hash());
+				}
+				Set<Integer> expected = new HashSet<>();
+				for (Move move : board.getAvailableMoves()) expected.add(state.encode(move));
+				int count = state.generateMoves(0);
+				List<Integer> generated = new ArrayList<>();
+				for (int i = 0; i < count; i++) generated.add(state.moves(0)[i]);
+				assertThat(generated).as(where).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(expected);
+
+				// Sorted, so the games only depend on the seed
+				List<Move> moves = new ArrayList<>(board.getAvailableMoves());
+				moves.sort(Comparator.comparing(Move::toString));
+				Move move = moves.get(random.nextInt(moves.size()));
+				state.make(state.encode(move));
+				board = board.advance(move);
+			}
+			state.unmakeAll();
+			assertThat(state.hash()).as("seed " + seed).isEqualTo(startHash);
+		}
+	}
+
+	@Test public void testCaptureWinsForTheDetectivesEvenIfNoDetectiveCanMoveAnymore() throws IOException {
+		GameSetup setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24ROUNDS);
+		DistanceOracle distances = DistanceOracle.of(setup);
+		// Blue uses its only ticket to catch MrX
+		GameState board = new MyGameStateFactory().build(setup,
+				new Player(MRX, ScotlandYard.defaultMrXTickets(), 86),
+				ImmutableList.of(new Player(BLUE, tickets(1, 0, 0, 0, 0), 85)));
+		SearchState state = new SearchState(board, distances, new Zobrist(distances.size()));
+		state.make(SearchState.single(SearchState.MRX, Ticket.TAXI.ordinal(), 103));
+		state.make(SearchState.single(1, Ticket.TAXI.ordinal(), 103));
+		assertThat(state.winner()).isEqualTo(SearchState.DETECTIVES_WIN);
+	}
+
+	@Test public void testMrXUnableToMoveAfterTheLastRoundLoses() throws IOException {
+		GameSetup setup = new GameSetup(ScotlandYard.standardGraph(), ImmutableList.of(true));
+		DistanceOracle distances = DistanceOracle.of(setup);
+		// MrX uses his last taxi ticket to reach 104, which only taxis leave from
+		GameState board = new MyGameStateFactory().build(setup,
+				new Player(MRX, tickets(1, 1, 1, 0, 0), 86),
+				ImmutableList.of(new Player(BLUE, ScotlandYard.defaultDetectiveTickets(), 108)));
+		SearchState state = new SearchState(board, distances, new Zobrist(distances.size()));
+		state.make(SearchState.single(SearchState.MRX, Ticket.TAXI.ordinal(), 104));
+		state.make(SearchState.single(1, Ticket.BUS.ordinal(), 105));
+		assertThat(state.round()).isEqualTo(1);
+		assertThat(state.winner()).isEqualTo(SearchState.DETECTIVES_WIN);
+	}
+
+	/**
+	 * Checks that the search state has the winner of the board, but for the game states the reference model
+	 * gives MrX while the coursework rules give them the detectives (see {@link SearchState#winner()})
+	 */
+	private static void assertSameWinner(Board board, SearchState state, String where) {
+		int expected = board.getWinner().isEmpty() ? SearchState.NO_WINNER
+				: board.getWinner().contains(MRX) ? SearchState.MRX_WINS : SearchState.DETECTIVES_WIN;
+		if (expected == SearchState.MRX_WINS && state.winner() == SearchState.DETECTIVES_WIN) {
+			boolean captured = false;
+			for (int player = 1; player < state.players(); player++) {
+				captured |= state.location(player) == state.location(SearchState.MRX);
+			}
+			boolean stuckAfterLastRound = state.isMrxTurn() && state.round() == board.getSetup().rounds.size()
+					&& state.generateMoves(0) == 0;
+			assertThat(captured || stuckAfterLastRound).as(where + ": the winner differs from the model").isTrue();
+			return;
+		}
+		assertThat(state.winner()).as(where).isEqualTo(expected);
+	}
+
+	private static ImmutableMap<Ticket, Integer> tickets(int taxi, int bus, int underground, int x2, int secret) {
+		return ImmutableMap.of(Ticket.TAXI, taxi, Ticket.BUS, bus, Ticket.UNDERGROUND, underground,
+				Ticket.DOUBLE, x2, Ticket.SECRET, secret);
+	}
+}
@@ -0,0 +1,87 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+import com.google.common.io.Resources;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * Benchmarks of the hot paths of the model, on the reference positions of a round (see {@link ReferencePosition});
+ * every call goes to the next position.
+ * <br>
+ * Game states compute their winner and moves once, so {@link #getAvailableMoves()} and {@link #getWinner()} are
+ * measured on a state freshly made by {@link #advance()}; subtract the time of {@link #advance()} to get theirs.
+ * Run with {@code mvn -P jmh compile exec:exec}, which adds the allocation profiler ({@code -prof gc}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameStateBenchmark {
+
+	/**
+	 * The least number of moves MrX made before the reference positions
+	 */
+	@Param({"1", "8", "16"})
+	public int round;
+
+	private String graph;
+	private List<ReferencePosition> positions;
+	private MoveList moves;
+	private int next;
+
+	@Setup
+	public void setUp() throws IOException {
+		this.graph = Resources.toString(Resources.getResource("graph.txt"), StandardCharsets.UTF_8);
+		GameSetup setup = new GameSetup(ScotlandYard.readGraph(this.graph), ScotlandYard.STANDARD24ROUNDS);
+		this.positions = ReferencePosition.of(setup, this.round);
+		this.moves = new MoveList();
+	}
+
+	@Benchmark
+	public GameState advance() {
+		ReferencePosition position = nextPosition();
+		return position.parent.advance(position.move);
+	}
+
+	@Benchmark
+	public ImmutableSet<Move> getAvailableMoves() {
+		ReferencePosition position = nextPosition();
+		return position.parent.advance(position.move).getAvailableMoves();
+	}
+
+	@Benchmark
+	public ImmutableSet<Piece> getWinner() {
+		ReferencePosition position = nextPosition();
+		return position.parent.advance(position.move).getWinner();
+	}
+
+	@Benchmark
+	public int generatePackedMoves() {
+		return this.moves.generate(nextPosition().state).size();
+	}
+
+	@Benchmark
+	public ImmutableValueGraph<Integer, ImmutableSet<Transport>> readGraph() {
+		return ScotlandYard.readGraph(this.graph);
+	}
+
+	/**
+	 * @return the next reference position, going round all of them
+	 */
+	private ReferencePosition nextPosition() {
+		if (++this.next == this.positions.size()) this.next = 0;
+		return this.positions.get(this.next);
+	}
+}
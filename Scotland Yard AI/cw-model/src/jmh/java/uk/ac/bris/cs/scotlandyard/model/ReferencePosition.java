@@ -0,0 +1,77 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+
+/**
+ * A fixed game state for the benchmarks: the game of a seed played with random moves (drawn from the seed
+ * too) until MrX is about to move with at least a given number of moves in his travel log, so the same seed
+ * and round always give the same state
+ */
+final class ReferencePosition {
+
+	/**
+	 * The seeds of the reference positions
+	 */
+	static final int[] SEEDS = {0, 1, 2, 3, 4, 5, 6, 7};
+
+	/**
+	 * The game state before the last move leading to the reference position
+	 */
+	final GameState parent;
+	/**
+	 * The last move leading to the reference position
+	 */
+	final Move move;
+	/**
+	 * The reference position; MrX is about to move
+	 */
+	final GameState state;
+
+	private ReferencePosition(GameState parent, Move move, GameState state) {
+		this.parent = parent;
+		this.move = move;
+		this.state = state;
+	}
+
+	/**
+	 * @param setup the game setup
+	 * @param round the least number of moves MrX made before the position, at least one
+	 * @return the reference positions of every seed whose game lasts that long
+	 */
+	static List<ReferencePosition> of(GameSetup setup, int round) {
+		if (round < 1) throw new IllegalArgumentException("MrX must have moved at least once!");
+		List<ReferencePosition> positions = new ArrayList<>();
+		for (int seed : SEEDS) {
+			List<Player> detectives = new ArrayList<>();
+			List<Integer> locations = ScotlandYard.generateDetectiveLocations(seed, 5);
+			for (int i = 0; i < locations.size(); ++i) {
+				detectives.add(new Player(ScotlandYard.DETECTIVES.asList().get(i), ScotlandYard.defaultDetectiveTickets(), locations.get(i)));
+			}
+			Player mrX = new Player(Piece.MrX.MRX, ScotlandYard.defaultMrXTickets(), ScotlandYard.generateMrXLocation(seed));
+			GameState state = new MyGameStateFactory().build(setup, mrX, ImmutableList.copyOf(detectives));
+			Random random = new Random(seed);
+			GameState parent = null;
+			Move move = null;
+			while (state.getWinner().isEmpty()) {
+				List<Move> moves = new ArrayList<>(state.getAvailableMoves());
+				if (parent != null && state.getMrXTravelLog().size() >= round && moves.get(0).commencedBy().isMrX()) {
+					positions.add(new ReferencePosition(parent, move, state));
+					break;
+				}
+				// Sorted, so that the moves drawn do not depend on the order of the set
+				moves.sort(Comparator.comparing(Move::toString));
+				parent = state;
+				move = moves.get(random.nextInt(moves.size()));
+				state = state.advance(move);
+			}
+		}
+		return positions;
+	}
+}
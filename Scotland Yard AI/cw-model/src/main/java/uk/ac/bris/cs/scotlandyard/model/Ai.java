@@ -6,6 +6,7 @@ import io.atlassian.fugue.Pair;
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
 
@@ -34,6 +35,24 @@ public interface Ai {
 	 */
 	@Nonnull Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair);
 
+	/**
+	 * Picks a move before a deadline. AIs that improve their move as they think (e.g., by searching deeper and
+	 * deeper) should override this, publish every improvement to {@code bestSoFar} and return early once
+	 * {@code cancelled} is set: the game plays the last move published instead of forfeiting when the deadline
+	 * passes. Defaults to {@link #pickMove(Board, Pair)} with the time left, which publishes nothing.
+	 *
+	 * @param board     the game board
+	 * @param deadline  the time, as given by {@link System#nanoTime()}, by which the move must be picked
+	 * @param cancelled set once the move is no longer wanted, at the deadline or when the game ends
+	 * @param bestSoFar receives the best move found so far, from {@link Board#getAvailableMoves()}, every time
+	 *                  it changes; it may be called from any thread
+	 * @return a correct move from {@link Board#getAvailableMoves()} in the game board
+	 */
+	@Nonnull default Move pickMove(@Nonnull Board board, long deadline,
+	                               @Nonnull AtomicBoolean cancelled, @Nonnull Consumer<Move> bestSoFar) {
+		return pickMove(board, new Pair<>(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+	}
+
 
 	/**
 	 * Called after the game has ended and that this Ai is about to be terminated
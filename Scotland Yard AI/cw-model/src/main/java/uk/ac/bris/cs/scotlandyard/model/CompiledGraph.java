@@ -0,0 +1,140 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * The ScotlandYard game graph compiled into arrays (compressed sparse rows), so that walking the edges of a
+ * node needs no hash lookups and allocates nothing.
+ * <br>
+ * The edges of a node are {@code start(node)} to {@code end(node) - 1}, in the order of
+ * {@link ImmutableValueGraph#adjacentNodes}; every edge stores the node it leads to and the bitmask of its
+ * transports (bit {@link Transport#ordinal()} set for every transport of the edge). Nodes are indexed by their
+ * number, so the graph must not have negative nodes.
+ */
+public final class CompiledGraph {
+
+	/**
+	 * The bitmask of every transport
+	 */
+	public static final int ALL_TRANSPORTS = (1 << Transport.values().length) - 1;
+
+	/**
+	 * The edges of node n are offsets[n] to offsets[n + 1] - 1
+	 */
+	private final int[] offsets;
+	/**
+	 * The node each edge leads to
+	 */
+	private final int[] neighbours;
+	/**
+	 * The bitmask of the transports of each edge
+	 */
+	private final byte[] transports;
+
+	/**
+	 * CompiledGraph constructor
+	 *
+	 * @param graph the graph where nodes are stations in integers and edges as sets of transports
+	 * @throws IllegalArgumentException if the graph has a negative node
+	 */
+	@SuppressWarnings("UnstableApiUsage")
+	public CompiledGraph(@Nonnull ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph) {
+		int size = 0;
+		for (int node : graph.nodes()) {
+			if (node < 0) throw new IllegalArgumentException("Negative node: " + node);
+			size = Math.max(size, node + 1);
+		}
+		this.offsets = new int[size + 1];
+		for (int node : graph.nodes()) this.offsets[node + 1] = graph.adjacentNodes(node).size();
+		for (int node = 0; node < size; ++node) this.offsets[node + 1] += this.offsets[node];
+		this.neighbours = new int[this.offsets[size]];
+		this.transports = new byte[this.offsets[size]];
+		for (int node : graph.nodes()) {
+			int edge = this.offsets[node];
+			for (int neighbour : graph.adjacentNodes(node)) {
+				this.neighbours[edge] = neighbour;
+				this.transports[edge] = (byte) mask(Objects.requireNonNull(graph.edgeValueOrDefault(node, neighbour, ImmutableSet.of())));
+				edge += 1;
+			}
+		}
+	}
+
+	/**
+	 * @return the largest node of the graph plus one
+	 */
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * @param node the node
+	 * @return the first edge of the node; the node has no edges if it is not in the graph
+	 */
+	public int start(int node) {
+		return node >= 0 && node < size() ? offsets[node] : 0;
+	}
+
+	/**
+	 * @param node the node
+	 * @return the last edge of the node plus one
+	 */
+	public int end(int node) {
+		return node >= 0 && node < size() ? offsets[node + 1] : 0;
+	}
+
+	/**
+	 * @param edge the edge
+	 * @return the node the edge leads to
+	 */
+	public int neighbour(int edge) {
+		return neighbours[edge];
+	}
+
+	/**
+	 * @param edge the edge
+	 * @return the bitmask of the transports of the edge
+	 */
+	public int transports(int edge) {
+		return transports[edge];
+	}
+
+	/**
+	 * @param transport the transport
+	 * @return the bitmask of the transport
+	 */
+	public static int mask(@Nonnull Transport transport) {
+		return 1 << transport.ordinal();
+	}
+
+	/**
+	 * @param transports the transports
+	 * @return the bitmask of the transports
+	 */
+	public static int mask(@Nonnull Iterable<Transport> transports) {
+		int mask = 0;
+		for (Transport transport : transports) mask |= mask(transport);
+		return mask;
+	}
+
+	/**
+	 * @param ticket the ticket
+	 * @return the bitmask of the transports the ticket can be used on (a secret ticket can be used on
+	 * every transport); 0 for a double ticket
+	 */
+	public static int mask(@Nonnull Ticket ticket) {
+		if (ticket == Ticket.SECRET) return ALL_TRANSPORTS;
+		int mask = 0;
+		for (Transport transport : Transport.values()) {
+			if (transport.requiredTicket() == ticket) mask |= mask(transport);
+		}
+		return mask;
+	}
+}
@@ -25,11 +25,32 @@ public final class GameSetup implements Serializable {
 	 * MrX reveal rounds; false is hidden, true is reveal
 	 */
 	public final ImmutableList<Boolean> rounds;
+	/**
+	 * The graph compiled into arrays; built the first time it is requested
+	 */
+	private transient volatile CompiledGraph compiledGraph;
+	private transient volatile MoveTable moveTable;
 	public GameSetup(@Nonnull ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph,
 	                 @Nonnull ImmutableList<Boolean> rounds) {
 		this.graph = Objects.requireNonNull(graph);
 		this.rounds = Objects.requireNonNull(rounds);
 	}
+	/**
+	 * @return the graph compiled into arrays, see {@link CompiledGraph}; it is built once per game setup
+	 */
+	@Nonnull public CompiledGraph compiledGraph() {
+		CompiledGraph compiled = compiledGraph;
+		if (compiled == null) compiledGraph = compiled = new CompiledGraph(graph);
+		return compiled;
+	}
+	/**
+	 * @return the canonical moves along the compiled graph, see {@link MoveTable}; it is built once per game setup
+	 */
+	@Nonnull public MoveTable moveTable() {
+		MoveTable table = moveTable;
+		if (table == null) moveTable = table = new MoveTable(compiledGraph());
+		return table;
+	}
 	@Override public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
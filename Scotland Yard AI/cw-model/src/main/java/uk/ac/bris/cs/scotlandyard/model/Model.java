@@ -19,6 +19,24 @@ public interface Model {
 		 * Game events
 		 */
 		enum Event {MOVE_MADE, GAME_OVER}
+		/**
+		 * How the model delivers the events to an observer
+		 */
+		enum Dispatch {
+			/**
+			 * On the thread that chose the move, before {@link Model#chooseMove(Move)} returns
+			 */
+			SYNCHRONOUS,
+			/**
+			 * Every event in order, on a thread of the model, so that a slow observer does not hold up the game
+			 */
+			ASYNCHRONOUS,
+			/**
+			 * Same as {@link #ASYNCHRONOUS}, but a {@link Event#MOVE_MADE} still waiting to be delivered is
+			 * dropped when a newer event comes in, for observers that only need the latest board
+			 */
+			LATEST
+		}
 		/**
 		 * Called once game state changes
 		 *
@@ -38,6 +56,18 @@ public interface Model {
 	 * @param observer the observer to register
 	 */
 	void registerObserver(@Nonnull Observer observer);
+	/**
+	 * Registers an observer to the model, with the events delivered as given. Models that only deliver
+	 * them synchronously throw {@link UnsupportedOperationException} for the other dispatches.
+	 *
+	 * @param observer the observer to register
+	 * @param dispatch how the events are delivered to the observer
+	 */
+	default void registerObserver(@Nonnull Observer observer, @Nonnull Observer.Dispatch dispatch) {
+		if (dispatch != Observer.Dispatch.SYNCHRONOUS)
+			throw new UnsupportedOperationException(dispatch + " dispatch is not supported!");
+		registerObserver(observer);
+	}
 	/**
 	 * Unregisters an observer to the model. It is an error to unregister an observer not
 	 * previously registered with {@link #registerObserver(Observer)}.
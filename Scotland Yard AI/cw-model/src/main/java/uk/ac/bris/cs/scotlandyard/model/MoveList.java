@@ -0,0 +1,199 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A growable list of packed moves (see {@link PackedMove}), meant to be reused: once it has grown to the number
+ * of moves of a game state, generating, sorting and going through moves allocates nothing.
+ */
+public final class MoveList {
+
+	/**
+	 * A game state that can generate its available moves as packed moves
+	 */
+	public interface Generator {
+		/**
+		 * Adds the available moves to the list, in no particular order and without duplicates
+		 *
+		 * @param moves the list the moves are added to
+		 */
+		void generateMoves(@Nonnull MoveList moves);
+	}
+
+	/**
+	 * Gives a score to a packed move
+	 */
+	@FunctionalInterface
+	public interface Scorer {
+		/**
+		 * @param move the packed move
+		 * @return the score of the move
+		 */
+		int score(long move);
+	}
+
+	/**
+	 * The gaps of the shell sort (Ciura's sequence)
+	 */
+	private static final int[] GAPS = {701, 301, 132, 57, 23, 10, 4, 1};
+
+	/**
+	 * The packed moves
+	 */
+	private long[] moves;
+	/**
+	 * The scores of the moves, used while sorting
+	 */
+	private int[] scores;
+	/**
+	 * The number of moves
+	 */
+	private int size;
+
+	/**
+	 * MoveList constructor
+	 */
+	public MoveList() {
+		this(64);
+	}
+
+	/**
+	 * MoveList constructor
+	 *
+	 * @param capacity the number of moves the list can hold before it grows
+	 */
+	public MoveList(int capacity) {
+		if (capacity < 0) throw new IllegalArgumentException("Negative capacity!");
+		this.moves = new long[capacity];
+		this.scores = new int[capacity];
+	}
+
+	/**
+	 * Replaces the moves of the list with the available moves of a board; the moves are generated directly as
+	 * packed moves if the board is a {@link Generator}, otherwise they are packed from {@link Board#getAvailableMoves()}
+	 *
+	 * @param board the board
+	 * @return this list
+	 */
+	@Nonnull public MoveList generate(@Nonnull Board board) {
+		clear();
+		if (board instanceof Generator) ((Generator) board).generateMoves(this);
+		else for (Move move : board.getAvailableMoves()) add(PackedMove.of(move));
+		return this;
+	}
+
+	/**
+	 * @param move the packed move to add
+	 */
+	public void add(long move) {
+		if (size == moves.length) {
+			int capacity = Math.max(16, moves.length * 2);
+			moves = Arrays.copyOf(moves, capacity);
+			scores = Arrays.copyOf(scores, capacity);
+		}
+		moves[size++] = move;
+	}
+
+	/**
+	 * @param index the index
+	 * @return the packed move at the index
+	 * @throws IndexOutOfBoundsException if the index is not below the size
+	 */
+	public long get(int index) {
+		if (index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		return moves[index];
+	}
+
+	/**
+	 * @param index the index
+	 * @param move the packed move to put at the index
+	 * @throws IndexOutOfBoundsException if the index is not below the size
+	 */
+	public void set(int index, long move) {
+		if (index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		moves[index] = move;
+	}
+
+	/**
+	 * @param i the index of a move
+	 * @param j the index of the move it swaps places with
+	 */
+	public void swap(int i, int j) {
+		long move = get(i);
+		moves[i] = get(j);
+		moves[j] = move;
+	}
+
+	/**
+	 * @return the number of moves
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the list has no moves
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes every move, keeping the capacity
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return true if the list has the move
+	 */
+	public boolean contains(long move) {
+		for (int i = 0; i < size; ++i) {
+			if (moves[i] == move) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Sorts the moves from the highest score to the lowest; every move is scored once
+	 *
+	 * @param scorer the scorer
+	 */
+	public void sort(@Nonnull Scorer scorer) {
+		for (int i = 0; i < size; ++i) scores[i] = scorer.score(moves[i]);
+		for (int gap : GAPS) {
+			for (int i = gap; i < size; ++i) {
+				long move = moves[i];
+				int score = scores[i];
+				int j = i;
+				for (; j >= gap && scores[j - gap] < score; j -= gap) {
+					moves[j] = moves[j - gap];
+					scores[j] = scores[j - gap];
+				}
+				moves[j] = move;
+				scores[j] = score;
+			}
+		}
+	}
+
+	/**
+	 * @return the moves, unpacked
+	 */
+	@Nonnull public ImmutableList<Move> toMoves() {
+		ImmutableList.Builder<Move> builder = ImmutableList.builderWithExpectedSize(size);
+		for (int i = 0; i < size; ++i) builder.add(PackedMove.toMove(moves[i]));
+		return builder.build();
+	}
+
+	@Override public String toString() {
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < size; ++i) builder.append(i == 0 ? "" : ", ").append(PackedMove.toString(moves[i]));
+		return builder.append("]").toString();
+	}
+}
@@ -0,0 +1,115 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Move.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * The canonical moves of a game graph: every move along the edges of a {@link CompiledGraph} is made once and
+ * the same instance is handed out every time it is asked for again, so generating moves allocates nothing once
+ * the moves have been seen and hashing them (see {@link Move}) is a field read.
+ * <br>
+ * A move is identified by the edges it goes along rather than by its destinations, and is made the first time it
+ * is asked for. Double moves are only kept for MrX, the only player with double tickets.
+ */
+public final class MoveTable {
+
+	private static final int TICKETS = Ticket.values().length;
+	private static final int PIECES = ScotlandYard.ALL_PIECES.size();
+
+	/**
+	 * The compiled graph the moves go along
+	 */
+	private final CompiledGraph graph;
+	/**
+	 * The single move of piece p along edge e with ticket t is at index (p * edges + e) * TICKETS + t
+	 */
+	private final AtomicReferenceArray<SingleMove> singles;
+	/**
+	 * PairOffsets[e] stores the index of the first pair of edges (e, e2) where e2 starts where e ends
+	 */
+	private final int[] pairOffsets;
+	/**
+	 * The double move of MrX along the pair of edges with index i and tickets t1, t2 is at index
+	 * (i * TICKETS + t1) * TICKETS + t2
+	 */
+	private final AtomicReferenceArray<DoubleMove> doubles;
+
+	/**
+	 * MoveTable constructor
+	 *
+	 * @param graph the compiled graph the moves go along
+	 */
+	public MoveTable(@Nonnull CompiledGraph graph) {
+		this.graph = graph;
+		int edges = graph.end(graph.size() - 1);
+		this.singles = new AtomicReferenceArray<>(PIECES * edges * TICKETS);
+		this.pairOffsets = new int[edges + 1];
+		for (int edge = 0; edge < edges; ++edge) {
+			int middle = graph.neighbour(edge);
+			this.pairOffsets[edge + 1] = this.pairOffsets[edge] + graph.end(middle) - graph.start(middle);
+		}
+		this.doubles = new AtomicReferenceArray<>(this.pairOffsets[edges] * TICKETS * TICKETS);
+	}
+
+	/**
+	 * @param piece the piece
+	 * @param source the source of the move
+	 * @param edge the edge of the graph from the source the move goes along
+	 * @param ticket the ticket
+	 * @return the single move
+	 * @throws IllegalArgumentException if the edge does not start at the source
+	 */
+	@Nonnull public SingleMove single(@Nonnull Piece piece, int source, int edge, @Nonnull Ticket ticket) {
+		checkEdge(source, edge);
+		int index = (PackedMove.pieceIndex(piece) * (pairOffsets.length - 1) + edge) * TICKETS + ticket.ordinal();
+		SingleMove move = singles.get(index);
+		if (move == null) {
+			move = new SingleMove(piece, source, ticket, graph.neighbour(edge));
+			// Another thread may have made the same move in the meantime; its instance is kept
+			if (!singles.compareAndSet(index, null, move)) move = singles.get(index);
+		}
+		return move;
+	}
+
+	/**
+	 * @param piece the piece
+	 * @param source the source of the move
+	 * @param edge1 the edge of the graph from the source the first move goes along
+	 * @param ticket1 the first ticket
+	 * @param edge2 the edge of the graph from the first destination the second move goes along
+	 * @param ticket2 the second ticket
+	 * @return the double move
+	 * @throws IllegalArgumentException if the first edge does not start at the source, or the second one
+	 * does not start where the first one ends
+	 */
+	@Nonnull public DoubleMove doubleMove(@Nonnull Piece piece, int source, int edge1, @Nonnull Ticket ticket1,
+	                                      int edge2, @Nonnull Ticket ticket2) {
+		checkEdge(source, edge1);
+		int destination1 = graph.neighbour(edge1);
+		checkEdge(destination1, edge2);
+		if (!piece.isMrX()) return new DoubleMove(piece, source, ticket1, destination1, ticket2, graph.neighbour(edge2));
+		int pair = pairOffsets[edge1] + edge2 - graph.start(destination1);
+		int index = (pair * TICKETS + ticket1.ordinal()) * TICKETS + ticket2.ordinal();
+		DoubleMove move = doubles.get(index);
+		if (move == null) {
+			move = new DoubleMove(piece, source, ticket1, destination1, ticket2, graph.neighbour(edge2));
+			if (!doubles.compareAndSet(index, null, move)) move = doubles.get(index);
+		}
+		return move;
+	}
+
+	/**
+	 * @param node the node
+	 * @param edge the edge
+	 * @throws IllegalArgumentException if the edge does not start at the node
+	 */
+	private void checkEdge(int node, int edge) {
+		if (edge < graph.start(node) || edge >= graph.end(node))
+			throw new IllegalArgumentException("Edge " + edge + " does not start at " + node);
+	}
+}
@@ -35,8 +35,31 @@ public final class MyGameStateFactory implements Factory<GameState> {
 	/**
 	 * A class that holds all the information and methods necessary to represent a ScotlandYard game state
 	 */
-	private static final class MyGameState implements GameState {
+	private static final class MyGameState implements GameState, MoveList.Generator {
 
+		/**
+		 * Every transport, in the order of the bits of {@link CompiledGraph#transports(int)}
+		 */
+		private static final Transport[] TRANSPORTS = Transport.values();
+		/**
+		 * Every ticket, in the order of the bits of the ticket masks
+		 */
+		private static final Ticket[] TICKETS = Ticket.values();
+		/**
+		 * The bit of the secret ticket in a ticket mask
+		 */
+		private static final int SECRET_TICKET = 1 << Ticket.SECRET.ordinal();
+		/**
+		 * EdgeTickets[transports] stores the mask of the tickets required by a bitmask of transports
+		 */
+		private static final int[] EDGE_TICKETS = new int[CompiledGraph.ALL_TRANSPORTS + 1];
+		static {
+			for (int transports = 0; transports < EDGE_TICKETS.length; ++transports) {
+				for (Transport t : TRANSPORTS) {
+					if ((transports & CompiledGraph.mask(t)) != 0) EDGE_TICKETS[transports] |= 1 << t.requiredTicket().ordinal();
+				}
+			}
+		}
 		/**
 		 * The game setup
 		 */
@@ -46,29 +69,29 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		 */
 		private final ImmutableSet<Piece> remaining;
 		/**
-		 * MrX's travel log
+		 * MrX's travel log, shared with the game state this one was advanced from
 		 */
-		private final ImmutableList<LogEntry> log;
+		private final TravelLog travelLog;
+		/**
+		 * MrX's travel log as a list; built the first time it is requested
+		 */
+		private ImmutableList<LogEntry> log;
 		/**
 		 * MrX player
 		 */
 		private final Player mrX;
 		/**
-		 * Detective players
+		 * Detective players; shared with the game state this one was advanced from until a detective moves
 		 */
 		private final List<Player> detectives;
 		/**
-		 * MrX and detective players (everyone in the game)
+		 * The current available moves of the game; computed the first time they are requested
 		 */
-		private final ImmutableList<Player> everyone;
+		private ImmutableSet<Move> moves;
 		/**
-		 * The current available moves of the game
+		 * The winner(s) of this game, if any; computed the first time they are requested
 		 */
-		private final ImmutableSet<Move> moves;
-		/**
-		 * The winner(s) of this game, if any
-		 */
-		public final ImmutableSet<Piece> winner;
+		private ImmutableSet<Piece> winner;
 
 		/**
 		 * MyGameState constructor
@@ -92,7 +115,6 @@ public final class MyGameStateFactory implements Factory<GameState> {
 			// A set that helps checking if we have two or more detectives in the same location
 			Set<Integer> detectivesLocation = new HashSet<>();
 			boolean duplicate;
-			List<Player> players = new ArrayList<>();
 
 			if (setup == null) throw new NullPointerException("Setup is null!");
 			if (remaining == null) throw new NullPointerException("Remaining is null!");
@@ -101,7 +123,6 @@ public final class MyGameStateFactory implements Factory<GameState> {
 			if (detectives == null) throw new NullPointerException("Detectives is null!");
 			if (setup.rounds.isEmpty()) throw new IllegalArgumentException("Rounds is empty!");
 			if (setup.graph.edges().isEmpty()) throw new IllegalArgumentException("Graph is empty!");
-			players.add(mrX);
 			for (Player player : detectives) {
 				if (player.has(Ticket.SECRET)) throw new IllegalArgumentException("Detective have secret ticket(s)!");
 				if (player.has(Ticket.DOUBLE)) throw new IllegalArgumentException("Detective have double ticket(s)!");
@@ -110,16 +131,36 @@ public final class MyGameStateFactory implements Factory<GameState> {
 				is not in the Set, and false if it is already in it */
 				duplicate = !detectivesLocation.add(player.location());
 				if (duplicate) throw new IllegalArgumentException("Location overlap between detectives!");
-				players.add(player);
 			}
 			this.setup = setup;
 			this.remaining = remaining;
+			this.travelLog = TravelLog.of(log);
 			this.log = log;
 			this.mrX = mrX;
 			this.detectives = detectives;
-			this.everyone = ImmutableList.copyOf(players);
-			this.winner = getWinner();
-			this.moves = getAvailableMoves();
+		}
+
+		/**
+		 * MyGameState constructor for the game states made by {@link #advance(Move)}, which are valid
+		 * whenever the game state they are advanced from is
+		 *
+		 * @param setup the game setup
+		 * @param remaining the pieces that can still move in the current round
+		 * @param travelLog MrX's travel log
+		 * @param mrX MrX player
+		 * @param detectives detective players
+		 */
+		private MyGameState(
+				final GameSetup setup,
+				final ImmutableSet<Piece> remaining,
+				final TravelLog travelLog,
+				final Player mrX,
+				final List<Player> detectives) {
+			this.setup = setup;
+			this.remaining = remaining;
+			this.travelLog = travelLog;
+			this.mrX = mrX;
+			this.detectives = detectives;
 		}
 
 		//-------------------- Core Functions --------------------//
@@ -136,7 +177,8 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		@Override @Nonnull
 		public ImmutableSet<Piece> getPlayers() {
 			List<Piece> piecesList = new ArrayList<>();
-			for (Player player : everyone) { piecesList.add(player.piece()); }
+			piecesList.add(mrX.piece());
+			for (Player player : detectives) { piecesList.add(player.piece()); }
 			return ImmutableSet.copyOf(piecesList);
 		}
 
@@ -166,7 +208,10 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		 * @return MrX's travel log as a immutableList of {@link LogEntry}s
 		 */
 		@Override @Nonnull
-		public ImmutableList<LogEntry> getMrXTravelLog() { return log; }
+		public ImmutableList<LogEntry> getMrXTravelLog() {
+			if (log == null) log = travelLog.toList();
+			return log;
+		}
 
 		/**
 		 * @return the winner of this game; empty if the game has no winners yet
@@ -174,34 +219,9 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		 */
 		@Override @Nonnull
 		public ImmutableSet<Piece> getWinner() {
-			int mrXTurn = 0;
-			List<Piece> detectivePiecesList = new ArrayList<>();
-			List<Integer> detectivesLocation = new ArrayList<>();
-			// Holds the number of detectives that ran out of moves
-			int noMovesCount = 0;
-			// Holds the number of adjacent nodes to MrX that are occupied by detectives
-			int blockCount = 0;
-			if (this.remaining.contains(mrX.piece())) mrXTurn = 1;
-			for (Player detective : this.detectives) {
-				detectivePiecesList.add(detective.piece());
-				detectivesLocation.add(detective.location());
-			}
-			for (int destination : setup.graph.adjacentNodes(mrX.location())) {
-				if (detectivesLocation.contains(destination)) blockCount += 1;
-			}
-			for (Player detective : this.detectives) {
-				if (detective.location() == this.mrX.location()) return ImmutableSet.copyOf(detectivePiecesList);
-				if (makeSingleMoves(this.setup, this.detectives, detective, detective.location()).isEmpty()) {
-					noMovesCount += 1;
-				}
-			}
-			if (noMovesCount == this.detectives.size()) return ImmutableSet.of(this.mrX.piece());
-			if ((makeSingleMoves(this.setup, this.detectives, this.mrX, this.mrX.location()).isEmpty() &&
-					makeDoubleMoves(this.setup, this.detectives, this.mrX, this.mrX.location(), this.log).isEmpty()) &&
-					(blockCount != 0 || mrXTurn == 1)) return ImmutableSet.copyOf(detectivePiecesList);
-			if (this.setup.rounds.size() == this.getMrXTravelLog().size() &&
-					mrXTurn == 1) return ImmutableSet.of(this.mrX.piece());
-			return ImmutableSet.of();
+			// Game states are immutable, so the winner only has to be computed once
+			if (this.winner == null) this.winner = computeWinner();
+			return this.winner;
 		}
 
 		/**
@@ -210,19 +230,33 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		 */
 		@Override @Nonnull
 		public ImmutableSet<Move> getAvailableMoves() {
-			if (!getWinner().isEmpty()) { return ImmutableSet.of(); }
-			List<SingleMove> singleMoves = new ArrayList<>();
-			List<DoubleMove> doubleMoves = new ArrayList<>();
-			List<Move> moves = new ArrayList<>();
-			for (Player player : everyone) {
-				if (remaining.contains(player.piece())) {
-					singleMoves.addAll(makeSingleMoves(setup, detectives, player, player.location()));
-					doubleMoves.addAll(makeDoubleMoves(setup, detectives, player, player.location(), this.log));
-				}
+			if (this.moves == null) this.moves = computeAvailableMoves();
+			return this.moves;
+		}
+
+		/**
+		 * Adds the current available moves of the game to the list as packed moves, without making any
+		 * {@link Move}; these are the same moves as {@link #getAvailableMoves()}
+		 *
+		 * @param moves the list the moves are added to
+		 */
+		@Override
+		public void generateMoves(@Nonnull MoveList moves) {
+			if (!getWinner().isEmpty()) return;
+			CompiledGraph graph = this.setup.compiledGraph();
+			for (int i = -1; i < this.detectives.size(); ++i) {
+				Player player = i == -1 ? this.mrX : this.detectives.get(i);
+				if (!this.remaining.contains(player.piece())) continue;
+				int source = player.location();
+				forEachSingleMove(this.setup, this.detectives, player, source,
+						(edge, ticket) -> moves.add(PackedMove.single(player.piece(), source, ticket, graph.neighbour(edge))));
+			}
+			if (this.remaining.contains(this.mrX.piece())) {
+				int source = this.mrX.location();
+				forEachDoubleMove(this.setup, this.detectives, this.mrX, source, this.travelLog.size(),
+						(edge1, ticket1, edge2, ticket2) -> moves.add(PackedMove.doubleMove(this.mrX.piece(), source,
+								ticket1, graph.neighbour(edge1), ticket2, graph.neighbour(edge2))));
 			}
-			moves.addAll(singleMoves);
-			moves.addAll(doubleMoves);
-			return ImmutableSet.copyOf(moves);
 		}
 
 		/**
@@ -236,14 +270,14 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		public GameState advance (Move move) {
 			List<Piece> oldRemaining = new ArrayList<>(this.remaining);
             List<Piece> newRemaining = new ArrayList<>();
-            List<LogEntry> newLog = new ArrayList<>(this.log);
-			Player newMrX = new Player(this.mrX.piece(), this.mrX.tickets(), this.mrX.location());
-			List<Player> newDetectives = new ArrayList<>(this.detectives);
+            TravelLog newLog = this.travelLog;
+			Player newMrX = this.mrX;
+			List<Player> newDetectives = this.detectives;
 			Piece pieceMoving = move.commencedBy();
 			Player playerMoving = getPlayerFromPiece(pieceMoving);
 			Iterable<Ticket> requiredTickets = move.tickets();
 			if (playerMoving == null) return this;
-			if (!this.moves.contains(move)) throw new IllegalArgumentException("Illegal move: " + move);
+			if (!getAvailableMoves().contains(move)) throw new IllegalArgumentException("Illegal move: " + move);
 			if (this.remaining.contains(pieceMoving)) {
 			    SpecVisitor visitor = new SpecVisitor();
 			    move.visit(visitor);
@@ -252,25 +286,25 @@ public final class MyGameStateFactory implements Factory<GameState> {
 			        if (visitor.destination != -1) {
 			            newMrX = newMrX.use(requiredTickets);
 			            newMrX = newMrX.at(visitor.destination);
-			            if (setup.rounds.get(this.log.size())) {
-			                newLog.add(LogEntry.reveal(visitor.ticket, visitor.destination));
+			            if (setup.rounds.get(this.travelLog.size())) {
+			                newLog = newLog.add(LogEntry.reveal(visitor.ticket, visitor.destination));
 			            }
-			            else newLog.add(LogEntry.hidden(visitor.ticket));
+			            else newLog = newLog.add(LogEntry.hidden(visitor.ticket));
 			        }
 			        // If it is not a single move, then it must be a double one
 			        else {
 			            newMrX = newMrX.use(requiredTickets);
 			            newMrX = newMrX.at(visitor.destination2);
-			            if (setup.rounds.get(this.log.size())) {
-			                newLog.add(LogEntry.reveal(visitor.ticket1, visitor.destination1));
+			            if (setup.rounds.get(this.travelLog.size())) {
+			                newLog = newLog.add(LogEntry.reveal(visitor.ticket1, visitor.destination1));
 			            }
-			            else newLog.add(LogEntry.hidden(visitor.ticket1));
+			            else newLog = newLog.add(LogEntry.hidden(visitor.ticket1));
 			            /* Checks once again if we are in a reveal round because we need
                         to add two separate entries, one for each move within the double move */
 			            if (setup.rounds.get(newLog.size())) {
-			                newLog.add(LogEntry.reveal(visitor.ticket2, visitor.destination2));
+			                newLog = newLog.add(LogEntry.reveal(visitor.ticket2, visitor.destination2));
 			            }
-			            else newLog.add(LogEntry.hidden(visitor.ticket2));
+			            else newLog = newLog.add(LogEntry.hidden(visitor.ticket2));
 			        }
 			        oldRemaining.remove(pieceMoving);
 			        if (oldRemaining.isEmpty()) {
@@ -285,7 +319,10 @@ public final class MyGameStateFactory implements Factory<GameState> {
 					newDetective = playerMoving.use(requiredTickets);
 					newDetective = newDetective.at(visitor.destination);
 			        newMrX = newMrX.give(requiredTickets);
-                    newDetectives.set(newDetectives.indexOf(playerMoving), newDetective);
+                    // Only the moving detective changes, the other ones are shared
+                    Player[] players = this.detectives.toArray(new Player[0]);
+                    players[this.detectives.indexOf(playerMoving)] = newDetective;
+                    newDetectives = ImmutableList.copyOf(players);
 			        oldRemaining.remove(pieceMoving);
 			        if (oldRemaining.isEmpty()) oldRemaining.add(this.mrX.piece());
 			    }
@@ -295,16 +332,80 @@ public final class MyGameStateFactory implements Factory<GameState> {
 				if (player == null) continue;
 				/* Checks if the piece(s) that can still move in the current round have indeed
                 available moves; if they do, then they can play in this round */
-				if (!makeSingleMoves(this.setup, newDetectives, player, player.location()).isEmpty()) {
+				if (hasSingleMove(this.setup, newDetectives, player, player.location())) {
 					newRemaining.add(piece);
 				}
 			}
 			if (newRemaining.isEmpty()) newRemaining.add(newMrX.piece());
-			return new MyGameState(this.setup, ImmutableSet.copyOf(newRemaining), ImmutableList.copyOf(newLog), newMrX, newDetectives);
+			return new MyGameState(this.setup, ImmutableSet.copyOf(newRemaining), newLog, newMrX, newDetectives);
 		}
 
 		//-------------------- Auxiliary Functions --------------------//
 
+		/**
+		 * @return the winner of this game; empty if the game has no winners yet
+		 */
+		private ImmutableSet<Piece> computeWinner () {
+			boolean mrXTurn = this.remaining.contains(mrX.piece());
+			CompiledGraph graph = this.setup.compiledGraph();
+			for (Player detective : this.detectives) {
+				if (detective.location() == this.mrX.location()) return getDetectivePieces();
+			}
+			// Checks if every detective ran out of moves
+			boolean detectivesStuck = true;
+			for (Player detective : this.detectives) {
+				if (hasSingleMove(this.setup, this.detectives, detective, detective.location())) {
+					detectivesStuck = false;
+					break;
+				}
+			}
+			if (detectivesStuck) return ImmutableSet.of(this.mrX.piece());
+			// Checks if any node adjacent to MrX is occupied by a detective
+			boolean blocked = false;
+			for (int edge = graph.start(mrX.location()); edge < graph.end(mrX.location()) && !blocked; ++edge) {
+				blocked = isOccupied(this.detectives, graph.neighbour(edge));
+			}
+			/* The first move of a double move is always an available single move,
+			so MrX cannot move at all when he has no single moves */
+			if (!hasSingleMove(this.setup, this.detectives, this.mrX, this.mrX.location()) &&
+					(blocked || mrXTurn)) return getDetectivePieces();
+			if (this.setup.rounds.size() == this.travelLog.size() &&
+					mrXTurn) return ImmutableSet.of(this.mrX.piece());
+			return ImmutableSet.of();
+		}
+
+		/**
+		 * @return the current available moves of the game
+		 */
+		private ImmutableSet<Move> computeAvailableMoves () {
+			if (!getWinner().isEmpty()) { return ImmutableSet.of(); }
+			List<SingleMove> singleMoves = new ArrayList<>();
+			List<DoubleMove> doubleMoves = new ArrayList<>();
+			List<Move> moves = new ArrayList<>();
+			// MrX and detective players (everyone in the game)
+			List<Player> everyone = new ArrayList<>();
+			everyone.add(mrX);
+			everyone.addAll(detectives);
+			for (Player player : everyone) {
+				if (remaining.contains(player.piece())) {
+					singleMoves.addAll(makeSingleMoves(setup, detectives, player, player.location()));
+					doubleMoves.addAll(makeDoubleMoves(setup, detectives, player, player.location(), this.travelLog.size()));
+				}
+			}
+			moves.addAll(singleMoves);
+			moves.addAll(doubleMoves);
+			return ImmutableSet.copyOf(moves);
+		}
+
+		/**
+		 * @return the pieces of the detectives
+		 */
+		private ImmutableSet<Piece> getDetectivePieces () {
+			List<Piece> detectivePiecesList = new ArrayList<>();
+			for (Player detective : this.detectives) detectivePiecesList.add(detective.piece());
+			return ImmutableSet.copyOf(detectivePiecesList);
+		}
+
 		/**
 		 * Gets the player from its piece (in order to have more methods and information available)
 		 *
@@ -333,22 +434,9 @@ public final class MyGameStateFactory implements Factory<GameState> {
 				int source) {
 
 			List<SingleMove> singleMoves = new ArrayList<>();
-			Set<Integer> detectivesLocation = new HashSet<>();
-
-			for (Player detective : detectives) { detectivesLocation.add(detective.location()); }
-			for (int destination : setup.graph.adjacentNodes(source)) {
-				if (detectivesLocation.contains(destination)) continue;
-				for (Transport t : Objects.requireNonNull(setup.graph.edgeValueOrDefault(source, destination, ImmutableSet.of()))) {
-					if (player.has(t.requiredTicket())) {
-						SingleMove singleMove = new SingleMove(player.piece(), source, t.requiredTicket(), destination);
-						singleMoves.add(singleMove);
-					}
-				}
-				if (player.has(Ticket.SECRET)) {
-					SingleMove singleMove = new SingleMove(player.piece(), source, Ticket.SECRET, destination);
-					singleMoves.add(singleMove);
-				}
-			}
+			MoveTable table = setup.moveTable();
+			forEachSingleMove(setup, detectives, player, source,
+					(edge, ticket) -> singleMoves.add(table.single(player.piece(), source, edge, ticket)));
 			return ImmutableSet.copyOf(singleMoves);
 		}
 
@@ -357,7 +445,7 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		 * @param detectives the detective players
 		 * @param player the player
 		 * @param source the source of the player
-		 * @param log MrX's travel log
+		 * @param logSize the number of entries of MrX's travel log
 		 * @return all the available double moves for the player
 		 */
 		public ImmutableSet<DoubleMove> makeDoubleMoves(
@@ -365,63 +453,192 @@ public final class MyGameStateFactory implements Factory<GameState> {
 				List<Player> detectives,
 				Player player,
 				int source,
-				ImmutableList<LogEntry> log) {
+				int logSize) {
 
 			List<DoubleMove> doubleMoves = new ArrayList<>();
-			Set<Integer> detectivesLocation = new HashSet<>();
+			MoveTable table = setup.moveTable();
+			forEachDoubleMove(setup, detectives, player, source, logSize,
+					(edge1, ticket1, edge2, ticket2) -> doubleMoves.add(table.doubleMove(player.piece(), source, edge1, ticket1, edge2, ticket2)));
+			return ImmutableSet.copyOf(doubleMoves);
+		}
 
-			for (Player detective : detectives) detectivesLocation.add(detective.location());
-			if (player.has(Ticket.DOUBLE) && (setup.rounds.size() - log.size() >= 2)) {
-				for (int destination1 : setup.graph.adjacentNodes(source)) {
-					if (detectivesLocation.contains(destination1)) continue;
-					for (Transport t1 : Objects.requireNonNull(setup.graph.edgeValueOrDefault(source, destination1, ImmutableSet.of()))) {
-						if (player.has(t1.requiredTicket())) {
-							for (int destination2 : setup.graph.adjacentNodes(destination1)) {
-								if (detectivesLocation.contains(destination2)) continue;
-								for (Transport t2 : Objects.requireNonNull(setup.graph.edgeValueOrDefault(destination1, destination2, ImmutableSet.of()))) {
-									/* Checks if the required ticket for the first and for the
-									second move within the double move are the same */
-									if (t2.requiredTicket() == t1.requiredTicket()) {
-										if (player.hasAtLeast(t2.requiredTicket(), 2)) {
-											DoubleMove doubleMove = new DoubleMove(player.piece(), source, t2.requiredTicket(), destination1, t2.requiredTicket(), destination2);
-											doubleMoves.add(doubleMove);
-										}
-									}
-									else if (player.has(t2.requiredTicket())) {
-										DoubleMove doubleMove = new DoubleMove(player.piece(), source, t1.requiredTicket(), destination1, t2.requiredTicket(), destination2);
-										doubleMoves.add(doubleMove);
-									}
-								}
-								if (player.has(Ticket.SECRET)) {
-									DoubleMove doubleMove = new DoubleMove(player.piece(), source, t1.requiredTicket(), destination1, Ticket.SECRET, destination2);
-									doubleMoves.add(doubleMove);
-								}
-							}
-						}
-					}
-					if (player.has(Ticket.SECRET)) {
-						for (int destination2 : setup.graph.adjacentNodes(destination1)) {
-							if (detectivesLocation.contains(destination2)) continue;
-							for (Transport t2 : Objects.requireNonNull(setup.graph.edgeValueOrDefault(destination1, destination2, ImmutableSet.of()))) {
-								if (player.has(t2.requiredTicket())) {
-									DoubleMove doubleMove = new DoubleMove(player.piece(), source, Ticket.SECRET, destination1, t2.requiredTicket(), destination2);
-									doubleMoves.add(doubleMove);
-								}
-							}
-							if (player.hasAtLeast(Ticket.SECRET, 2)) {
-								DoubleMove doubleMove = new DoubleMove(player.piece(), source, Ticket.SECRET, destination1, Ticket.SECRET, destination2);
-								doubleMoves.add(doubleMove);
-							}
-						}
+		/**
+		 * Passes every available single move of the player to the sink, once each
+		 *
+		 * @param setup the game setup
+		 * @param detectives the detective players
+		 * @param player the player
+		 * @param source the source of the player
+		 * @param sink what is done with every move
+		 */
+		private static void forEachSingleMove(
+				GameSetup setup,
+				List<Player> detectives,
+				Player player,
+				int source,
+				SingleMoveSink sink) {
+
+			CompiledGraph graph = setup.compiledGraph();
+			int held = getHeldTickets(player, 1);
+			for (int edge = graph.start(source); edge < graph.end(source); ++edge) {
+				if (isOccupied(detectives, graph.neighbour(edge))) continue;
+				// A secret ticket can be used on any edge
+				int tickets = EDGE_TICKETS[graph.transports(edge)] & held | held & SECRET_TICKET;
+				for (; tickets != 0; tickets &= tickets - 1) sink.accept(edge, TICKETS[Integer.numberOfTrailingZeros(tickets)]);
+			}
+		}
+
+		/**
+		 * Passes every available double move of the player to the sink, once each
+		 *
+		 * @param setup the game setup
+		 * @param detectives the detective players
+		 * @param player the player
+		 * @param source the source of the player
+		 * @param logSize the number of entries of MrX's travel log
+		 * @param sink what is done with every move
+		 */
+		private static void forEachDoubleMove(
+				GameSetup setup,
+				List<Player> detectives,
+				Player player,
+				int source,
+				int logSize,
+				DoubleMoveSink sink) {
+
+			if (!player.has(Ticket.DOUBLE) || setup.rounds.size() - logSize < 2) return;
+			CompiledGraph graph = setup.compiledGraph();
+			int held = getHeldTickets(player, 1);
+			int heldTwice = getHeldTickets(player, 2);
+			for (int edge1 = graph.start(source); edge1 < graph.end(source); ++edge1) {
+				int destination1 = graph.neighbour(edge1);
+				if (isOccupied(detectives, destination1)) continue;
+				int tickets1 = EDGE_TICKETS[graph.transports(edge1)] & held;
+				for (int edge2 = graph.start(destination1); edge2 < graph.end(destination1); ++edge2) {
+					if (isOccupied(detectives, graph.neighbour(edge2))) continue;
+					int pairs = getTicketPairs(tickets1, EDGE_TICKETS[graph.transports(edge2)], held, heldTwice);
+					for (; pairs != 0; pairs &= pairs - 1) {
+						int pair = Integer.numberOfTrailingZeros(pairs);
+						sink.accept(edge1, TICKETS[pair / TICKETS.length], edge2, TICKETS[pair % TICKETS.length]);
 					}
 				}
 			}
-			return ImmutableSet.copyOf(doubleMoves);
+		}
+
+		/**
+		 * The tickets of a double move along two edges. The first ticket is one the player holds for the first
+		 * edge, or a secret ticket; the second ticket is one the player holds for the second edge (twice if it
+		 * is also the first ticket), or a secret ticket.
+		 * <br>
+		 * A secret ticket is always allowed after a ticket for the first edge, and a ferry edge takes a secret
+		 * ticket like any other held ticket, so a player with a single secret ticket can get a move with two
+		 * secret tickets.
+		 *
+		 * @param tickets1 the tickets the player holds for the first edge (bit {@link Ticket#ordinal()})
+		 * @param tickets2 the tickets for the second edge
+		 * @param held the tickets the player holds
+		 * @param heldTwice the tickets the player holds at least two of
+		 * @return the pairs of tickets, bit {@code ticket1 * TICKETS.length + ticket2} set for every pair
+		 */
+		private static int getTicketPairs(int tickets1, int tickets2, int held, int heldTwice) {
+			int pairs = 0;
+			int secret = held & SECRET_TICKET;
+			for (; tickets1 != 0; tickets1 &= tickets1 - 1) {
+				int ticket1 = Integer.numberOfTrailingZeros(tickets1);
+				int first = 1 << ticket1;
+				int tickets = tickets2 & (held & ~first | heldTwice & first) | secret;
+				pairs |= tickets << ticket1 * TICKETS.length;
+			}
+			if (secret != 0) {
+				int tickets = tickets2 & held | heldTwice & SECRET_TICKET;
+				pairs |= tickets << Ticket.SECRET.ordinal() * TICKETS.length;
+			}
+			return pairs;
+		}
+
+		/**
+		 * @param player the player
+		 * @param count the number of tickets
+		 * @return the tickets the player holds at least count of (bit {@link Ticket#ordinal()})
+		 */
+		private static int getHeldTickets(Player player, int count) {
+			int held = 0;
+			for (Ticket ticket : TICKETS) {
+				if (player.hasAtLeast(ticket, count)) held |= 1 << ticket.ordinal();
+			}
+			return held;
+		}
+
+		/**
+		 * Same as checking that {@link #makeSingleMoves} is not empty, without building the moves
+		 *
+		 * @param setup the game setup
+		 * @param detectives the detective players
+		 * @param player the player
+		 * @param source the source of the player
+		 * @return true if the player has at least one available single move
+		 */
+		private static boolean hasSingleMove(
+				GameSetup setup,
+				List<Player> detectives,
+				Player player,
+				int source) {
+
+			CompiledGraph graph = setup.compiledGraph();
+			// A secret ticket can be used on any edge
+			boolean secret = player.has(Ticket.SECRET);
+			// The transports the player has tickets for
+			int transports = 0;
+			for (Transport t : TRANSPORTS) {
+				if (player.has(t.requiredTicket())) transports |= CompiledGraph.mask(t);
+			}
+			for (int edge = graph.start(source); edge < graph.end(source); ++edge) {
+				if ((secret || (graph.transports(edge) & transports) != 0) && !isOccupied(detectives, graph.neighbour(edge))) return true;
+			}
+			return false;
+		}
+
+		/**
+		 * @param detectives the detective players
+		 * @param node the node
+		 * @return true if a detective is at the node
+		 */
+		private static boolean isOccupied(List<Player> detectives, int node) {
+			for (Player detective : detectives) {
+				if (detective.location() == node) return true;
+			}
+			return false;
 		}
 	}
 
 	//-------------------- Auxiliary Classes --------------------//
 
+	/**
+	 * What is done with every single move found by {@link MyGameState#forEachSingleMove}
+	 */
+	@FunctionalInterface
+	private interface SingleMoveSink {
+		/**
+		 * @param edge the edge of the compiled graph the move goes along
+		 * @param ticket the ticket
+		 */
+		void accept(int edge, Ticket ticket);
+	}
+
+	/**
+	 * What is done with every double move found by {@link MyGameState#forEachDoubleMove}
+	 */
+	@FunctionalInterface
+	private interface DoubleMoveSink {
+		/**
+		 * @param edge1 the edge of the compiled graph the first move goes along
+		 * @param ticket1 the first ticket
+		 * @param edge2 the edge of the compiled graph the second move goes along
+		 * @param ticket2 the second ticket
+		 */
+		void accept(int edge1, Ticket ticket1, int edge2, Ticket ticket2);
+	}
+
 	/**
 	 * Represents the ScotlandYard ticket board for each player
 	 */
@@ -444,7 +661,76 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		 */
 		@Override
 		public int getCount(@Nonnull ScotlandYard.Ticket ticket) {
-			return player.tickets().get(ticket);
+			return player.count(ticket);
+		}
+	}
+
+	/**
+	 * MrX's travel log as a persistent linked list: every log points to the log it was made from by adding
+	 * its last entry, so a game state shares the log of the game state it was advanced from
+	 */
+	private static final class TravelLog {
+		/**
+		 * The empty log
+		 */
+		private static final TravelLog EMPTY = new TravelLog(null, null, 0);
+
+		/**
+		 * The last entry of the log
+		 */
+		private final LogEntry entry;
+		/**
+		 * The log without its last entry
+		 */
+		private final TravelLog previous;
+		/**
+		 * The number of entries of the log
+		 */
+		private final int size;
+
+		/**
+		 * TravelLog constructor
+		 *
+		 * @param entry the last entry of the log
+		 * @param previous the log without its last entry
+		 * @param size the number of entries of the log
+		 */
+		private TravelLog (LogEntry entry, TravelLog previous, int size) {
+			this.entry = entry;
+			this.previous = previous;
+			this.size = size;
+		}
+
+		/**
+		 * @param log MrX's travel log as a list
+		 * @return the same log as a persistent linked list
+		 */
+		private static TravelLog of (List<LogEntry> log) {
+			TravelLog travelLog = EMPTY;
+			for (LogEntry entry : log) travelLog = travelLog.add(entry);
+			return travelLog;
+		}
+
+		/**
+		 * @param entry the new entry
+		 * @return this log followed by the new entry; this log is left unchanged
+		 */
+		private TravelLog add (LogEntry entry) {
+			return new TravelLog(Objects.requireNonNull(entry), this, this.size + 1);
+		}
+
+		/**
+		 * @return the number of entries of the log
+		 */
+		private int size () { return this.size; }
+
+		/**
+		 * @return the entries of the log, from the first one to the last one
+		 */
+		private ImmutableList<LogEntry> toList () {
+			LogEntry[] entries = new LogEntry[this.size];
+			for (TravelLog log = this; log.size > 0; log = log.previous) entries[log.size - 1] = log.entry;
+			return ImmutableList.copyOf(entries);
 		}
 	}
 
@@ -5,16 +5,50 @@ import com.google.common.collect.ImmutableList;
 import javax.annotation.Nonnull;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Factory;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * A factory used to create a game model of the ScotlandYard game
  */
 public final class MyModelFactory implements Factory<Model>{
 
+	/**
+	 * The executor delivering the events of the asynchronous observers of the models of every factory built
+	 * without one; its threads only live while there are events to deliver
+	 */
+	private static final Executor OBSERVER_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+			.setNameFormat("model-observer-%d")
+			.setDaemon(true)
+			.build());
+
+	/**
+	 * The executor delivering the events of the asynchronous observers of the models built
+	 */
+	private final Executor observerExecutor;
+
+	/**
+	 * MyModelFactory constructor, for models delivering the events of their asynchronous observers on threads
+	 * shared by all of them
+	 */
+	public MyModelFactory() {
+		this(OBSERVER_EXECUTOR);
+	}
+
+	/**
+	 * MyModelFactory constructor
+	 *
+	 * @param observerExecutor the executor delivering the events of the asynchronous observers of the models built
+	 */
+	public MyModelFactory(@Nonnull Executor observerExecutor) {
+		this.observerExecutor = observerExecutor;
+	}
+
 	/**
 	 * Creates an instance of Model given the parameters required for a ScotlandYard game
 	 *
@@ -25,7 +59,7 @@ public final class MyModelFactory implements Factory<Model>{
 	 */
 	@Nonnull @Override
 	public Model build(GameSetup setup, Player mrX, ImmutableList<Player> detectives) {
-		return new MyModel(setup, mrX, detectives);
+		return new MyModel(setup, mrX, detectives, observerExecutor);
 	}
 
 	/**
@@ -46,9 +80,13 @@ public final class MyModelFactory implements Factory<Model>{
 		 */
 		ImmutableList<Player> detectives;
 		/**
-		 * The observers
+		 * The observers, copied on write so that they can be (un)registered while the events are delivered
 		 */
-		List<Observer> observers = new ArrayList<>();
+		List<Registration> observers = new CopyOnWriteArrayList<>();
+		/**
+		 * The executor delivering the events of the asynchronous observers
+		 */
+		Executor observerExecutor;
 		/**
 		 * The game state
 		 */
@@ -60,11 +98,13 @@ public final class MyModelFactory implements Factory<Model>{
 		 * @param setup the game setup
 		 * @param mrX MrX player
 		 * @param detectives detective players
+		 * @param observerExecutor the executor delivering the events of the asynchronous observers
 		 */
-		public MyModel(GameSetup setup, Player mrX, ImmutableList<Player> detectives) {
+		public MyModel(GameSetup setup, Player mrX, ImmutableList<Player> detectives, Executor observerExecutor) {
 			this.setup = setup;
 			this.mrX = mrX;
 			this.detectives = detectives;
+			this.observerExecutor = observerExecutor;
 			this.gameState = new MyGameStateFactory().build(setup, mrX, detectives);
 		}
 
@@ -82,9 +122,24 @@ public final class MyModelFactory implements Factory<Model>{
 		 * @throws IllegalArgumentException if the observer is already registered
 		 */
 		public void registerObserver(@Nonnull Observer observer) {
+			registerObserver(observer, Observer.Dispatch.SYNCHRONOUS);
+		}
+
+		/**
+		 * Registers an observer to the model, with the events delivered as given
+		 *
+		 * @param observer the observer to register
+		 * @param dispatch how the events are delivered to the observer
+		 * @throws NullPointerException if the observer or the dispatch is null
+		 * @throws IllegalArgumentException if the observer is already registered
+		 */
+		@Override
+		public synchronized void registerObserver(@Nonnull Observer observer, @Nonnull Observer.Dispatch dispatch) {
 			if (observer == null) throw new NullPointerException("Observer is null!");
-			if (observers.contains(observer)) throw new IllegalArgumentException("Observer is already registered!");
-			observers.add(observer);
+			if (dispatch == null) throw new NullPointerException("Dispatch is null!");
+			if (find(observer) != null) throw new IllegalArgumentException("Observer is already registered!");
+			observers.add(new Registration(observer, dispatch == Observer.Dispatch.SYNCHRONOUS ? observer
+					: new ObserverQueue(observer, dispatch == Observer.Dispatch.LATEST, observerExecutor)));
 		}
 
 		/**
@@ -94,10 +149,13 @@ public final class MyModelFactory implements Factory<Model>{
 		 * @throws NullPointerException if the observer is null
 		 * @throws IllegalArgumentException if the observer is not registered
 		 */
-		public void unregisterObserver(@Nonnull Observer observer) {
+		public synchronized void unregisterObserver(@Nonnull Observer observer) {
 			if (observer == null) throw new NullPointerException("Observer is null!");
-			if (!observers.contains(observer)) throw new IllegalArgumentException("Observer is not registered!");
-			observers.remove(observer);
+			Registration registration = find(observer);
+			if (registration == null) throw new IllegalArgumentException("Observer is not registered!");
+			observers.remove(registration);
+			// The events it is still waiting for are dropped
+			if (registration.dispatcher instanceof ObserverQueue) ((ObserverQueue) registration.dispatcher).close();
 		}
 
 		/**
@@ -105,7 +163,9 @@ public final class MyModelFactory implements Factory<Model>{
 		 */
 		@Nonnull
 		public ImmutableSet<Observer> getObservers() {
-			return ImmutableSet.copyOf(observers);
+			ImmutableSet.Builder<Observer> builder = ImmutableSet.builder();
+			for (Registration registration : observers) builder.add(registration.observer);
+			return builder.build();
 		}
 
 		/**
@@ -116,19 +176,57 @@ public final class MyModelFactory implements Factory<Model>{
 		public void chooseMove(@Nonnull Move move) {
 			try {
 				gameState = gameState.advance(move);
-				if (getCurrentBoard().getWinner().isEmpty()) {
-					for (Observer observer : observers) observer.onModelChanged(gameState, Event.MOVE_MADE);
-				}
-				else {
-					for (Observer observer : observers) {
-						observer.onModelChanged(gameState, Event.GAME_OVER);
-					}
-				}
+				if (getCurrentBoard().getWinner().isEmpty()) notifyObservers(Event.MOVE_MADE);
+				else notifyObservers(Event.GAME_OVER);
 			} catch (IllegalArgumentException i) {
-				for (Observer observer : observers) {
-					observer.onModelChanged(gameState, Event.GAME_OVER);
-				}
+				notifyObservers(Event.GAME_OVER);
 			}
 		}
+
+		/**
+		 * Delivers an event to the synchronous observers and queues it for the asynchronous ones
+		 *
+		 * @param event the event
+		 */
+		private void notifyObservers(Event event) {
+			Board board = gameState;
+			for (Registration registration : observers) registration.dispatcher.onModelChanged(board, event);
+		}
+
+		/**
+		 * @param observer the observer
+		 * @return the registration of the observer; null if it is not registered
+		 */
+		private Registration find(Observer observer) {
+			for (Registration registration : observers) {
+				if (registration.observer.equals(observer)) return registration;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * A registered observer, with the observer notified of its events in its place
+	 */
+	private static final class Registration {
+		/**
+		 * The observer registered
+		 */
+		final Model.Observer observer;
+		/**
+		 * The observer notified of the events: the observer itself if synchronous, its queue otherwise
+		 */
+		final Model.Observer dispatcher;
+
+		/**
+		 * Registration constructor
+		 *
+		 * @param observer the observer registered
+		 * @param dispatcher the observer notified of the events
+		 */
+		Registration(Model.Observer observer, Model.Observer dispatcher) {
+			this.observer = observer;
+			this.dispatcher = dispatcher;
+		}
 	}
 }
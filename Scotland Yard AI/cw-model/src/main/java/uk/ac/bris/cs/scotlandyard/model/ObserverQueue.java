@@ -0,0 +1,152 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Model.Observer;
+import uk.ac.bris.cs.scotlandyard.model.Model.Observer.Event;
+
+/**
+ * The events waiting to be delivered to an asynchronous observer. They are delivered in order by a task of the
+ * executor, which is only scheduled while there are events waiting, so the observers can share an executor
+ * without ever being called concurrently. The model notifies the queue in place of the observer.
+ */
+final class ObserverQueue implements Observer, Runnable {
+
+	/**
+	 * The observer
+	 */
+	private final Observer observer;
+	/**
+	 * True to drop a {@link Event#MOVE_MADE} still waiting when a newer event comes in
+	 */
+	private final boolean coalesce;
+	/**
+	 * The executor delivering the events
+	 */
+	private final Executor executor;
+	/**
+	 * The events waiting, oldest first; guarded by this
+	 */
+	private final Deque<Pending> pending = new ArrayDeque<>();
+	/**
+	 * True while a task delivering the events is scheduled or running; guarded by this
+	 */
+	private boolean scheduled;
+	/**
+	 * True once the observer is unregistered; guarded by this
+	 */
+	private boolean closed;
+
+	/**
+	 * ObserverQueue constructor
+	 *
+	 * @param observer the observer
+	 * @param coalesce true to drop a {@link Event#MOVE_MADE} still waiting when a newer event comes in
+	 * @param executor the executor delivering the events
+	 */
+	ObserverQueue(@Nonnull Observer observer, boolean coalesce, @Nonnull Executor executor) {
+		this.observer = observer;
+		this.coalesce = coalesce;
+		this.executor = executor;
+	}
+
+	/**
+	 * Queues an event for the observer
+	 *
+	 * @param board the board at the time of the event
+	 * @param event the event
+	 */
+	@Override public void onModelChanged(@Nonnull Board board, @Nonnull Event event) {
+		synchronized (this) {
+			if (this.closed) return;
+			if (this.coalesce && !this.pending.isEmpty() && this.pending.peekLast().event == Event.MOVE_MADE) {
+				this.pending.pollLast();
+			}
+			this.pending.add(new Pending(board, event));
+			if (this.scheduled) return;
+			this.scheduled = true;
+		}
+		schedule();
+	}
+
+	/**
+	 * Drops the events waiting; no more are queued. An event being delivered is not interrupted.
+	 */
+	synchronized void close() {
+		this.closed = true;
+		this.pending.clear();
+	}
+
+	/**
+	 * Delivers the events waiting, until there are none left
+	 */
+	@Override public void run() {
+		try {
+			Pending next;
+			while ((next = poll()) != null) this.observer.onModelChanged(next.board, next.event);
+		} finally {
+			// Whatever the observer throws goes to the executor, and the events after it to a new task; the
+			// events also get here when queued after the loop found none left but before the task ended
+			boolean reschedule;
+			synchronized (this) {
+				reschedule = !this.closed && !this.pending.isEmpty();
+				this.scheduled = reschedule;
+			}
+			if (reschedule) schedule();
+		}
+	}
+
+	/**
+	 * @return the oldest event waiting; null if there are none
+	 */
+	private synchronized Pending poll() {
+		return this.pending.poll();
+	}
+
+	/**
+	 * Schedules a task delivering the events waiting. If the executor rejects it, the events stay queued for
+	 * the next event to schedule them, and the rejection is reported to the handler of the current thread
+	 * rather than thrown at the model, so that the observers after this one still get their events.
+	 */
+	private void schedule() {
+		try {
+			this.executor.execute(this);
+		} catch (RejectedExecutionException e) {
+			synchronized (this) {
+				this.scheduled = false;
+			}
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+		}
+	}
+
+	/**
+	 * An event waiting to be delivered
+	 */
+	private static final class Pending {
+		/**
+		 * The board at the time of the event
+		 */
+		final Board board;
+		/**
+		 * The event
+		 */
+		final Event event;
+
+		/**
+		 * Pending constructor
+		 *
+		 * @param board the board at the time of the event
+		 * @param event the event
+		 */
+		Pending(Board board, Event event) {
+			this.board = board;
+			this.event = event;
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Move.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Moves packed into a long, for searches that go through too many moves to allocate a {@link Move} for each.
+ * <br>
+ * A packed move holds the piece (its index in {@link ScotlandYard#ALL_PIECES}), the source, the tickets and the
+ * destinations of the move; a single move has the second destination equal to the first one and no second
+ * ticket. Nodes must be below {@code 1 << 16}. Packed moves are equal if and only if the moves are equal.
+ */
+public final class PackedMove {
+
+	/**
+	 * The layout of a packed move
+	 */
+	private static final int NODE_BITS = 16;
+	private static final int NODE_MASK = (1 << NODE_BITS) - 1;
+	private static final int DESTINATION2_SHIFT = NODE_BITS;
+	private static final int SOURCE_SHIFT = DESTINATION2_SHIFT + NODE_BITS;
+	private static final int TICKET_BITS = 3;
+	private static final int TICKET_MASK = (1 << TICKET_BITS) - 1;
+	private static final int TICKET1_SHIFT = SOURCE_SHIFT + NODE_BITS;
+	private static final int TICKET2_SHIFT = TICKET1_SHIFT + TICKET_BITS;
+	private static final int PIECE_SHIFT = TICKET2_SHIFT + TICKET_BITS;
+	private static final int PIECE_MASK = 0x7;
+	private static final long DOUBLE_FLAG = 1L << PIECE_SHIFT + 3;
+
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final Piece[] PIECES = ScotlandYard.ALL_PIECES.toArray(new Piece[0]);
+
+	private PackedMove() {}
+
+	/**
+	 * @param piece the piece
+	 * @param source the source
+	 * @param ticket the ticket
+	 * @param destination the destination
+	 * @return the packed single move
+	 */
+	public static long single(@Nonnull Piece piece, int source, @Nonnull Ticket ticket, int destination) {
+		return (long) pieceIndex(piece) << PIECE_SHIFT | (long) ticket.ordinal() << TICKET1_SHIFT
+				| (long) node(source) << SOURCE_SHIFT | (long) node(destination) << DESTINATION2_SHIFT | node(destination);
+	}
+
+	/**
+	 * @param piece the piece
+	 * @param source the source
+	 * @param ticket1 the first ticket
+	 * @param destination1 the first destination
+	 * @param ticket2 the second ticket
+	 * @param destination2 the second destination
+	 * @return the packed double move
+	 */
+	public static long doubleMove(@Nonnull Piece piece, int source,
+	                              @Nonnull Ticket ticket1, int destination1,
+	                              @Nonnull Ticket ticket2, int destination2) {
+		return DOUBLE_FLAG | (long) pieceIndex(piece) << PIECE_SHIFT
+				| (long) ticket2.ordinal() << TICKET2_SHIFT | (long) ticket1.ordinal() << TICKET1_SHIFT
+				| (long) node(source) << SOURCE_SHIFT | (long) node(destination2) << DESTINATION2_SHIFT | node(destination1);
+	}
+
+	/**
+	 * @param move the move
+	 * @return the packed move
+	 */
+	public static long of(@Nonnull Move move) {
+		return move.visit(new Move.Visitor<Long>() {
+			@Override public Long visit(SingleMove move) {
+				return single(move.commencedBy(), move.source(), move.ticket, move.destination);
+			}
+			@Override public Long visit(DoubleMove move) {
+				return doubleMove(move.commencedBy(), move.source(), move.ticket1, move.destination1, move.ticket2, move.destination2);
+			}
+		});
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return the move
+	 */
+	@Nonnull public static Move toMove(long move) {
+		if (isDouble(move)) return new DoubleMove(piece(move), source(move),
+				ticket1(move), destination1(move), ticket2(move), destination2(move));
+		return new SingleMove(piece(move), source(move), ticket1(move), destination1(move));
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return true if it is a double move
+	 */
+	public static boolean isDouble(long move) {
+		return (move & DOUBLE_FLAG) != 0;
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return the piece that makes the move
+	 */
+	@Nonnull public static Piece piece(long move) {
+		return PIECES[(int) (move >>> PIECE_SHIFT) & PIECE_MASK];
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return the source of the move
+	 */
+	public static int source(long move) {
+		return (int) (move >>> SOURCE_SHIFT) & NODE_MASK;
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return the (first) ticket of the move
+	 */
+	@Nonnull public static Ticket ticket1(long move) {
+		return TICKETS[(int) (move >>> TICKET1_SHIFT) & TICKET_MASK];
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return the (first) destination of the move
+	 */
+	public static int destination1(long move) {
+		return (int) move & NODE_MASK;
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return the second ticket of the move
+	 * @throws IllegalArgumentException if it is a single move
+	 */
+	@Nonnull public static Ticket ticket2(long move) {
+		if (!isDouble(move)) throw new IllegalArgumentException("Single move has no second ticket!");
+		return TICKETS[(int) (move >>> TICKET2_SHIFT) & TICKET_MASK];
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return the destination the move ends at (the second destination of a double move)
+	 */
+	public static int destination2(long move) {
+		return (int) (move >>> DESTINATION2_SHIFT) & NODE_MASK;
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return the move in the format of {@link Move#toString()}
+	 */
+	@Nonnull public static String toString(long move) {
+		return toMove(move).toString();
+	}
+
+	/**
+	 * @param piece the piece
+	 * @return the index of the piece in {@link ScotlandYard#ALL_PIECES}
+	 */
+	static int pieceIndex(@Nonnull Piece piece) {
+		return piece.isMrX() ? 0 : ((Piece.Detective) piece).ordinal() + 1;
+	}
+
+	/**
+	 * @param node the node
+	 * @return the node
+	 * @throws IllegalArgumentException if the node does not fit in a packed move
+	 */
+	private static int node(int node) {
+		if ((node & ~NODE_MASK) != 0) throw new IllegalArgumentException("Node out of range: " + node);
+		return node;
+	}
+}
@@ -0,0 +1,225 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Counts the game states reachable from a game state in a given number of moves (a move of a single player,
+ * as in {@link GameState#advance}), like perft in chess: a change to move generation that changes any count is
+ * a bug. The moves leading to the counted states are broken down by type. A game that is over before the
+ * given number of moves counts as a single state.
+ * <br>
+ * Running it prints the counts of the reference positions ({@link #referencePosition}) with their speed.
+ * Usage: {@code Perft [DEPTH] [SEEDS]}.
+ */
+public final class Perft {
+
+	/**
+	 * The detectives of the reference positions
+	 */
+	private static final ImmutableList<Piece.Detective> DETECTIVES = ImmutableList.of(Piece.Detective.RED,
+			Piece.Detective.GREEN, Piece.Detective.BLUE, Piece.Detective.WHITE, Piece.Detective.YELLOW);
+
+	private Perft() {}
+
+	/**
+	 * The counts of a perft
+	 */
+	public static final class Counts {
+		/**
+		 * The number of game states counted
+		 */
+		public long nodes;
+		/**
+		 * The number of single moves leading to the states counted
+		 */
+		public long singleMoves;
+		/**
+		 * The number of double moves leading to the states counted
+		 */
+		public long doubleMoves;
+		/**
+		 * The number of moves with at least one secret ticket leading to the states counted
+		 */
+		public long secretMoves;
+		/**
+		 * The number of states counted where the game is over
+		 */
+		public long gameOvers;
+
+		@Override public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Counts that = (Counts) o;
+			return nodes == that.nodes && singleMoves == that.singleMoves && doubleMoves == that.doubleMoves &&
+					secretMoves == that.secretMoves && gameOvers == that.gameOvers;
+		}
+		@Override public int hashCode() {
+			return Objects.hash(nodes, singleMoves, doubleMoves, secretMoves, gameOvers);
+		}
+		@Override public String toString() {
+			return "nodes=" + nodes + " single=" + singleMoves + " double=" + doubleMoves +
+					" secret=" + secretMoves + " gameOver=" + gameOvers;
+		}
+	}
+
+	/**
+	 * @param state the game state
+	 * @param depth the number of moves
+	 * @return the counts of the states reachable from the state, going through {@link GameState#getAvailableMoves()}
+	 */
+	@Nonnull public static Counts count(@Nonnull GameState state, int depth) {
+		if (depth < 0) throw new IllegalArgumentException("Negative depth!");
+		Counts counts = new Counts();
+		count(state, depth, null, counts);
+		return counts;
+	}
+
+	/**
+	 * Same as {@link #count(GameState, int)}, going through the packed moves of {@link MoveList#generate}
+	 * instead; the counts must be the same
+	 *
+	 * @param state the game state
+	 * @param depth the number of moves
+	 * @return the counts of the states reachable from the state
+	 */
+	@Nonnull public static Counts countPacked(@Nonnull GameState state, int depth) {
+		if (depth < 0) throw new IllegalArgumentException("Negative depth!");
+		Counts counts = new Counts();
+		MoveList[] lists = new MoveList[depth];
+		for (int i = 0; i < depth; ++i) lists[i] = new MoveList();
+		countPacked(state, depth, 0, 0, lists, counts);
+		return counts;
+	}
+
+	/**
+	 * @param factory the factory of the game state
+	 * @param setup the game setup
+	 * @param seed the seed of the start locations
+	 * @return the start of the game where MrX and five detectives start at the locations of
+	 * {@link ScotlandYard#generateMrXLocation} and {@link ScotlandYard#generateDetectiveLocations} for the seed,
+	 * with the default tickets
+	 */
+	@Nonnull public static GameState referencePosition(@Nonnull ScotlandYard.Factory<GameState> factory,
+			@Nonnull GameSetup setup, int seed) {
+		List<Player> detectives = new ArrayList<>();
+		List<Integer> locations = ScotlandYard.generateDetectiveLocations(seed, DETECTIVES.size());
+		for (int i = 0; i < DETECTIVES.size(); ++i) {
+			detectives.add(new Player(DETECTIVES.get(i), ScotlandYard.defaultDetectiveTickets(), locations.get(i)));
+		}
+		Player mrX = new Player(Piece.MrX.MRX, ScotlandYard.defaultMrXTickets(), ScotlandYard.generateMrXLocation(seed));
+		return factory.build(setup, mrX, ImmutableList.copyOf(detectives));
+	}
+
+	/**
+	 * Prints the counts of the reference positions at every depth up to the given one, with the time taken
+	 *
+	 * @param args the depth (4 by default) and the number of seeds (4 by default)
+	 * @throws IOException if the standard map cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int seeds = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		GameSetup setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24ROUNDS);
+		MyGameStateFactory factory = new MyGameStateFactory();
+		for (int seed = 0; seed < seeds; ++seed) {
+			for (int d = 1; d <= depth; ++d) {
+				GameState state = referencePosition(factory, setup, seed);
+				long start = System.nanoTime();
+				Counts counts = count(state, d);
+				long time = System.nanoTime() - start;
+				state = referencePosition(factory, setup, seed);
+				start = System.nanoTime();
+				Counts packed = countPacked(state, d);
+				long packedTime = System.nanoTime() - start;
+				System.out.printf("seed %d depth %d: %s | %.1f ms, %.0f nodes/s | packed %.1f ms, %.0f nodes/s%s%n",
+						seed, d, counts, time / 1e6, counts.nodes * 1e9 / time,
+						packedTime / 1e6, packed.nodes * 1e9 / packedTime, counts.equals(packed) ? "" : " MISMATCH " + packed);
+			}
+		}
+	}
+
+	/**
+	 * @param state the game state
+	 * @param depth the number of moves left
+	 * @param move the move leading to the state; null for the state the perft starts from
+	 * @param counts the counts the state and the states reachable from it are added to
+	 */
+	private static void count(GameState state, int depth, Move move, Counts counts) {
+		if (depth == 0 || !state.getWinner().isEmpty()) {
+			countLeaf(counts, state, move != null, move != null && isDouble(move), move != null && isSecret(move));
+			return;
+		}
+		for (Move next : state.getAvailableMoves()) count(state.advance(next), depth - 1, next, counts);
+	}
+
+	/**
+	 * @param state the game state
+	 * @param depth the number of moves left
+	 * @param ply the number of moves made since the state the perft starts from
+	 * @param move the packed move leading to the state; ignored for the state the perft starts from
+	 * @param lists the move list of every ply
+	 * @param counts the counts the state and the states reachable from it are added to
+	 */
+	private static void countPacked(GameState state, int depth, int ply, long move, MoveList[] lists, Counts counts) {
+		if (depth == 0 || !state.getWinner().isEmpty()) {
+			boolean secret = PackedMove.ticket1(move) == Ticket.SECRET ||
+					PackedMove.isDouble(move) && PackedMove.ticket2(move) == Ticket.SECRET;
+			countLeaf(counts, state, ply > 0, PackedMove.isDouble(move), secret);
+			return;
+		}
+		MoveList moves = lists[ply].generate(state);
+		for (int i = 0; i < moves.size(); ++i) {
+			long next = moves.get(i);
+			countPacked(state.advance(PackedMove.toMove(next)), depth - 1, ply + 1, next, lists, counts);
+		}
+	}
+
+	/**
+	 * @param counts the counts the state is added to
+	 * @param state the state counted
+	 * @param moved false for the state the perft starts from, which has no move leading to it
+	 * @param isDouble true if the move leading to the state is a double move
+	 * @param isSecret true if the move leading to the state uses a secret ticket
+	 */
+	private static void countLeaf(Counts counts, GameState state, boolean moved, boolean isDouble, boolean isSecret) {
+		counts.nodes += 1;
+		if (moved) {
+			if (isDouble) counts.doubleMoves += 1;
+			else counts.singleMoves += 1;
+			if (isSecret) counts.secretMoves += 1;
+		}
+		if (!state.getWinner().isEmpty()) counts.gameOvers += 1;
+	}
+
+	/**
+	 * @param move the move
+	 * @return true if the move is a double move
+	 */
+	private static boolean isDouble(Move move) {
+		for (Ticket ticket : move.tickets()) {
+			if (ticket == Ticket.DOUBLE) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param move the move
+	 * @return true if the move uses a secret ticket
+	 */
+	private static boolean isSecret(Move move) {
+		for (Ticket ticket : move.tickets()) {
+			if (ticket == Ticket.SECRET) return true;
+		}
+		return false;
+	}
+}
@@ -2,7 +2,6 @@ package uk.ac.bris.cs.scotlandyard.model;
 
 import com.google.common.collect.ImmutableMap;
 
-import java.util.HashMap;
 import java.util.Objects;
 
 import javax.annotation.Nonnull;
@@ -12,17 +11,43 @@ import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
 /**
  * A POJO representing an immutable player of the ScotlandYard game.
  * Each player contains the {@link Piece} (coloured counter), {@link Ticket}s, and the location.
+ * The tickets are stored as a vector of small counters packed into a long, so using and giving tickets
+ * never copies a map; {@link #tickets()} is only built when asked for.
  */
 public final class Player {
+	private static final Ticket[] TICKETS = Ticket.values();
+	/**
+	 * Every ticket count is stored as a signed number of this many bits, at bit COUNT_BITS * ordinal
+	 */
+	private static final int COUNT_BITS = 11;
+	private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+	private static final int MAX_COUNT = (1 << (COUNT_BITS - 1)) - 1;
+	private static final int MIN_COUNT = -MAX_COUNT - 1;
+	/**
+	 * Whether the tickets map has an entry for a ticket is stored at bit PRESENT_SHIFT + ordinal
+	 */
+	private static final int PRESENT_SHIFT = COUNT_BITS * TICKETS.length;
+
 	private final Piece piece;
-	private final ImmutableMap<Ticket, Integer> tickets;
+	private final long counts;
 	private final int location;
+	private ImmutableMap<Ticket, Integer> tickets;
 
+	/**
+	 * @param piece the piece
+	 * @param tickets the tickets
+	 * @param location the location
+	 * @throws IllegalArgumentException if a ticket count does not fit in the ticket vector
+	 */
 	public Player(@Nonnull Piece piece,
 	              @Nonnull ImmutableMap<Ticket, Integer> tickets,
 	              int location) {
+		this(piece, pack(Objects.requireNonNull(tickets)), tickets, location);
+	}
+	private Player(Piece piece, long counts, ImmutableMap<Ticket, Integer> tickets, int location) {
 		this.piece = Objects.requireNonNull(piece);
-		this.tickets = Objects.requireNonNull(tickets);
+		this.counts = counts;
+		this.tickets = tickets;
 		this.location = location;
 	}
 	/**
@@ -40,17 +65,34 @@ public final class Player {
 	/**
 	 * @return the ticket
 	 */
-	@Nonnull public ImmutableMap<Ticket, Integer> tickets() { return tickets; }
+	@Nonnull public ImmutableMap<Ticket, Integer> tickets() {
+		var map = tickets;
+		if (map == null) {
+			var builder = ImmutableMap.<Ticket, Integer>builder();
+			for (Ticket t : TICKETS) {
+				if (isPresent(counts, t)) builder.put(t, count(counts, t));
+			}
+			tickets = map = builder.build();
+		}
+		return map;
+	}
 	/**
 	 * @return the location
 	 */
 	public int location() { return location; }
+	/**
+	 * @param ticket the ticket
+	 * @return the number of the given ticket the player has
+	 */
+	public int count(@Nonnull Ticket ticket) {
+		return count(counts, Objects.requireNonNull(ticket));
+	}
 	/**
 	 * @param ticket the ticket
 	 * @return whether the player has the given ticket
 	 */
 	public boolean has(@Nonnull Ticket ticket) {
-		return tickets.getOrDefault(Objects.requireNonNull(ticket), 0) != 0;
+		return count(ticket) != 0;
 	}
 	/**
 	 * @param ticket the ticket
@@ -58,7 +100,7 @@ public final class Player {
 	 * @return whether the player has &gt;= the required numbers of the given ticket
 	 */
 	public boolean hasAtLeast(@Nonnull Ticket ticket, int count) {
-		return tickets.getOrDefault(Objects.requireNonNull(ticket), 0) >= count;
+		return count(ticket) >= count;
 	}
 	/**
 	 * See {@link #give(Ticket)}
@@ -67,18 +109,17 @@ public final class Player {
 	 * @return a new player with one more of the given tickets
 	 */
 	@Nonnull public Player give(@Nonnull Iterable<Ticket> tickets) {
-		var x = this;
-		for (Ticket t : tickets) x = x.give(t);
-		return x;
+		long x = counts;
+		for (Ticket t : tickets) x = give(x, t);
+		return x == counts ? this : new Player(piece, x, null, location);
 	}
 	/**
 	 * @param ticket the ticket
 	 * @return a new player with one more of the given ticket
 	 */
 	@Nonnull public Player give(@Nonnull Ticket ticket) {
-		var map = new HashMap<>(tickets);
-		map.computeIfPresent(ticket, (t, n) -> n + 1);
-		return new Player(piece, ImmutableMap.copyOf(map), location);
+		long x = give(counts, ticket);
+		return x == counts ? this : new Player(piece, x, null, location);
 	}
 	/**
 	 * See {@link #use(Ticket)}
@@ -87,33 +128,95 @@ public final class Player {
 	 * @return a new player with one less of the given tickets
 	 */
 	@Nonnull public Player use(@Nonnull Iterable<Ticket> tickets) {
-		var x = this;
-		for (Ticket t : tickets) x = x.use(t);
-		return x;
+		long x = counts;
+		for (Ticket t : tickets) x = use(x, t);
+		return x == counts ? this : new Player(piece, x, null, location);
 	}
 	/**
 	 * @param ticket the ticket
 	 * @return a new player with one less of the given ticket
 	 */
 	@Nonnull public Player use(@Nonnull Ticket ticket) {
-		if (!has(ticket))
-			throw new IllegalArgumentException("No " + ticket + " remaining");
-		var map = new HashMap<>(tickets);
-		map.computeIfPresent(ticket, (t, n) -> n - 1);
-		return new Player(piece, ImmutableMap.copyOf(map), location);
+		return new Player(piece, use(counts, ticket), null, location);
 	}
 	/**
 	 * @param newLocation the location
 	 * @return a new player at the given location
 	 */
-	@Nonnull public Player at(int newLocation) { return new Player(piece, tickets, newLocation); }
+	@Nonnull public Player at(int newLocation) { return new Player(piece, counts, tickets, newLocation); }
 	@Override public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
 		Player that = (Player) o;
-		return location == that.location && piece == that.piece &&
-				Objects.equals(tickets, that.tickets);
+		return location == that.location && piece == that.piece && counts == that.counts;
+	}
+	@Override public int hashCode() { return Objects.hash(piece, counts, location); }
+	@Override public String toString() { return piece + "@" + location + "(" + tickets() + ")"; }
+
+	/**
+	 * @param tickets the tickets
+	 * @return the ticket vector of the tickets
+	 * @throws IllegalArgumentException if a ticket count does not fit in the ticket vector
+	 */
+	private static long pack(ImmutableMap<Ticket, Integer> tickets) {
+		long counts = 0;
+		for (var entry : tickets.entrySet()) {
+			int count = entry.getValue();
+			if (count < MIN_COUNT || count > MAX_COUNT)
+				throw new IllegalArgumentException("Too many " + entry.getKey() + " tickets: " + count);
+			counts = withCount(counts, entry.getKey(), count) | 1L << (PRESENT_SHIFT + entry.getKey().ordinal());
+		}
+		return counts;
+	}
+	/**
+	 * @param counts the ticket vector
+	 * @param ticket the ticket
+	 * @return the ticket vector with one more of the given ticket; unchanged if the tickets have no entry for it
+	 */
+	private static long give(long counts, Ticket ticket) {
+		if (!isPresent(counts, ticket)) return counts;
+		int count = count(counts, ticket);
+		if (count == MAX_COUNT) throw new IllegalArgumentException("Too many " + ticket + " tickets");
+		return withCount(counts, ticket, count + 1);
+	}
+	/**
+	 * @param counts the ticket vector
+	 * @param ticket the ticket
+	 * @return the ticket vector with one less of the given ticket
+	 * @throws IllegalArgumentException if there is none of the given ticket
+	 */
+	private static long use(long counts, Ticket ticket) {
+		int count = count(counts, ticket);
+		if (count == 0)
+			throw new IllegalArgumentException("No " + ticket + " remaining");
+		if (count == MIN_COUNT) throw new IllegalArgumentException("Too few " + ticket + " tickets");
+		return withCount(counts, ticket, count - 1);
+	}
+	/**
+	 * @param counts the ticket vector
+	 * @param ticket the ticket
+	 * @return the number of the given ticket in the ticket vector
+	 */
+	private static int count(long counts, Ticket ticket) {
+		// Shifts the counter to the top bits and back, which restores its sign
+		return (int) (counts << (64 - COUNT_BITS * (ticket.ordinal() + 1)) >> (64 - COUNT_BITS));
+	}
+	/**
+	 * @param counts the ticket vector
+	 * @param ticket the ticket
+	 * @return whether the tickets the ticket vector was built from have an entry for the given ticket
+	 */
+	private static boolean isPresent(long counts, Ticket ticket) {
+		return (counts & 1L << (PRESENT_SHIFT + ticket.ordinal())) != 0;
+	}
+	/**
+	 * @param counts the ticket vector
+	 * @param ticket the ticket
+	 * @param count the new number of the given ticket
+	 * @return the ticket vector with the given number of the given ticket
+	 */
+	private static long withCount(long counts, Ticket ticket, int count) {
+		int shift = COUNT_BITS * ticket.ordinal();
+		return counts & ~(COUNT_MASK << shift) | (count & COUNT_MASK) << shift;
 	}
-	@Override public int hashCode() { return Objects.hash(piece, tickets, location); }
-	@Override public String toString() { return piece + "@" + location + "(" + tickets + ")"; }
 }
@@ -0,0 +1,332 @@
+package uk.ac.bris.cs.scotlandyard.ui.controller;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Runs the ais of every game on a single bounded pool of platform threads, shared by all the games of the JVM.
+ * <br>
+ * Every game opens a {@link Session}, which may run at most a quota of tasks at once; its other tasks wait in
+ * its own queue. Whenever a thread is free it takes the next task of the sessions in turn (round-robin), so a
+ * game with many tasks waiting cannot starve the others, and no game can take more than its quota of the
+ * threads. The time tasks wait in the queues and the time they run are recorded for each session and for the
+ * whole service.
+ * <br>
+ * A task cancelled while it runs gives its quota back to its session at once. If it still has not returned a
+ * grace period later (an ai ignoring the interrupt), it is counted as stuck and the pool gets an extra thread
+ * until it does return, so that it cannot take a thread away from the other games for good.
+ * <br>
+ * The number of threads is the {@code scotlandyard.ai.threads} system property (the number of processors by
+ * default), the quota of a session the {@code scotlandyard.ai.quota} one (1 by default: a game only asks
+ * one ai for a move at a time) and the grace period the {@code scotlandyard.ai.grace} one, in milliseconds
+ * (1000 by default).
+ */
+public final class AiExecutionService {
+
+	private static final AiExecutionService SHARED = new AiExecutionService(
+			Integer.getInteger("scotlandyard.ai.threads", Runtime.getRuntime().availableProcessors()),
+			Integer.getInteger("scotlandyard.ai.quota", 1),
+			Long.getLong("scotlandyard.ai.grace", 1000), TimeUnit.MILLISECONDS);
+
+	private final int threads;
+	private final int quota;
+	private final long graceNanos;
+	private final ThreadPoolExecutor pool;
+	// Checks whether the tasks cancelled while running have returned once their grace period is over
+	private final ScheduledExecutorService watchdog;
+	private final Metrics metrics = new Metrics();
+	// The open sessions, in the order they take turns; guarded by this
+	private final List<Session> sessions = new ArrayList<>();
+	// The session whose turn is next; guarded by this
+	private int turn;
+	// The number of tasks holding a thread, stuck ones included; guarded by this
+	private int running;
+	// The number of stuck tasks, each of which has an extra thread; guarded by this
+	private int stuck;
+
+	/**
+	 * @param threads the number of threads the tasks of every session share
+	 * @param quota the number of tasks a session may run at once
+	 */
+	public AiExecutionService(int threads, int quota) {
+		this(threads, quota, 1, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @param threads the number of threads the tasks of every session share
+	 * @param quota the number of tasks a session may run at once
+	 * @param grace how long a task cancelled while running may take to return before it is counted as stuck
+	 * @param unit the unit of the grace period
+	 */
+	public AiExecutionService(int threads, int quota, long grace, @Nonnull TimeUnit unit) {
+		if (threads < 1) throw new IllegalArgumentException("Need at least one thread, got " + threads);
+		if (quota < 1) throw new IllegalArgumentException("Need a quota of at least one, got " + quota);
+		if (grace < 0) throw new IllegalArgumentException("Need a grace period of at least zero, got " + grace);
+		this.threads = threads;
+		this.quota = quota;
+		this.graceNanos = unit.toNanos(grace);
+		// Never has more tasks than threads, as the service only hands them over when a thread is free; the
+		// tasks are futures, so whatever they throw ends up in their future rather than killing the thread
+		this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(),
+				new ThreadFactoryBuilder()
+						.setNameFormat("ai-thread-%d")
+						.setDaemon(true)
+						.build());
+		this.watchdog = new ScheduledThreadPoolExecutor(1,
+				new ThreadFactoryBuilder()
+						.setNameFormat("ai-watchdog-%d")
+						.setDaemon(true)
+						.build());
+	}
+
+	/**
+	 * @return the service shared by every game, configured by the system properties
+	 */
+	@Nonnull public static AiExecutionService shared() { return SHARED; }
+
+	/**
+	 * @param name the name of the session, for its metrics
+	 * @return a new session, which takes turns with the other open ones until it is closed
+	 */
+	@Nonnull public synchronized Session openSession(@Nonnull String name) {
+		Session session = new Session(name);
+		sessions.add(session);
+		return session;
+	}
+
+	/**
+	 * @return the metrics of every task the service ran
+	 */
+	@Nonnull public Metrics metrics() { return metrics; }
+
+	public int threads() { return threads; }
+
+	public int quota() { return quota; }
+
+	// Hands tasks over to the pool while there are free threads and sessions under quota with tasks waiting
+	private synchronized void dispatch() {
+		while (running < threads + stuck) {
+			Session next = null;
+			for (int i = 0; i < sessions.size() && next == null; i++) {
+				Session session = sessions.get((turn + i) % sessions.size());
+				if (session.running < quota && !session.pending.isEmpty()) {
+					next = session;
+					turn = (turn + i + 1) % sessions.size();
+				}
+			}
+			if (next == null) return;
+			Task task = next.pending.poll();
+			next.running++;
+			next.active.add(task);
+			running++;
+			pool.execute(task);
+		}
+	}
+
+	private synchronized void finished(Task task) {
+		task.finished = true;
+		release(task);
+		running--;
+		if (task.stuck) {
+			stuck--;
+			// Shrinks the core size first, as it may not exceed the maximum one
+			pool.setCorePoolSize(threads + stuck);
+			pool.setMaximumPoolSize(threads + stuck);
+		}
+		dispatch();
+	}
+
+	private synchronized void cancelled(Task task) {
+		if (task.session.pending.remove(task)) return;
+		if (task.finished || !release(task)) return;
+		// The thread is only free once the task returns; the watchdog checks that it does
+		watchdog.schedule(() -> checkStuck(task), graceNanos, TimeUnit.NANOSECONDS);
+		dispatch();
+	}
+
+	private synchronized void checkStuck(Task task) {
+		if (task.finished || task.stuck) return;
+		task.stuck = true;
+		stuck++;
+		task.session.metrics.recordStuck();
+		metrics.recordStuck();
+		// Grows the maximum size first, as the core size may not exceed it
+		pool.setMaximumPoolSize(threads + stuck);
+		pool.setCorePoolSize(threads + stuck);
+		dispatch();
+	}
+
+	// Gives the quota the task took back to its session, if it still has it
+	private synchronized boolean release(Task task) {
+		if (!task.session.active.remove(task)) return false;
+		task.session.running--;
+		return true;
+	}
+
+	/**
+	 * The tasks of a single game
+	 */
+	public final class Session implements AutoCloseable {
+
+		private final String name;
+		private final Metrics metrics = new Metrics();
+		// The fields below are guarded by the service
+		private final Deque<Task> pending = new ArrayDeque<>();
+		// The tasks that took a share of the quota and have not given it back
+		private final List<Task> active = new ArrayList<>();
+		private int running;
+		private boolean closed;
+
+		private Session(String name) { this.name = name; }
+
+		/**
+		 * @param task the task
+		 * @return the future of the task, which can be cancelled before or while it runs
+		 * @throws RejectedExecutionException if the session is closed
+		 */
+		@Nonnull public Future<?> submit(@Nonnull Runnable task) {
+			Task queued = new Task(this, task);
+			synchronized (AiExecutionService.this) {
+				if (closed) throw new RejectedExecutionException("Session " + name + " is closed");
+				pending.add(queued);
+				dispatch();
+			}
+			return queued;
+		}
+
+		/**
+		 * Cancels the tasks waiting and interrupts the ones running; the session takes no more tasks. A task
+		 * that ignores the interrupt is left to return in its own time, see {@link AiExecutionService}
+		 */
+		@Override public void close() {
+			List<Task> cancelled;
+			synchronized (AiExecutionService.this) {
+				if (closed) return;
+				closed = true;
+				sessions.remove(this);
+				if (turn >= sessions.size()) turn = 0;
+				cancelled = new ArrayList<>(pending);
+				cancelled.addAll(active);
+				pending.clear();
+			}
+			// Running tasks release their thread once they notice the interrupt
+			for (Task task : cancelled) task.cancel(true);
+		}
+
+		@Nonnull public String name() { return name; }
+
+		/**
+		 * @return the metrics of the tasks of the session that ran
+		 */
+		@Nonnull public Metrics metrics() { return metrics; }
+
+		@Override public String toString() { return "Session{" + name + ", " + metrics + "}"; }
+	}
+
+	/**
+	 * The queue wait and execution times of tasks, and the number of tasks that got stuck; tasks cancelled
+	 * before they start are not counted, and neither are the times of the ones cancelled while running
+	 */
+	public static final class Metrics {
+
+		private long tasks;
+		private long stuck;
+		private long totalWaitNanos;
+		private long maxWaitNanos;
+		private long totalRunNanos;
+		private long maxRunNanos;
+
+		private synchronized void record(long waitNanos, long runNanos) {
+			tasks++;
+			totalWaitNanos += waitNanos;
+			maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+			totalRunNanos += runNanos;
+			maxRunNanos = Math.max(maxRunNanos, runNanos);
+		}
+
+		private synchronized void recordStuck() { stuck++; }
+
+		public synchronized long tasks() { return tasks; }
+
+		/**
+		 * @return the number of tasks that were still running a grace period after they were cancelled
+		 */
+		public synchronized long stuck() { return stuck; }
+
+		public synchronized long totalWaitNanos() { return totalWaitNanos; }
+
+		public synchronized long maxWaitNanos() { return maxWaitNanos; }
+
+		public synchronized long totalRunNanos() { return totalRunNanos; }
+
+		public synchronized long maxRunNanos() { return maxRunNanos; }
+
+		@Override public synchronized String toString() {
+			return String.format("tasks=%d wait(mean=%.1fms max=%.1fms) run(mean=%.1fms max=%.1fms) stuck=%d", tasks,
+					tasks == 0 ? 0 : totalWaitNanos / 1e6 / tasks, maxWaitNanos / 1e6,
+					tasks == 0 ? 0 : totalRunNanos / 1e6 / tasks, maxRunNanos / 1e6, stuck);
+		}
+	}
+
+	private final class Task extends FutureTask<Void> {
+
+		private final Session session;
+		private final long submitted = System.nanoTime();
+		private long started;
+		// The fields below are guarded by the service
+		private boolean finished;
+		private boolean stuck;
+
+		private Task(Session session, Runnable task) {
+			super(task, null);
+			this.session = session;
+		}
+
+		@Override public void run() {
+			started = System.nanoTime();
+			try {
+				super.run();
+			} finally {
+				finished(this);
+			}
+		}
+
+		@Override public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled) cancelled(this);
+			return cancelled;
+		}
+
+		// Recorded before the future completes, so whoever waits on it sees the task in the metrics
+		@Override protected void set(Void result) {
+			record();
+			super.set(result);
+		}
+
+		@Override protected void setException(Throwable t) {
+			record();
+			super.setException(t);
+		}
+
+		private void record() {
+			long ended = System.nanoTime();
+			session.metrics.record(started - submitted, ended - started);
+			metrics.record(started - submitted, ended - started);
+		}
+	}
+}
@@ -3,10 +3,8 @@ package uk.ac.bris.cs.scotlandyard.ui.controller;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 
-import io.atlassian.fugue.Pair;
 import net.kurobako.gesturefx.GesturePane;
 import net.kurobako.gesturefx.GesturePane.FitMode;
 import net.kurobako.gesturefx.GesturePane.ScrollBarPolicy;
@@ -16,11 +14,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -150,7 +152,10 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 	private ModelProperty config;
 	private Consumer<ImmutableSet<Piece>> timeout;
 
-	private ExecutorService aiExecutor;
+	// The tasks of the ais of this game, on the threads shared by every game
+	private AiExecutionService.Session aiSession;
+	// Set to cancel the move the ai is picking, if any
+	private AtomicBoolean aiCancelled = new AtomicBoolean();
 	private Option<Ai> mrXAi = none();
 	private Option<Ai> detectiveAi = none();
 
@@ -184,15 +189,12 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 			view.historyProperty().set(true);
 		}
 
-		aiExecutor = runInContainment(() -> {
+		aiSession = runInContainment(() -> {
 			mrXAi = config.getMrXAi();
 			detectiveAi = config.getDetectivesAi();
 			mrXAi.forEach(Ai::onStart);
 			detectiveAi.forEach(Ai::onStart);
-			return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
-					.setNameFormat("ai-thread-%d")
-					.setUncaughtExceptionHandler((t, e) -> Utils.handleFatalException(new RuntimeException("An ai instance crashed on thread " + t.getName(), e)))
-					.build());
+			return AiExecutionService.shared().openSession("game-" + System.identityHashCode(model));
 		});
 		advanceModel(model);
 	}
@@ -200,10 +202,11 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 	@Override public void onGameDetached() {
 		clearMoveHints();
 		lock();
+		aiCancelled.set(true);
 		runInContainment(() -> {
 			mrXAi.forEach(Ai::onTerminate);
 			detectiveAi.forEach(Ai::onTerminate);
-			aiExecutor.shutdownNow();
+			aiSession.close();
 			return Unit.VALUE;
 		});
 	}
@@ -219,37 +222,64 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 
 	double maxLength() { return Math.max(root.getWidth(), root.getHeight()); }
 
-	private Runnable requestAi(Model board, Ai ai) {
-		//var terminate = new AtomicBoolean(false);
+	private BooleanSupplier requestAi(Model board, Ai ai) {
+		var cancelled = new AtomicBoolean(false);
+		aiCancelled = cancelled;
+		// The last valid move the ai published while picking
+		var bestSoFar = new AtomicReference<Move>();
+		// Set once a move is played this turn, by whichever of the ai and the timeout comes first
+		var played = new AtomicBoolean(false);
 		var moves = board.getCurrentBoard().getAvailableMoves();
+		long deadline = System.nanoTime() + config.timeoutProperty().get().toNanos();
 		drawMoveHighlights(moves);
-		aiExecutor.submit(() -> {
+		var task = aiSession.submit(() -> {
 			try {
-				final var move = ai.pickMove(board.getCurrentBoard(), new Pair<>(config.timeoutProperty().get().getSeconds(), TimeUnit.SECONDS));
+				final var move = ai.pickMove(board.getCurrentBoard(), deadline, cancelled, m -> {
+					if (moves.contains(m)) bestSoFar.set(m);
+				});
 				if (!moves.contains(move)) {
 					Utils.handleFatalException(
 							new Exception("Ai(" + ai.name() + ") selected an invalid move, got: " + move + ", was expecting one of " + moves));
-				} else {
+				} else if (!cancelled.get() && played.compareAndSet(false, true)) {
 					Platform.runLater(() -> selectAndMove(board, move));
 				}
 			} catch (Exception e) {
 				Utils.handleFatalException(new Exception("Ai(" + ai.name() + ") " +
 						"threw an exception while picking a move", e));
 			}
-		}, aiExecutor);
-		return () -> handleAITimeOut(ai);
+		});
+		return () -> handleAITimeOut(board, ai, task, cancelled, bestSoFar, played);
 	}
 
-	private void handleAITimeOut(Ai ai) {
-		try {
-			aiExecutor.awaitTermination(1l, TimeUnit.SECONDS);
-		} catch(InterruptedException e) {
-			Utils.handleFatalException(
-					new Exception("Ai("+ai.name()+") was interrupted during the bail-out grace period.", e));
+	/**
+	 * Cancels the ai and plays the best move it published so far, if it did not make its move in time
+	 *
+	 * @return true if a move is played this turn; false if the ai has to forfeit
+	 */
+	private boolean handleAITimeOut(Model board, Ai ai, Future<?> task, AtomicBoolean cancelled,
+	                                AtomicReference<Move> bestSoFar, AtomicBoolean played) {
+		if (!played.get() && bestSoFar.get() == null) {
+			// Nothing to play yet, so the ai still gets the bail-out grace period to publish a move
+			try {
+				task.get(1l, TimeUnit.SECONDS);
+			} catch (TimeoutException | ExecutionException | CancellationException ignored) {
+				// The task reports its own failures, and an ai still picking forfeits below
+			} catch(InterruptedException e) {
+				Utils.handleFatalException(
+						new Exception("Ai("+ai.name()+") was interrupted during the bail-out grace period.", e));
+			}
 		}
+		cancelled.set(true);
+		// Gives the quota of the game back for the next request while the ai stops; it is not interrupted, as
+		// whatever it throws is reported as fatal
+		task.cancel(false);
+		var move = bestSoFar.get();
+		if (move == null || !played.compareAndSet(false, true)) return played.get();
+		selectAndMove(board, move);
+		return true;
 	}
 
-	private Runnable requestHuman(ImmutableSet<Move> moves, Consumer<Move> moveCallback) {
+	private BooleanSupplier requestHuman(ImmutableSet<Move> moves, Consumer<Move> moveCallback) {
 		clearMoveHints();
 		BiFunction<Integer, Integer, MoveHintController> mapping = (source, location) ->
 				new MoveHintController(manager, this,
@@ -273,7 +303,7 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 				.map(MoveHintController::root)
 				.collect(Collectors.toList()));
 		drawMoveHighlights(moves);
-		return () -> {};
+		return () -> false;
 	}
 
 	private void advanceModel(Model board) {
@@ -289,7 +319,7 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 
 		if (mrX) counters.get(MRX).animateVisibility(true);
 
-		final Runnable terminateAction;
+		final BooleanSupplier terminateAction;
 		if (mrX && mrXAi.isDefined()) {
 			terminateAction = requestAi(board, mrXAi.get());
 		} else if (!mrX && detectiveAi.isDefined()) {
@@ -304,7 +334,8 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 						"Waiting for " + pieces + " to make a move").create(
 						Duration.millis(config.timeoutProperty().get().toMillis()),
 						() -> {
-							terminateAction.run();
+							// The ai may still play the best move it found so far instead of forfeiting
+							if (terminateAction.getAsBoolean()) return;
 							notifications.dismissAll();
 							timeout.accept(pieces.stream().anyMatch(Piece::isMrX) ?
 									board.getCurrentBoard().getPlayers().stream()
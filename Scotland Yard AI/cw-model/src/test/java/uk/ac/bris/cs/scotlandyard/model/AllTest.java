@@ -3,8 +3,10 @@ package uk.ac.bris.cs.scotlandyard.model;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import uk.ac.bris.cs.scotlandyard.ui.controller.AiExecutionServiceTest;
+
 /**
- * Includes all test for the actual game model
+ * Includes all test for the actual game model, and for the service running the ais of the games
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
@@ -15,6 +17,8 @@ import org.junit.runners.Suite;
 		GameStateDetectivesAvailableMovesTest.class,
 		GameStateMrXAvailableMovesTest.class,
 		GameStatePlayoutTest.class,
-		ModelObserverTest.class
+		GameStatePerftTest.class,
+		ModelObserverTest.class,
+		AiExecutionServiceTest.class
 })
 public class AllTest {}
@@ -0,0 +1,91 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.DOUBLE;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.UNDERGROUND;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+
+/**
+ * Tests the number of game states reachable from the reference positions of {@link Perft}
+ * against golden counts; any change to move generation that changes them is a bug.
+ * <br>
+ * <b>IMPORTANT: {@link GameState#getAvailableMoves()} and {@link GameState#advance(Move)} must be
+ * properly implemented for any of the tests here to work properly!</b>
+ */
+public class GameStatePerftTest extends ParameterisedModelTestBase {
+
+	@Test public void testSeed0() {
+		assertPerft(0, 1, counts(94, 8, 86, 67, 0));
+		assertPerft(0, 3, counts(37412, 37412, 0, 0, 0));
+	}
+
+	@Test public void testSeed1() {
+		assertPerft(1, 1, counts(106, 8, 98, 77, 0));
+		assertPerft(1, 3, counts(29696, 29696, 0, 0, 224));
+	}
+
+	@Test public void testSeed2() {
+		assertPerft(2, 1, counts(187, 12, 175, 125, 0));
+		assertPerft(2, 3, counts(57923, 57923, 0, 0, 483));
+	}
+
+	@Test public void testSeed3() {
+		assertPerft(3, 1, counts(142, 10, 132, 104, 0));
+		assertPerft(3, 3, counts(79148, 79148, 0, 0, 96));
+	}
+
+	// The reference positions have five detectives, so their depths above stop before MrX moves again; with
+	// two detectives, depth 4 ends with MrX's second move, whose double moves need the double ticket he only
+	// has if his first move was single, and whose secret ones the single secret ticket he may have used
+	@Test public void testMrXSecondTurn() {
+		var mrX = new Player(MRX, ImmutableMap.of(TAXI, 4, BUS, 3, UNDERGROUND, 3, DOUBLE, 1, SECRET, 1), 45);
+		var red = new Player(RED, defaultDetectiveTickets(), 111);
+		var blue = new Player(BLUE, defaultDetectiveTickets(), 94);
+		GameState state = gameStateFactory.build(standard24RoundSetup(), mrX, red, blue);
+		assertPerft(state, 1, counts(107, 10, 97, 69, 0));
+		assertPerft(state, 3, counts(11405, 11405, 0, 0, 191));
+		assertPerft(state, 4, counts(156393, 83359, 73034, 55776, 191));
+	}
+
+	@Test public void testDepthZeroCountsTheStateOnly() {
+		GameState state = Perft.referencePosition(gameStateFactory, standard24RoundSetup(), 0);
+		assertThat(Perft.count(state, 0)).isEqualTo(counts(1, 0, 0, 0, 0));
+		assertThat(Perft.countPacked(state, 0)).isEqualTo(counts(1, 0, 0, 0, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeDepthShouldThrow() {
+		Perft.count(Perft.referencePosition(gameStateFactory, standard24RoundSetup(), 0), -1);
+	}
+
+	private void assertPerft(int seed, int depth, Perft.Counts expected) {
+		assertPerft(Perft.referencePosition(gameStateFactory, standard24RoundSetup(), seed), depth, expected);
+	}
+
+	private static void assertPerft(GameState state, int depth, Perft.Counts expected) {
+		assertThat(Perft.count(state, depth)).isEqualTo(expected);
+		assertThat(Perft.countPacked(state, depth)).isEqualTo(expected);
+	}
+
+	private static Perft.Counts counts(long nodes, long singleMoves, long doubleMoves, long secretMoves, long gameOvers) {
+		Perft.Counts counts = new Perft.Counts();
+		counts.nodes = nodes;
+		counts.singleMoves = singleMoves;
+		counts.doubleMoves = doubleMoves;
+		counts.secretMoves = secretMoves;
+		counts.gameOvers = gameOvers;
+		return counts;
+	}
+}
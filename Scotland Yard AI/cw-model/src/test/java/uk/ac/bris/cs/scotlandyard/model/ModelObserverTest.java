@@ -1,11 +1,19 @@
 package uk.ac.bris.cs.scotlandyard.model;
 
 import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
 import uk.ac.bris.cs.scotlandyard.model.Model.Observer;
+import uk.ac.bris.cs.scotlandyard.model.Model.Observer.Dispatch;
 import uk.ac.bris.cs.scotlandyard.model.Model.Observer.Event;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -146,6 +154,152 @@ public class ModelObserverTest extends ParameterisedModelTestBase {
 		assertThat(game.getCurrentBoard().getWinner()).containsExactlyInAnyOrder(MRX);
 	}
 
+	@Test public void testAsynchronousObserverGetsEveryEventInOrder() throws InterruptedException {
+		var mrX = new Player(MRX, defaultMrXTickets(), 45);
+		var red = new Player(RED, defaultDetectiveTickets(), 111);
+		var blue = new Player(BLUE, defaultDetectiveTickets(), 94);
+		var observer = new RecordingObserver();
+		Model game = modelFactory.build(standard24RoundSetup(), mrX, red, blue);
+		game.registerObserver(observer, Dispatch.ASYNCHRONOUS);
+		assertThat(game.getObservers()).containsExactly(observer);
+		game.chooseMove(x2(MRX, 45, TAXI, 46, TAXI, 47));
+		var afterMrX = new ImmutableBoard(game.getCurrentBoard());
+		game.chooseMove(taxi(RED, 111, 112));
+		var afterRed = new ImmutableBoard(game.getCurrentBoard());
+		game.chooseMove(taxi(BLUE, 94, 95));
+		var afterBlue = new ImmutableBoard(game.getCurrentBoard());
+		observer.assertNext(afterMrX, Event.MOVE_MADE);
+		observer.assertNext(afterRed, Event.MOVE_MADE);
+		observer.assertNext(afterBlue, Event.MOVE_MADE);
+		observer.assertNoMore();
+	}
+
+	@Test public void testLatestObserverOnlyGetsTheLatestMoveMade() throws InterruptedException {
+		var mrX = new Player(MRX, defaultMrXTickets(), 45);
+		var red = new Player(RED, defaultDetectiveTickets(), 111);
+		var blue = new Player(BLUE, defaultDetectiveTickets(), 94);
+		var observer = new RecordingObserver();
+		Model game = modelFactory.build(standard24RoundSetup(), mrX, red, blue);
+		game.registerObserver(observer, Dispatch.LATEST);
+		// The observer is busy with the first move while the next two are made
+		observer.block();
+		game.chooseMove(x2(MRX, 45, TAXI, 46, TAXI, 47));
+		var afterMrX = new ImmutableBoard(game.getCurrentBoard());
+		observer.awaitBlocked();
+		game.chooseMove(taxi(RED, 111, 112));
+		game.chooseMove(taxi(BLUE, 94, 95));
+		var afterBlue = new ImmutableBoard(game.getCurrentBoard());
+		observer.unblock();
+		observer.assertNext(afterMrX, Event.MOVE_MADE);
+		observer.assertNext(afterBlue, Event.MOVE_MADE);
+		observer.assertNoMore();
+	}
+
+	@Test public void testLatestObserverGetsGameOver() throws InterruptedException {
+		var mrX = new Player(MRX, defaultMrXTickets(), 45);
+		var red = new Player(RED, defaultDetectiveTickets(), 47);
+		var observer = new RecordingObserver();
+		Model game = modelFactory.build(standard24RoundSetup(), mrX, red);
+		game.registerObserver(observer, Dispatch.LATEST);
+		observer.block();
+		game.chooseMove(taxi(MRX, 45, 46));
+		observer.awaitBlocked();
+		game.chooseMove(taxi(RED, 47, 46));
+		var end = new ImmutableBoard(game.getCurrentBoard());
+		observer.unblock();
+		observer.assertNext(null, Event.MOVE_MADE);
+		observer.assertNext(end, Event.GAME_OVER);
+		observer.assertNoMore();
+	}
+
+	@Test public void testUnregisteredAsynchronousObserverGetsNoMoreEvents() throws InterruptedException {
+		var mrX = new Player(MRX, defaultMrXTickets(), 45);
+		var red = new Player(RED, defaultDetectiveTickets(), 111);
+		var blue = new Player(BLUE, defaultDetectiveTickets(), 94);
+		var observer = new RecordingObserver();
+		Model game = modelFactory.build(standard24RoundSetup(), mrX, red, blue);
+		game.registerObserver(observer, Dispatch.ASYNCHRONOUS);
+		observer.block();
+		game.chooseMove(x2(MRX, 45, TAXI, 46, TAXI, 47));
+		observer.awaitBlocked();
+		game.chooseMove(taxi(RED, 111, 112));
+		game.unregisterObserver(observer);
+		assertThat(game.getObservers()).isEmpty();
+		game.chooseMove(taxi(BLUE, 94, 95));
+		observer.unblock();
+		// The event being delivered when it was unregistered still arrives, the ones waiting do not
+		observer.assertNext(null, Event.MOVE_MADE);
+		observer.assertNoMore();
+	}
+
+	@Test public void testAsynchronousObserverGetsEventsAfterThrowing() throws InterruptedException {
+		var mrX = new Player(MRX, defaultMrXTickets(), 45);
+		var red = new Player(RED, defaultDetectiveTickets(), 111);
+		var blue = new Player(BLUE, defaultDetectiveTickets(), 94);
+		var observer = new RecordingObserver() {
+			private boolean thrown;
+			@Override public void onModelChanged(@Nonnull Board board, @Nonnull Event event) {
+				super.onModelChanged(board, event);
+				// Errors are not caught by the model, so they must not stop the queue either
+				if (!thrown) {
+					thrown = true;
+					throw new Error("Observer failed on purpose");
+				}
+			}
+		};
+		Model game = modelFactory.build(standard24RoundSetup(), mrX, red, blue);
+		game.registerObserver(observer, Dispatch.ASYNCHRONOUS);
+		game.chooseMove(x2(MRX, 45, TAXI, 46, TAXI, 47));
+		observer.assertNext(new ImmutableBoard(game.getCurrentBoard()), Event.MOVE_MADE);
+		game.chooseMove(taxi(RED, 111, 112));
+		observer.assertNext(new ImmutableBoard(game.getCurrentBoard()), Event.MOVE_MADE);
+		game.chooseMove(taxi(BLUE, 94, 95));
+		observer.assertNext(new ImmutableBoard(game.getCurrentBoard()), Event.MOVE_MADE);
+		observer.assertNoMore();
+	}
+
+	// records the events it gets, optionally blocking on the first one until unblocked
+	private static class RecordingObserver implements Observer {
+		private final BlockingQueue<ImmutableBoard> boards = new LinkedBlockingQueue<>();
+		private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+		private final CountDownLatch blocked = new CountDownLatch(1);
+		private final CountDownLatch unblocked = new CountDownLatch(1);
+		private volatile boolean blocking;
+
+		@Override public void onModelChanged(@Nonnull Board board, @Nonnull Event event) {
+			if (blocking) {
+				blocking = false;
+				blocked.countDown();
+				try {
+					unblocked.await();
+				} catch (InterruptedException e) {
+					throw new AssertionError(e);
+				}
+			}
+			boards.add(new ImmutableBoard(board));
+			events.add(event);
+		}
+
+		void block() { blocking = true; }
+
+		void awaitBlocked() throws InterruptedException {
+			assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+		}
+
+		void unblock() { unblocked.countDown(); }
+
+		// checks the next event, and its board unless null
+		void assertNext(ImmutableBoard board, Event event) throws InterruptedException {
+			assertThat(events.poll(5, TimeUnit.SECONDS)).isEqualTo(event);
+			ImmutableBoard actual = boards.take();
+			if (board != null) assertThat(actual).isEqualTo(board);
+		}
+
+		void assertNoMore() throws InterruptedException {
+			assertThat(events.poll(100, TimeUnit.MILLISECONDS)).isNull();
+		}
+	}
+
 	// creates a argument matcher to check whether the board is *value* equal to the given board
 	private static Board boardEq(Board that) {
 		final var snapshot = new ImmutableBoard(that);
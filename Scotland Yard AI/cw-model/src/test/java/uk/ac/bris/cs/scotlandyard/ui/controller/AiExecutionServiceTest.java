@@ -0,0 +1,201 @@
+package uk.ac.bris.cs.scotlandyard.ui.controller;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests the scheduling, cancellation and metrics of {@link AiExecutionService}
+ */
+public class AiExecutionServiceTest {
+
+	private static final long TIMEOUT_SECONDS = 5;
+
+	@Test public void testQuotaLimitsTheTasksASessionRunsAtOnce() throws Exception {
+		var service = new AiExecutionService(4, 2);
+		var session = service.openSession("game");
+		var running = new AtomicInteger();
+		var maxRunning = new AtomicInteger();
+		var started = new CountDownLatch(2);
+		var release = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			futures.add(session.submit(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				started.countDown();
+				await(release);
+				running.decrementAndGet();
+			}));
+		}
+		assertThat(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+		// Two of the four threads are still free, but the session has used up its quota
+		Thread.sleep(100);
+		assertThat(running.get()).isEqualTo(2);
+		release.countDown();
+		for (Future<?> future : futures) future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertThat(maxRunning.get()).isEqualTo(2);
+	}
+
+	@Test public void testSessionsTakeTurns() throws Exception {
+		var service = new AiExecutionService(1, 1);
+		var a = service.openSession("a");
+		var b = service.openSession("b");
+		var c = service.openSession("c");
+		var release = new CountDownLatch(1);
+		// Holds the only thread while the other sessions queue their tasks
+		var blocker = c.submit(() -> await(release));
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			String name = "a" + i;
+			futures.add(a.submit(() -> order.add(name)));
+		}
+		for (int i = 0; i < 2; i++) {
+			String name = "b" + i;
+			futures.add(b.submit(() -> order.add(name)));
+		}
+		release.countDown();
+		blocker.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		for (Future<?> future : futures) future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertThat(order).containsExactly("a0", "b0", "a1", "b1", "a2");
+	}
+
+	@Test public void testCloseCancelsQueuedTasksAndInterruptsRunningOnes() throws Exception {
+		var service = new AiExecutionService(1, 1);
+		var session = service.openSession("game");
+		var started = new CountDownLatch(1);
+		var interrupted = new CountDownLatch(1);
+		var queuedRan = new AtomicInteger();
+		var running = session.submit(() -> {
+			started.countDown();
+			try {
+				Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS * 2));
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+		});
+		var queued = session.submit(queuedRan::incrementAndGet);
+		assertThat(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+		session.close();
+		assertThat(interrupted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+		assertThat(running.isCancelled()).isTrue();
+		assertThat(queued.isCancelled()).isTrue();
+		assertThatThrownBy(() -> session.submit(() -> {}))
+				.isInstanceOf(RejectedExecutionException.class);
+		// The thread is free again for the other sessions
+		service.openSession("next").submit(() -> {}).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertThat(queuedRan.get()).isZero();
+	}
+
+	@Test public void testCancellingARunningTaskGivesItsQuotaBack() throws Exception {
+		// The grace period is long enough for the task to never count as stuck here
+		var service = new AiExecutionService(2, 1, 1, TimeUnit.MINUTES);
+		var session = service.openSession("game");
+		var started = new CountDownLatch(1);
+		var release = new CountDownLatch(1);
+		var ignoring = session.submit(() -> {
+			started.countDown();
+			awaitUninterruptibly(release);
+		});
+		var next = session.submit(() -> {});
+		assertThat(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+		ignoring.cancel(true);
+		// Runs on the other thread while the cancelled task still holds its own
+		next.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertThat(service.metrics().stuck()).isZero();
+		release.countDown();
+	}
+
+	@Test public void testTaskIgnoringTheInterruptIsCountedAsStuckAndGetsAnotherThread() throws Exception {
+		var service = new AiExecutionService(1, 1, 50, TimeUnit.MILLISECONDS);
+		var session = service.openSession("game");
+		var other = service.openSession("other");
+		var started = new CountDownLatch(1);
+		var release = new CountDownLatch(1);
+		var ignoring = session.submit(() -> {
+			started.countDown();
+			awaitUninterruptibly(release);
+		});
+		assertThat(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+		session.close();
+		assertThat(ignoring.isCancelled()).isTrue();
+		// The only thread is still taken, so this waits for the pool to grow past the grace period
+		other.submit(() -> {}).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertThat(session.metrics().stuck()).isEqualTo(1);
+		assertThat(service.metrics().stuck()).isEqualTo(1);
+		assertThat(service.metrics().tasks()).isEqualTo(1);
+		// Once the stuck task returns, the pool is back to one thread
+		release.countDown();
+		var first = new CountDownLatch(1);
+		var overlapped = new AtomicInteger();
+		var a = other.submit(() -> {
+			first.countDown();
+			sleep(50);
+		});
+		var b = service.openSession("third").submit(() -> {
+			if (first.getCount() == 0 && !a.isDone()) overlapped.incrementAndGet();
+		});
+		a.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		b.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertThat(overlapped.get()).isZero();
+	}
+
+	@Test public void testMetricsRecordQueueWaitAndRunTimes() throws Exception {
+		var service = new AiExecutionService(1, 1);
+		var session = service.openSession("game");
+		var first = session.submit(() -> sleep(50));
+		// Waits in the queue while the first task runs
+		var second = session.submit(() -> {});
+		var cancelled = session.submit(() -> {});
+		cancelled.cancel(false);
+		first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		// Tasks cancelled before they start are not counted
+		assertThat(session.metrics().tasks()).isEqualTo(2);
+		assertThat(service.metrics().tasks()).isEqualTo(2);
+		assertThat(session.metrics().maxRunNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+		assertThat(session.metrics().totalRunNanos()).isGreaterThanOrEqualTo(session.metrics().maxRunNanos());
+		assertThat(session.metrics().maxWaitNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(40));
+		assertThat(service.metrics().totalWaitNanos()).isEqualTo(session.metrics().totalWaitNanos());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	// Like an ai that never checks for interrupts
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				latch.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new AssertionError(e);
+		}
+	}
+}